@@ -0,0 +1,46 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, and writes the results as JSON, for tracking regressions across releases.
+ */
+public class BenchmarkRunner {
+
+  public static void main(String[] args) throws RunnerException {
+    if (args.length > 2) {
+      System.out.println("Usage:");
+      System.out.println("  java " + BenchmarkRunner.class + " [result.json [benchmark-regex]]");
+      return;
+    }
+    String resultFilename = args.length > 0 ? args[0] : "jmh-result.json";
+    String include = args.length > 1 ? args[1] : BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark";
+
+    // forked benchmark JVMs do not inherit system properties, so pass on the benchmark settings:
+    List<String> jvmArgs = new ArrayList<String>();
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (name.startsWith("gtmobisim.")) {
+        jvmArgs.add("-D" + name + "=" + System.getProperty(name));
+      }
+    }
+
+    Options opt = new OptionsBuilder()
+        .include(include)
+        .jvmArgsAppend(jvmArgs.toArray(new String[jvmArgs.size()]))
+        .resultFormat(ResultFormatType.JSON)
+        .result(resultFilename)
+        .build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import edu.gatech.lbs.core.FileHelper;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.config.XmlWorldConfigInterpreter;
+
+/**
+ * Builds the worlds & simulations measured by the benchmarks, from one of the bundled config files.
+ * 
+ * Settings are taken from system properties:
+ * gtmobisim.benchmark.config (config file, its map is used),
+ * gtmobisim.benchmark.agents (agent count),
+ * gtmobisim.benchmark.partition_radius (radius of distance partitioning).
+ */
+public class BenchmarkSimulations {
+  public static final String configFilename = System.getProperty("gtmobisim.benchmark.config", "configs/web-demo.xml");
+  public static final String agentCount = System.getProperty("gtmobisim.benchmark.agents", "1000");
+  public static final String partitionRadius = System.getProperty("gtmobisim.benchmark.partition_radius", "0.5 mi");
+
+  private static RoadMap roadmap; // partitioned map, shared by all benchmarks in a forked JVM
+
+  /**
+   * Get the partitioned roadmap of the benchmark config.
+   */
+  public static synchronized RoadMap getRoadMap() throws IOException {
+    if (roadmap == null) {
+      Document doc = loadConfig();
+      Element worldNode = (Element) doc.getDocumentElement().getElementsByTagName("world").item(0);
+      removeAll(worldNode, "partition");
+      // in-memory partitioning, so Partition.getRoute() can be measured:
+      Element partitionNode = doc.createElement("partition");
+      partitionNode.setAttribute("type", "distance");
+      partitionNode.setAttribute("radius", partitionRadius);
+      worldNode.appendChild(partitionNode);
+
+      roadmap = (RoadMap) new XmlWorldConfigInterpreter().initFromXmlElement(doc.getDocumentElement());
+    }
+    return roadmap;
+  }
+
+  /**
+   * Make an initialized simulation of the benchmark config's first group of agents. The mobility trace is generated
+   * into the given file, and is scheduled for loading. Partitioning & query models are left out.
+   */
+  public static Simulation makeSimulation(File traceFile) throws IOException {
+    // no GUI during benchmarks:
+    System.setProperty("java.awt.headless", "true");
+
+    Document doc = loadConfig();
+    Element rootNode = doc.getDocumentElement();
+    removeAll((Element) rootNode.getElementsByTagName("world").item(0), "partition");
+
+    Element agentsNode = (Element) rootNode.getElementsByTagName("agents").item(0);
+    agentsNode.setAttribute("count", agentCount);
+    removeAll(agentsNode, "querymodel");
+    removeAll(agentsNode, "periodictraceoutput");
+    Element mobilitymodelNode = (Element) agentsNode.getElementsByTagName("mobilitymodel").item(0);
+    mobilitymodelNode.setAttribute("filename", traceFile.getPath());
+    mobilitymodelNode.setAttribute("overwrite", "yes");
+
+    Simulation sim = new Simulation();
+    sim.loadConfigurationFromSpecification(toText(doc));
+    sim.initSimulation();
+    return sim;
+  }
+
+  private static Document loadConfig() throws IOException {
+    try {
+      InputStream in = FileHelper.openFileOrUrl(configFilename);
+      Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+      in.close();
+      return doc;
+    } catch (Exception e) {
+      throw new IOException("Unable to read benchmark config '" + configFilename + "': " + e);
+    }
+  }
+
+  private static void removeAll(Element parent, String tagName) {
+    NodeList nodes = parent.getElementsByTagName(tagName);
+    while (nodes.getLength() > 0) {
+      nodes.item(0).getParentNode().removeChild(nodes.item(0));
+    }
+  }
+
+  private static String toText(Document doc) throws IOException {
+    try {
+      StringWriter writer = new StringWriter();
+      TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(writer));
+      return writer.toString();
+    } catch (Exception e) {
+      throw new IOException("Unable to serialize benchmark config: " + e);
+    }
+  }
+}
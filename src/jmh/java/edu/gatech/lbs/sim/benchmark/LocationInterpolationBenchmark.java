@@ -0,0 +1,66 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.agent.SimAgent;
+
+/**
+ * Per-agent cost of interpolating the current location from the agent's last mobility change event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LocationInterpolationBenchmark {
+  private static final int agentsPerInvocation = 1024;
+
+  private SimAgent[] agents;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    File traceFile = File.createTempFile("gtmobisim-benchmark", ".trace");
+    traceFile.deleteOnExit();
+    new File(traceFile.getPath() + ".txt").deleteOnExit();
+
+    // run to the middle of the simulation, so every agent is moving:
+    Simulation sim = BenchmarkSimulations.makeSimulation(traceFile);
+    sim.runSimulationTo((sim.getSimStartTime() + sim.getSimEndTime()) / 2);
+
+    SimAgent[] simAgents = sim.getAgents().toArray(new SimAgent[0]);
+    agents = new SimAgent[agentsPerInvocation];
+    for (int i = 0; i < agentsPerInvocation; i++) {
+      agents[i] = simAgents[i % simAgents.length];
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(agentsPerInvocation)
+  public void getLocation(Blackhole bh) {
+    for (SimAgent agent : agents) {
+      bh.consume(agent.getLocation());
+    }
+  }
+}
@@ -0,0 +1,99 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.core.world.roadnet.RoadSegment;
+import edu.gatech.lbs.core.world.roadnet.partition.Partition;
+import edu.gatech.lbs.core.world.roadnet.route.Route;
+
+/**
+ * Latency of shortest route queries: Dijkstra on the whole map, and pre-computed routes within a partition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RoutingBenchmark {
+  private static final int pairCount = 1024; // power of two
+
+  private RoadMap roadmap;
+  // route endpoints anywhere on the map:
+  private RoadnetVector[] sources;
+  private RoadnetVector[] targets;
+  // route endpoints within the same partition:
+  private Partition[] partitions;
+  private RoadnetVector[] partitionSources;
+  private RoadnetVector[] partitionTargets;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    roadmap = BenchmarkSimulations.getRoadMap();
+    Random rnd = new Random(0);
+
+    RoadSegment[] segments = roadmap.getRoadSegments().toArray(new RoadSegment[0]);
+    sources = new RoadnetVector[pairCount];
+    targets = new RoadnetVector[pairCount];
+    for (int i = 0; i < pairCount; i++) {
+      sources[i] = getRandomLocation(segments, rnd);
+      targets[i] = getRandomLocation(segments, rnd);
+    }
+
+    List<Partition> multiSegmentPartitions = new ArrayList<Partition>();
+    for (Partition partition : roadmap.getPartitions()) {
+      if (partition.size() > 1) {
+        multiSegmentPartitions.add(partition);
+      }
+    }
+    partitions = new Partition[pairCount];
+    partitionSources = new RoadnetVector[pairCount];
+    partitionTargets = new RoadnetVector[pairCount];
+    for (int i = 0; i < pairCount; i++) {
+      partitions[i] = multiSegmentPartitions.get(rnd.nextInt(multiSegmentPartitions.size()));
+      RoadSegment[] partitionSegments = partitions[i].getSegments().toArray(new RoadSegment[0]);
+      partitionSources[i] = getRandomLocation(partitionSegments, rnd);
+      partitionTargets[i] = getRandomLocation(partitionSegments, rnd);
+    }
+  }
+
+  private static RoadnetVector getRandomLocation(RoadSegment[] segments, Random rnd) {
+    RoadSegment segment = segments[rnd.nextInt(segments.length)];
+    return new RoadnetVector(segment, rnd.nextInt(segment.getLength() + 1));
+  }
+
+  @Benchmark
+  public Route dijkstraRoute() {
+    int i = next++ & (pairCount - 1);
+    return roadmap.getShortestRoute(sources[i], targets[i]);
+  }
+
+  @Benchmark
+  public Route partitionRoute() {
+    int i = next++ & (pairCount - 1);
+    return partitions[i].getRoute(partitionSources[i], partitionTargets[i]);
+  }
+}
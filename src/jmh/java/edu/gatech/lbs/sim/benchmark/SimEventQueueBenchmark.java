@@ -0,0 +1,137 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.benchmark;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.scheduling.SimEventQueue;
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+
+/**
+ * Push/pop throughput of the simulation event queue, for each event store.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SimEventQueueBenchmark {
+  @Param({ "treemap", "heap" })
+  public String store;
+
+  @Param({ "1000", "100000" })
+  public int queueSize;
+
+  private SimEventQueue queue;
+  private BenchmarkEvent[] events;
+  private long[] delays; // [ms], rescheduling delays, power-of-two length
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Random rnd = new Random(0);
+    delays = new long[4096];
+    for (int i = 0; i < delays.length; i++) {
+      delays[i] = 1 + rnd.nextInt(60 * 1000);
+    }
+
+    events = new BenchmarkEvent[queueSize];
+    queue = new SimEventQueue(SimEventQueue.makeEventStore(store));
+    for (int i = 0; i < queueSize; i++) {
+      // mix of mobility & trace saving priorities, on a coarse timestamp grid to have ties:
+      events[i] = new BenchmarkEvent(rnd.nextInt(60) * 1000,
+          i % 4 == 0 ? Simulation.priorityPeriodicTraceSaveEvent : Simulation.priorityLocationChangeEvent);
+      queue.addEvent(events[i]);
+    }
+  }
+
+  /**
+   * Hold model: pop the earliest event, and reschedule it later, keeping the queue size constant.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public SimEvent popAndPush() {
+    BenchmarkEvent event = (BenchmarkEvent) queue.pop();
+    event.reschedule(delays[next++ & (delays.length - 1)]);
+    queue.addEvent(event);
+    return event;
+  }
+
+  /**
+   * Fill an empty queue, then drain it.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public int fillAndDrain() {
+    SimEventQueue q = new SimEventQueue(SimEventQueue.makeEventStore(store));
+    for (BenchmarkEvent event : events) {
+      q.addEvent(event);
+    }
+    int popped = 0;
+    while (q.pop() != null) {
+      popped++;
+    }
+    return popped;
+  }
+
+  /**
+   * Event with a fixed priority, that does nothing.
+   */
+  private static class BenchmarkEvent extends SimEvent {
+    private final int priority;
+
+    public BenchmarkEvent(long timestamp, int priority) {
+      super(null, timestamp);
+      this.priority = priority;
+    }
+
+    public void reschedule(long delay) {
+      timestamp += delay;
+    }
+
+    public int getPriority() {
+      return priority;
+    }
+
+    public void execute() {
+      // do nothing
+    }
+
+    public void saveTo(DataOutputStream out) throws IOException {
+      // non-persistent
+    }
+
+    public byte getTypeCode() {
+      return '\0'; // non-persistent
+    }
+
+    public String toString() {
+      return "B";
+    }
+
+    public void saveToTxt(PrintWriter out) throws IOException {
+      // non-persistent
+    }
+  }
+}
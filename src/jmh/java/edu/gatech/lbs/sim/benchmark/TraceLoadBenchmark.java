@@ -0,0 +1,74 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.scheduling.SimEventQueue;
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+import edu.gatech.lbs.sim.scheduling.event.TraceLoadEvent;
+
+/**
+ * Throughput of decoding a mobility trace into the event queue, in the batches scheduled by TraceLoadEvent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TraceLoadBenchmark {
+  private Simulation sim;
+  private byte[] trace; // in memory, to leave out disk access
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    File traceFile = File.createTempFile("gtmobisim-benchmark", ".trace");
+    traceFile.deleteOnExit();
+    new File(traceFile.getPath() + ".txt").deleteOnExit();
+
+    sim = BenchmarkSimulations.makeSimulation(traceFile);
+    trace = Files.readAllBytes(traceFile.toPath());
+  }
+
+  /**
+   * Load the whole trace, returning the number of events loaded. Loaded events are popped but not executed.
+   */
+  @Benchmark
+  public int loadTrace() {
+    SimEventQueue queue = sim.getQueue();
+    queue.clear();
+    queue.addEvent(new TraceLoadEvent(sim, sim.getSimStartTime(), new DataInputStream(new ByteArrayInputStream(trace))));
+
+    int eventsLoaded = 0;
+    SimEvent event;
+    while ((event = queue.pop()) != null) {
+      if (event instanceof TraceLoadEvent) {
+        event.execute();
+      } else {
+        eventsLoaded++;
+      }
+    }
+    return eventsLoaded;
+  }
+}
@@ -4,11 +4,11 @@
 //
 package edu.gatech.lbs.core.query;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.IOException;
 
 public class LocationBasedQueryFactory {
-  public static LocationBasedQuery load(DataInputStream in) throws IOException {
+  public static LocationBasedQuery load(DataInput in) throws IOException {
     LocationBasedQuery query = null;
 
     byte typeCode = in.readByte();
@@ -4,7 +4,7 @@
 //
 package edu.gatech.lbs.core.query;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 
@@ -18,7 +18,7 @@ public class QueryKey {
     this.qid = qid;
   }
 
-  public QueryKey(DataInputStream in) throws IOException {
+  public QueryKey(DataInput in) throws IOException {
     uid = in.readInt();
     qid = in.readInt();
   }
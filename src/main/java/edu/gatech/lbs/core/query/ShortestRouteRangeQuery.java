@@ -4,7 +4,7 @@
 //
 package edu.gatech.lbs.core.query;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 
@@ -18,7 +18,7 @@ public class ShortestRouteRangeQuery extends LocationBasedQuery {
     this.radius = range;
   }
 
-  public ShortestRouteRangeQuery(DataInputStream in) throws IOException {
+  public ShortestRouteRangeQuery(DataInput in) throws IOException {
     radius = in.readInt();
   }
 
@@ -0,0 +1,73 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.random;
+
+import java.util.SplittableRandom;
+
+/**
+ * A seeded, unsynchronized stream of random numbers, to be owned by a single consumer (eg. one agent's mobility
+ * model). Streams are obtained from a RandomStreamFactory, so the same seed always yields the same numbers, regardless
+ * of which thread draws them.
+ */
+public class RandomStream {
+  private long seed;
+  private SplittableRandom rnd;
+
+  private double nextNextGaussian;
+  private boolean haveNextNextGaussian;
+
+  public RandomStream(long seed) {
+    this.seed = seed;
+    rnd = new SplittableRandom(seed);
+    haveNextNextGaussian = false;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Uniform in [0, 1).
+   */
+  public double nextDouble() {
+    return rnd.nextDouble();
+  }
+
+  /**
+   * Uniform in [0, bound).
+   */
+  public int nextInt(int bound) {
+    return rnd.nextInt(bound);
+  }
+
+  public long nextLong() {
+    return rnd.nextLong();
+  }
+
+  public boolean nextBoolean() {
+    return rnd.nextBoolean();
+  }
+
+  /**
+   * Standard normal, using the polar method (as java.util.Random does).
+   */
+  public double nextGaussian() {
+    if (haveNextNextGaussian) {
+      haveNextNextGaussian = false;
+      return nextNextGaussian;
+    }
+
+    double v1, v2, s;
+    do {
+      v1 = 2 * rnd.nextDouble() - 1;
+      v2 = 2 * rnd.nextDouble() - 1;
+      s = v1 * v1 + v2 * v2;
+    } while (s >= 1 || s == 0);
+    double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+    nextNextGaussian = v2 * multiplier;
+    haveNextNextGaussian = true;
+    return v1 * multiplier;
+  }
+}
@@ -0,0 +1,41 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.random;
+
+/**
+ * Derives independent random streams from a single root seed. Each stream is keyed by the consuming component's name
+ * and an id within that component (eg. "mobility" and the agent id), so a stream's numbers do not depend on how many
+ * other streams exist, or on the order they are drawn in.
+ */
+public class RandomStreamFactory {
+  private long rootSeed;
+
+  public RandomStreamFactory(long rootSeed) {
+    this.rootSeed = rootSeed;
+  }
+
+  /**
+   * Make a factory with a root seed that is different on every run.
+   */
+  public static RandomStreamFactory makeUnseeded() {
+    return new RandomStreamFactory(mix(System.nanoTime() ^ System.currentTimeMillis()));
+  }
+
+  public long getRootSeed() {
+    return rootSeed;
+  }
+
+  public RandomStream getStream(String component, long id) {
+    long componentSeed = mix(rootSeed ^ mix(component.hashCode()));
+    return new RandomStream(mix(componentSeed + 0x9E3779B97F4A7C15L * (id + 1)));
+  }
+
+  // 64-bit finalizer of MurmurHash3 (variant 13, as in SplittableRandom):
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
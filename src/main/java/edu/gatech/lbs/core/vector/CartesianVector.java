@@ -4,7 +4,7 @@
 //
 package edu.gatech.lbs.core.vector;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -16,6 +16,8 @@ public class CartesianVector implements IVector {
   protected long x; // [mm], [mm/s], [mm/s^2]
   protected long y; // [mm], [mm/s], [mm/s^2]
 
+  private static volatile RoadMap defaultRoadmap; // for toRoadnetVector() without a roadmap
+
   public CartesianVector(long x, long y) {
     this.x = x;
     this.y = y;
@@ -26,11 +28,16 @@ public class CartesianVector implements IVector {
   	x = Math.cos(phi) * length;
   }*/
 
-  public CartesianVector(DataInputStream in) throws IOException {
+  public CartesianVector(DataInput in) throws IOException {
     x = in.readLong();
     y = in.readLong();
   }
 
+  public void set(long x, long y) {
+    this.x = x;
+    this.y = y;
+  }
+
   public void setDimension(int d, long v) {
     switch (d) {
     case 0:
@@ -155,9 +162,19 @@ public class CartesianVector implements IVector {
     return this;
   }
 
+  /**
+   * Set the roadmap that toRoadnetVector() snaps to (the simulation sets its world, if it is a road network).
+   */
+  public static void setDefaultRoadMap(RoadMap roadmap) {
+    defaultRoadmap = roadmap;
+  }
+
+  /**
+   * Nearest location on the default roadmap, found with its segment grid; or null, if there is no default roadmap.
+   */
   public RoadnetVector toRoadnetVector() {
-    // TODO: return roadmap.getRoadnetLocation(this);
-    return null;
+    RoadMap roadmap = defaultRoadmap;
+    return roadmap != null ? roadmap.getRoadnetLocation(this) : null;
   }
 
   public RoadnetVector toRoadnetVector(RoadMap roadmap) {
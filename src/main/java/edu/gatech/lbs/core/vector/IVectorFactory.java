@@ -4,14 +4,14 @@
 //
 package edu.gatech.lbs.core.vector;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.IOException;
 
 import edu.gatech.lbs.core.world.IWorld;
 import edu.gatech.lbs.core.world.roadnet.RoadMap;
 
 public class IVectorFactory {
-  public static IVector load(DataInputStream in, IWorld world) throws IOException {
+  public static IVector load(DataInput in, IWorld world) throws IOException {
     IVector vector = null;
     byte typeCode = in.readByte();
     if (typeCode == CartesianVector.typeCode) {
@@ -5,7 +5,7 @@
 package edu.gatech.lbs.core.vector;
 
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -24,7 +24,7 @@ public class RoadnetVector implements IVector {
     this.progress = progress;
   }
 
-  public RoadnetVector(DataInputStream in, RoadMap roadmap) throws IOException {
+  public RoadnetVector(DataInput in, RoadMap roadmap) throws IOException {
     roadsegment = roadmap.getRoadSegment(in.readInt());
     progress = in.readInt();
   }
@@ -0,0 +1,437 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Contraction hierarchy of the road network graph, for fast shortest route queries. Junctions are contracted one by
+ * one, least important first (by edge difference & number of contracted neighbors), adding shortcut edges wherever the
+ * only shortest route between two remaining junctions went thru the contracted one. A shortest route can then be found
+ * by searching only upward in the hierarchy, from both of its ends. Edge costs are distances [mm] or travel times at
+ * the speed limits [ms], and shortcuts refer to the two edges they replace, so routes can be unpacked to segments.
+ */
+public class ContractionHierarchy {
+  public static final int magic = 0x47544348; // "GTCH"
+  public static final byte version = 2;
+
+  private static final int witnessSettleLimit = 500; // max. junctions settled by a witness search
+
+  private int junctionIdBound;
+  private boolean isTravelTime;
+  private long fingerprint; // of the graph it was built from
+
+  // original & shortcut edges:
+  private int edgeCount;
+  private int[] edgeSource; // edge --> junctionId
+  private int[] edgeTarget; // edge --> junctionId
+  private int[] edgeCost; // edge --> [mm] or [ms]
+  private int[] edgeSegment; // edge --> segmentId, or -1 for shortcuts
+  private int[] edgeChild1; // shortcut --> replaced edge from its source to the contracted junction
+  private int[] edgeChild2; // shortcut --> replaced edge from the contracted junction to its target
+
+  private int[] rank; // junctionId --> contraction order
+
+  // upward edges leaving junction j are upEdge[upOffset[j]], ..., upEdge[upOffset[j+1]-1]:
+  private int[] upOffset;
+  private int[] upEdge;
+  // downward edges arriving to junction j are downEdge[downOffset[j]], ..., downEdge[downOffset[j+1]-1]:
+  private int[] downOffset;
+  private int[] downEdge;
+
+  // contraction state, only while building:
+  private int[][] outEdges; // junctionId --> edges leaving it
+  private int[] outEdgeCount;
+  private int[][] inEdges; // junctionId --> edges arriving to it
+  private int[] inEdgeCount;
+  private boolean[] isContracted;
+
+  /**
+   * Build the hierarchy of the graph, with edge costs by travel time or distance.
+   */
+  public ContractionHierarchy(RoadGraph g, boolean isTravelTime) {
+    this.isTravelTime = isTravelTime;
+    junctionIdBound = g.getJunctionIdBound();
+    fingerprint = g.getFingerprint();
+
+    int capacity = 2 * g.getEdgeCount() + 16;
+    edgeSource = new int[capacity];
+    edgeTarget = new int[capacity];
+    edgeCost = new int[capacity];
+    edgeSegment = new int[capacity];
+    edgeChild1 = new int[capacity];
+    edgeChild2 = new int[capacity];
+    outEdges = new int[junctionIdBound][];
+    outEdgeCount = new int[junctionIdBound];
+    inEdges = new int[junctionIdBound][];
+    inEdgeCount = new int[junctionIdBound];
+    for (int j = 0; j < junctionIdBound; j++) {
+      outEdges[j] = new int[4];
+      inEdges[j] = new int[4];
+    }
+    for (int e = 0; e < g.getEdgeCount(); e++) {
+      // loops & impassable edges are never part of a shortest route:
+      if (g.getEdgeSource(e) != g.getEdgeTarget(e) && getCost(g, e, isTravelTime) != RoadGraph.impassable) {
+        addEdge(g.getEdgeSource(e), g.getEdgeTarget(e), getCost(g, e, isTravelTime), g.getEdgeSegment(e), -1, -1);
+      }
+    }
+
+    contract();
+
+    outEdges = null;
+    outEdgeCount = null;
+    inEdges = null;
+    inEdgeCount = null;
+    isContracted = null;
+    makeSearchGraph();
+  }
+
+  /**
+   * Load a hierarchy saved by saveTo(), checking that it was built from the given graph with the same edge costs.
+   */
+  public ContractionHierarchy(DataInputStream in, RoadGraph g, boolean isTravelTime) throws IOException {
+    if (in.readInt() != magic || in.readByte() != version) {
+      throw new IOException("Not a contraction hierarchy file.");
+    }
+    this.isTravelTime = in.readBoolean();
+    junctionIdBound = in.readInt();
+    fingerprint = in.readLong();
+    if (this.isTravelTime != isTravelTime || junctionIdBound != g.getJunctionIdBound()
+        || fingerprint != g.getFingerprint()) {
+      throw new IOException("Contraction hierarchy was built for a different road network or metric.");
+    }
+
+    edgeCount = in.readInt();
+    edgeSource = new int[edgeCount];
+    edgeTarget = new int[edgeCount];
+    edgeCost = new int[edgeCount];
+    edgeSegment = new int[edgeCount];
+    edgeChild1 = new int[edgeCount];
+    edgeChild2 = new int[edgeCount];
+    for (int e = 0; e < edgeCount; e++) {
+      edgeSource[e] = in.readInt();
+      edgeTarget[e] = in.readInt();
+      edgeCost[e] = in.readInt();
+      edgeSegment[e] = in.readInt();
+      edgeChild1[e] = in.readInt();
+      edgeChild2[e] = in.readInt();
+    }
+    rank = new int[junctionIdBound];
+    for (int j = 0; j < junctionIdBound; j++) {
+      rank[j] = in.readInt();
+    }
+
+    makeSearchGraph();
+  }
+
+  public void saveTo(DataOutputStream out) throws IOException {
+    out.writeInt(magic);
+    out.writeByte(version);
+    out.writeBoolean(isTravelTime);
+    out.writeInt(junctionIdBound);
+    out.writeLong(fingerprint);
+    out.writeInt(edgeCount);
+    for (int e = 0; e < edgeCount; e++) {
+      out.writeInt(edgeSource[e]);
+      out.writeInt(edgeTarget[e]);
+      out.writeInt(edgeCost[e]);
+      out.writeInt(edgeSegment[e]);
+      out.writeInt(edgeChild1[e]);
+      out.writeInt(edgeChild2[e]);
+    }
+    for (int j = 0; j < junctionIdBound; j++) {
+      out.writeInt(rank[j]);
+    }
+  }
+
+  private static int getCost(RoadGraph g, int edge, boolean isTravelTime) {
+    return isTravelTime ? g.getEdgeTravelTime(edge) : g.getEdgeLength(edge);
+  }
+
+  private int addEdge(int source, int target, int cost, int segmentId, int child1, int child2) {
+    if (edgeCount == edgeSource.length) {
+      int capacity = 2 * edgeCount;
+      edgeSource = Arrays.copyOf(edgeSource, capacity);
+      edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+      edgeCost = Arrays.copyOf(edgeCost, capacity);
+      edgeSegment = Arrays.copyOf(edgeSegment, capacity);
+      edgeChild1 = Arrays.copyOf(edgeChild1, capacity);
+      edgeChild2 = Arrays.copyOf(edgeChild2, capacity);
+    }
+    int e = edgeCount++;
+    edgeSource[e] = source;
+    edgeTarget[e] = target;
+    edgeCost[e] = cost;
+    edgeSegment[e] = segmentId;
+    edgeChild1[e] = child1;
+    edgeChild2[e] = child2;
+
+    if (outEdgeCount[source] == outEdges[source].length) {
+      outEdges[source] = Arrays.copyOf(outEdges[source], 2 * outEdgeCount[source]);
+    }
+    outEdges[source][outEdgeCount[source]++] = e;
+    if (inEdgeCount[target] == inEdges[target].length) {
+      inEdges[target] = Arrays.copyOf(inEdges[target], 2 * inEdgeCount[target]);
+    }
+    inEdges[target][inEdgeCount[target]++] = e;
+    return e;
+  }
+
+  private void contract() {
+    isContracted = new boolean[junctionIdBound];
+    rank = new int[junctionIdBound];
+    int[] contractedNeighborCount = new int[junctionIdBound];
+
+    // queue of (priority, junctionId), with priorities recomputed lazily when polled:
+    PriorityQueue<Long> queue = new PriorityQueue<Long>();
+    for (int j = 0; j < junctionIdBound; j++) {
+      queue.add(getQueueEntry(getPriority(j, 0), j));
+    }
+
+    int contractedCount = 0;
+    while (!queue.isEmpty()) {
+      int j = (int) (queue.poll() & 0xFFFFFFFFL);
+      if (isContracted[j]) {
+        continue;
+      }
+      int priority = getPriority(j, contractedNeighborCount[j]);
+      if (!queue.isEmpty() && getQueueEntry(priority, j) > queue.peek()) {
+        queue.add(getQueueEntry(priority, j));
+        continue;
+      }
+
+      contractJunction(j, false);
+      isContracted[j] = true;
+      rank[j] = contractedCount++;
+      for (int i = 0; i < outEdgeCount[j]; i++) {
+        contractedNeighborCount[edgeTarget[outEdges[j][i]]]++;
+      }
+      for (int i = 0; i < inEdgeCount[j]; i++) {
+        contractedNeighborCount[edgeSource[inEdges[j][i]]]++;
+      }
+    }
+  }
+
+  private static long getQueueEntry(int priority, int junctionId) {
+    return ((long) priority << 32) | junctionId;
+  }
+
+  /**
+   * Contraction priority of the junction: the number of shortcuts its contraction would add, less the number of its
+   * edges it would remove, plus the number of its neighbors already contracted.
+   */
+  private int getPriority(int junctionId, int contractedNeighborCount) {
+    int degree = 0;
+    for (int i = 0; i < outEdgeCount[junctionId]; i++) {
+      degree += isContracted[edgeTarget[outEdges[junctionId][i]]] ? 0 : 1;
+    }
+    for (int i = 0; i < inEdgeCount[junctionId]; i++) {
+      degree += isContracted[edgeSource[inEdges[junctionId][i]]] ? 0 : 1;
+    }
+    return contractJunction(junctionId, true) - degree + contractedNeighborCount;
+  }
+
+  /**
+   * Add the shortcuts needed for contracting the junction (or only count them, if simulating).
+   * 
+   * @return number of shortcuts
+   */
+  private int contractJunction(int v, boolean isSimulated) {
+    int shortcutCount = 0;
+    for (int i = 0; i < inEdgeCount[v]; i++) {
+      int a = inEdges[v][i];
+      int u = edgeSource[a];
+      if (isContracted[u] || !isCheapestEdge(a, inEdges[v], inEdgeCount[v], true)) {
+        continue;
+      }
+
+      int maxCost = -1;
+      for (int k = 0; k < outEdgeCount[v]; k++) {
+        int b = outEdges[v][k];
+        int w = edgeTarget[b];
+        if (!isContracted[w] && w != u) {
+          maxCost = Math.max(maxCost, edgeCost[a] + edgeCost[b]);
+        }
+      }
+      if (maxCost < 0) {
+        continue;
+      }
+
+      // look for witness routes from u that avoid v:
+      RoutingWorkspace ws = findWitnesses(u, v, maxCost);
+
+      int outCount = outEdgeCount[v];
+      for (int k = 0; k < outCount; k++) {
+        int b = outEdges[v][k];
+        int w = edgeTarget[b];
+        if (isContracted[w] || w == u || !isCheapestEdge(b, outEdges[v], outCount, false)) {
+          continue;
+        }
+        int cost = edgeCost[a] + edgeCost[b];
+        if (!ws.isReached(w) || ws.getDistance(w) > cost) {
+          shortcutCount++;
+          if (!isSimulated) {
+            addEdge(u, w, cost, -1, a, b);
+          }
+        }
+      }
+    }
+    return shortcutCount;
+  }
+
+  /**
+   * Is the edge the cheapest (with ties broken by edge index) among the listed parallel edges?
+   */
+  private boolean isCheapestEdge(int edge, int[] edges, int count, boolean isIncoming) {
+    int other = isIncoming ? edgeSource[edge] : edgeTarget[edge];
+    for (int i = 0; i < count; i++) {
+      int e = edges[i];
+      if (e != edge && (isIncoming ? edgeSource[e] : edgeTarget[e]) == other
+          && (edgeCost[e] < edgeCost[edge] || (edgeCost[e] == edgeCost[edge] && e < edge))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Limited Dijkstra search from the source among the uncontracted junctions, avoiding the given junction.
+   */
+  private RoutingWorkspace findWitnesses(int source, int avoidedJunctionId, int maxCost) {
+    RoutingWorkspace ws = RoutingWorkspace.get(junctionIdBound);
+    ws.update(source, 0, -1);
+    int settledCount = 0;
+    while (!ws.isQueueEmpty() && settledCount < witnessSettleLimit) {
+      int j = ws.poll();
+      int c = ws.getDistance(j);
+      if (c > maxCost) {
+        break;
+      }
+      settledCount++;
+      for (int i = 0; i < outEdgeCount[j]; i++) {
+        int e = outEdges[j][i];
+        int k = edgeTarget[e];
+        if (isContracted[k] || k == avoidedJunctionId) {
+          continue;
+        }
+        int c2 = c + edgeCost[e];
+        if (!ws.isReached(k) || c2 < ws.getDistance(k)) {
+          ws.update(k, c2, e);
+        }
+      }
+    }
+    return ws;
+  }
+
+  /**
+   * Sort the edges into upward edges by their source, and downward edges by their target.
+   */
+  private void makeSearchGraph() {
+    upOffset = new int[junctionIdBound + 1];
+    downOffset = new int[junctionIdBound + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      if (rank[edgeTarget[e]] > rank[edgeSource[e]]) {
+        upOffset[edgeSource[e] + 1]++;
+      } else {
+        downOffset[edgeTarget[e] + 1]++;
+      }
+    }
+    for (int j = 0; j < junctionIdBound; j++) {
+      upOffset[j + 1] += upOffset[j];
+      downOffset[j + 1] += downOffset[j];
+    }
+    upEdge = new int[upOffset[junctionIdBound]];
+    downEdge = new int[downOffset[junctionIdBound]];
+    int[] upCount = new int[junctionIdBound];
+    int[] downCount = new int[junctionIdBound];
+    for (int e = 0; e < edgeCount; e++) {
+      if (rank[edgeTarget[e]] > rank[edgeSource[e]]) {
+        upEdge[upOffset[edgeSource[e]] + upCount[edgeSource[e]]++] = e;
+      } else {
+        downEdge[downOffset[edgeTarget[e]] + downCount[edgeTarget[e]]++] = e;
+      }
+    }
+  }
+
+  public boolean isTravelTime() {
+    return isTravelTime;
+  }
+
+  public int getJunctionIdBound() {
+    return junctionIdBound;
+  }
+
+  /**
+   * Number of edges, including shortcuts.
+   */
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  public int getEdgeSource(int edge) {
+    return edgeSource[edge];
+  }
+
+  public int getEdgeTarget(int edge) {
+    return edgeTarget[edge];
+  }
+
+  public int getEdgeCost(int edge) {
+    return edgeCost[edge];
+  }
+
+  public int getFirstUpEdge(int junctionId) {
+    return upOffset[junctionId];
+  }
+
+  /**
+   * Index after the last upward edge leaving the junction.
+   */
+  public int getEndUpEdge(int junctionId) {
+    return upOffset[junctionId + 1];
+  }
+
+  /**
+   * Get an upward edge, by its index in [getFirstUpEdge(), getEndUpEdge()).
+   */
+  public int getUpEdge(int i) {
+    return upEdge[i];
+  }
+
+  public int getFirstDownEdge(int junctionId) {
+    return downOffset[junctionId];
+  }
+
+  /**
+   * Index after the last downward edge arriving to the junction.
+   */
+  public int getEndDownEdge(int junctionId) {
+    return downOffset[junctionId + 1];
+  }
+
+  /**
+   * Get a downward edge, by its index in [getFirstDownEdge(), getEndDownEdge()).
+   */
+  public int getDownEdge(int i) {
+    return downEdge[i];
+  }
+
+  /**
+   * Append the segments of the edge to the list, unpacking shortcuts recursively.
+   */
+  public void unpackEdge(int edge, List<Integer> segmentIds) {
+    if (edgeSegment[edge] != -1) {
+      segmentIds.add(edgeSegment[edge]);
+    } else {
+      unpackEdge(edgeChild1[edge], segmentIds);
+      unpackEdge(edgeChild2[edge], segmentIds);
+    }
+  }
+}
@@ -0,0 +1,259 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import edu.gatech.lbs.core.random.RandomStream;
+
+/**
+ * Shortest route costs between a few landmark junctions and all junctions of the road network graph, in both
+ * directions. By the triangle inequality, they give lower bounds of the cost between any two junctions, for A* search
+ * (ALT). Costs are distances [mm] or travel times at the speed limits [ms].
+ */
+public class LandmarkTable {
+  public static final int magic = 0x47544C4D; // "GTLM"
+  public static final byte version = 3;
+
+  public static final int unreachable = Integer.MAX_VALUE;
+
+  private int junctionIdBound;
+  private boolean isTravelTime;
+  private long fingerprint; // of the graph it was built from
+
+  // how the landmarks were selected (see setSelection()):
+  private String selection = "";
+  private int requestedCount;
+  private long seed;
+
+  private int[] landmarks; // junctionIds
+  // costs for landmark i & junction j are at [i * junctionIdBound + j]:
+  private int[] costFrom; // from landmark to junction
+  private int[] costTo; // from junction to landmark
+
+  /**
+   * Make the table for the given landmark junctions.
+   */
+  public LandmarkTable(RoadGraph g, int[] landmarks, boolean isTravelTime) {
+    init(g, landmarks.length, isTravelTime);
+    for (int i = 0; i < landmarks.length; i++) {
+      addLandmark(g, i, landmarks[i]);
+    }
+  }
+
+  /**
+   * Make the table for landmarks picked by farthest-point selection: each landmark is the junction farthest from the
+   * ones already picked, starting from the one farthest from a random junction. Fewer landmarks are picked, if fewer
+   * junctions are reachable from the first one.
+   */
+  public LandmarkTable(RoadGraph g, int landmarkCount, boolean isTravelTime, RandomStream rnd) {
+    init(g, landmarkCount, isTravelTime);
+
+    // cost from the nearest landmark picked so far:
+    int[] minCost = new int[junctionIdBound];
+    for (int j = 0; j < junctionIdBound; j++) {
+      minCost[j] = g.getFirstEdge(j) != g.getEndEdge(j) ? unreachable : -1;
+    }
+    int start;
+    do {
+      start = rnd.nextInt(junctionIdBound);
+    } while (minCost[start] == -1);
+
+    RoutingWorkspace ws = search(g, start, false);
+    int landmark = start;
+    for (int k = 0; k < ws.getReachedCount(); k++) {
+      int j = ws.getReached(k);
+      if (ws.getDistance(j) > ws.getDistance(landmark) || (ws.getDistance(j) == ws.getDistance(landmark) && j < landmark)) {
+        landmark = j;
+      }
+    }
+
+    for (int i = 0; i < landmarkCount; i++) {
+      addLandmark(g, i, landmark);
+
+      // next landmark:
+      int next = -1;
+      for (int j = 0; j < junctionIdBound; j++) {
+        int c = costFrom[i * junctionIdBound + j];
+        if (minCost[j] != -1 && c < minCost[j]) {
+          minCost[j] = c;
+        }
+        if (minCost[j] > 0 && minCost[j] != unreachable && (next == -1 || minCost[j] > minCost[next])) {
+          next = j;
+        }
+      }
+      if (next == -1 && i + 1 < landmarkCount) {
+        // every reachable junction is a landmark already:
+        landmarks = Arrays.copyOf(landmarks, i + 1);
+        costFrom = Arrays.copyOf(costFrom, (i + 1) * junctionIdBound);
+        costTo = Arrays.copyOf(costTo, (i + 1) * junctionIdBound);
+        break;
+      }
+      landmark = next;
+    }
+  }
+
+  /**
+   * Load a table saved by saveTo(), checking that it was made from the given graph with the same costs.
+   */
+  public LandmarkTable(DataInputStream in, RoadGraph g, boolean isTravelTime) throws IOException {
+    if (in.readInt() != magic || in.readByte() != version) {
+      throw new IOException("Not a landmark table file.");
+    }
+    this.isTravelTime = in.readBoolean();
+    junctionIdBound = in.readInt();
+    fingerprint = in.readLong();
+    if (this.isTravelTime != isTravelTime || junctionIdBound != g.getJunctionIdBound()
+        || fingerprint != g.getFingerprint()) {
+      throw new IOException("Landmark table was made for a different road network or metric.");
+    }
+
+    selection = in.readUTF();
+    requestedCount = in.readInt();
+    seed = in.readLong();
+
+    int landmarkCount = in.readInt();
+    landmarks = new int[landmarkCount];
+    for (int i = 0; i < landmarkCount; i++) {
+      landmarks[i] = in.readInt();
+    }
+    costFrom = new int[landmarkCount * junctionIdBound];
+    costTo = new int[landmarkCount * junctionIdBound];
+    for (int k = 0; k < costFrom.length; k++) {
+      costFrom[k] = in.readInt();
+    }
+    for (int k = 0; k < costTo.length; k++) {
+      costTo[k] = in.readInt();
+    }
+  }
+
+  public void saveTo(DataOutputStream out) throws IOException {
+    out.writeInt(magic);
+    out.writeByte(version);
+    out.writeBoolean(isTravelTime);
+    out.writeInt(junctionIdBound);
+    out.writeLong(fingerprint);
+    out.writeUTF(selection);
+    out.writeInt(requestedCount);
+    out.writeLong(seed);
+    out.writeInt(landmarks.length);
+    for (int i = 0; i < landmarks.length; i++) {
+      out.writeInt(landmarks[i]);
+    }
+    for (int k = 0; k < costFrom.length; k++) {
+      out.writeInt(costFrom[k]);
+    }
+    for (int k = 0; k < costTo.length; k++) {
+      out.writeInt(costTo[k]);
+    }
+  }
+
+  private void init(RoadGraph g, int landmarkCount, boolean isTravelTime) {
+    this.isTravelTime = isTravelTime;
+    junctionIdBound = g.getJunctionIdBound();
+    fingerprint = g.getFingerprint();
+    landmarks = new int[landmarkCount];
+    costFrom = new int[landmarkCount * junctionIdBound];
+    costTo = new int[landmarkCount * junctionIdBound];
+  }
+
+  private void addLandmark(RoadGraph g, int i, int landmark) {
+    landmarks[i] = landmark;
+    copyCosts(search(g, landmark, false), costFrom, i * junctionIdBound);
+    copyCosts(search(g, landmark, true), costTo, i * junctionIdBound);
+  }
+
+  private void copyCosts(RoutingWorkspace ws, int[] table, int offset) {
+    for (int j = 0; j < junctionIdBound; j++) {
+      table[offset + j] = ws.isReached(j) ? ws.getDistance(j) : unreachable;
+    }
+  }
+
+  /**
+   * Dijkstra search of the whole graph, from the junction (or towards it, if backward).
+   */
+  private RoutingWorkspace search(RoadGraph g, int junctionId, boolean isBackward) {
+    RoutingWorkspace ws = RoutingWorkspace.get(junctionIdBound);
+    ws.update(junctionId, 0, -1);
+    while (!ws.isQueueEmpty()) {
+      int j = ws.poll();
+      int c = ws.getDistance(j);
+      int end = isBackward ? g.getEndInEdge(j) : g.getEndEdge(j);
+      for (int i = isBackward ? g.getFirstInEdge(j) : g.getFirstEdge(j); i < end; i++) {
+        int e = isBackward ? g.getInEdge(i) : i;
+        int cost = isTravelTime ? g.getEdgeTravelTime(e) : g.getEdgeLength(e);
+        if (cost == RoadGraph.impassable) {
+          continue;
+        }
+        int c2 = c + cost;
+        int k = isBackward ? g.getEdgeSource(e) : g.getEdgeTarget(e);
+        if (!ws.isReached(k) || c2 < ws.getDistance(k)) {
+          ws.update(k, c2, -1);
+        }
+      }
+    }
+    return ws;
+  }
+
+  /**
+   * Record how the landmarks were selected: the selection method, the landmark count asked for (more than the count
+   * found, if the graph ran out of junctions), and the seed of the random stream used. These are saved in the header,
+   * so a table loaded from file can be checked against the config.
+   */
+  public void setSelection(String selection, int requestedCount, long seed) {
+    this.selection = selection;
+    this.requestedCount = requestedCount;
+    this.seed = seed;
+  }
+
+  public String getSelection() {
+    return selection;
+  }
+
+  public int getRequestedCount() {
+    return requestedCount;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public boolean isTravelTime() {
+    return isTravelTime;
+  }
+
+  public int getLandmarkCount() {
+    return landmarks.length;
+  }
+
+  public int getLandmark(int i) {
+    return landmarks[i];
+  }
+
+  /**
+   * Lower bound of the cost from one junction to another.
+   */
+  public int getLowerBound(int fromJunctionId, int toJunctionId) {
+    int bound = 0;
+    for (int i = 0, offset = 0; i < landmarks.length; i++, offset += junctionIdBound) {
+      // d(L,to) - d(L,from) <= d(from,to):
+      int lFrom = costFrom[offset + fromJunctionId];
+      int lTo = costFrom[offset + toJunctionId];
+      if (lFrom != unreachable && lTo != unreachable) {
+        bound = Math.max(bound, lTo - lFrom);
+      }
+      // d(from,L) - d(to,L) <= d(from,to):
+      int fromL = costTo[offset + fromJunctionId];
+      int toL = costTo[offset + toJunctionId];
+      if (fromL != unreachable && toL != unreachable) {
+        bound = Math.max(bound, fromL - toL);
+      }
+    }
+    return bound;
+  }
+}
@@ -0,0 +1,279 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet;
+
+import java.util.List;
+
+import edu.gatech.lbs.core.vector.CartesianVector;
+
+/**
+ * Immutable compressed sparse row (CSR) snapshot of the road network graph, for routing. Junctions and segments are
+ * indexed by their ids. The edges of a junction are the segments that can be entered on from it, in the same order as
+ * RoadJunction.getReachableRoads() lists them.
+ */
+public class RoadGraph {
+  // travel time of segments without a positive speed limit; searches by travel time never relax such edges:
+  public static final int impassable = Integer.MAX_VALUE;
+
+  // edges of junction j are [edgeOffset[j], edgeOffset[j+1]):
+  private final int[] edgeOffset; // junctionId --> first edge
+  private final int[] edgeTarget; // edge --> junctionId at the other end
+  private final int[] edgeSegment; // edge --> segmentId
+  private final int[] edgeLength; // edge --> [mm]
+  private final int[] edgeSpeedLimit; // edge --> [mm/s]
+  private final int[] edgeTravelTime; // edge --> [ms], rounded up
+  private final int[] edgeSource; // edge --> junctionId it starts from
+
+  // edges arriving to junction j are inEdge[inEdgeOffset[j]], ..., inEdge[inEdgeOffset[j+1]-1]:
+  private final int[] inEdgeOffset; // junctionId --> first incoming edge
+  private final int[] inEdge; // --> edge
+
+  private final int[] segmentSource; // segmentId --> source junctionId, or -1 if there is no such segment
+  private final int[] segmentTarget; // segmentId --> target junctionId, or -1 if there is no such segment
+  private final int[] segmentLength; // segmentId --> [mm]
+  private final boolean[] segmentDirected; // segmentId --> is one-way?
+  private final int[] segmentSpeedLimit; // segmentId --> [mm/s]
+
+  private final long[] junctionX; // junctionId --> [mm]
+  private final long[] junctionY; // junctionId --> [mm]
+  private int maxSpeedLimit; // [mm/s]
+
+  public RoadGraph(RoadMap roadmap) {
+    int junctionIdBound = 0;
+    int edgeCount = 0;
+    for (RoadJunction junction : roadmap.getRoadJunctions()) {
+      junctionIdBound = Math.max(junctionIdBound, junction.getId() + 1);
+      edgeCount += junction.getReachableRoads().size();
+    }
+    int segmentIdBound = 0;
+    for (RoadSegment segment : roadmap.getRoadSegments()) {
+      segmentIdBound = Math.max(segmentIdBound, segment.getId() + 1);
+    }
+
+    // edges:
+    edgeOffset = new int[junctionIdBound + 1];
+    for (RoadJunction junction : roadmap.getRoadJunctions()) {
+      edgeOffset[junction.getId() + 1] = junction.getReachableRoads().size();
+    }
+    for (int j = 0; j < junctionIdBound; j++) {
+      edgeOffset[j + 1] += edgeOffset[j];
+    }
+    edgeTarget = new int[edgeCount];
+    edgeSegment = new int[edgeCount];
+    edgeLength = new int[edgeCount];
+    edgeSpeedLimit = new int[edgeCount];
+    edgeTravelTime = new int[edgeCount];
+    edgeSource = new int[edgeCount];
+    for (RoadJunction junction : roadmap.getRoadJunctions()) {
+      int e = edgeOffset[junction.getId()];
+      List<RoadSegment> reachableSegments = junction.getReachableRoads();
+      for (RoadSegment segment : reachableSegments) {
+        edgeTarget[e] = segment.getOtherJunction(junction).getId();
+        edgeSegment[e] = segment.getId();
+        edgeLength[e] = segment.getLength();
+        edgeSpeedLimit[e] = segment.getSpeedLimit();
+        edgeTravelTime[e] = getTravelTime(edgeLength[e], edgeSpeedLimit[e]);
+        edgeSource[e] = junction.getId();
+        e++;
+      }
+    }
+
+    // incoming edges, for searching backwards:
+    inEdgeOffset = new int[junctionIdBound + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      inEdgeOffset[edgeTarget[e] + 1]++;
+    }
+    for (int j = 0; j < junctionIdBound; j++) {
+      inEdgeOffset[j + 1] += inEdgeOffset[j];
+    }
+    inEdge = new int[edgeCount];
+    int[] inEdgeCount = new int[junctionIdBound];
+    for (int e = 0; e < edgeCount; e++) {
+      int j = edgeTarget[e];
+      inEdge[inEdgeOffset[j] + inEdgeCount[j]++] = e;
+    }
+
+    // segments:
+    segmentSource = new int[segmentIdBound];
+    segmentTarget = new int[segmentIdBound];
+    segmentLength = new int[segmentIdBound];
+    segmentDirected = new boolean[segmentIdBound];
+    segmentSpeedLimit = new int[segmentIdBound];
+    for (int s = 0; s < segmentIdBound; s++) {
+      segmentSource[s] = -1;
+      segmentTarget[s] = -1;
+    }
+    for (RoadSegment segment : roadmap.getRoadSegments()) {
+      int s = segment.getId();
+      segmentSource[s] = segment.getSourceJunction().getId();
+      segmentTarget[s] = segment.getTargetJunction().getId();
+      segmentLength[s] = segment.getLength();
+      segmentDirected[s] = segment.isDirected();
+      segmentSpeedLimit[s] = segment.getSpeedLimit();
+      maxSpeedLimit = Math.max(maxSpeedLimit, segment.getSpeedLimit());
+    }
+
+    // junction locations:
+    junctionX = new long[junctionIdBound];
+    junctionY = new long[junctionIdBound];
+    for (RoadJunction junction : roadmap.getRoadJunctions()) {
+      CartesianVector location = junction.getCartesianLocation();
+      if (location != null) {
+        junctionX[junction.getId()] = location.getX();
+        junctionY[junction.getId()] = location.getY();
+      }
+    }
+  }
+
+  /**
+   * Time in milliseconds to travel the given length at the given speed, rounded up; or impassable, if the speed is not
+   * positive.
+   */
+  public static int getTravelTime(int length, int speedLimit) {
+    if (speedLimit <= 0) {
+      return impassable;
+    }
+    return (int) ((1000L * length + speedLimit - 1) / speedLimit);
+  }
+
+  /**
+   * Hash of the graph's structure, lengths & speed limits, for checking that data precomputed from a graph (and
+   * saved to file) still belongs to it.
+   */
+  public long getFingerprint() {
+    long h = getJunctionIdBound();
+    for (int e = 0; e < getEdgeCount(); e++) {
+      h = 31 * h + edgeSource[e];
+      h = 31 * h + edgeTarget[e];
+      h = 31 * h + edgeSegment[e];
+      h = 31 * h + edgeLength[e];
+      h = 31 * h + edgeSpeedLimit[e];
+    }
+    return h;
+  }
+
+  /**
+   * Upper bound (exclusive) of junction ids.
+   */
+  public int getJunctionIdBound() {
+    return edgeOffset.length - 1;
+  }
+
+  /**
+   * Upper bound (exclusive) of segment ids.
+   */
+  public int getSegmentIdBound() {
+    return segmentSource.length;
+  }
+
+  public int getEdgeCount() {
+    return edgeTarget.length;
+  }
+
+  public int getFirstEdge(int junctionId) {
+    return edgeOffset[junctionId];
+  }
+
+  /**
+   * Index after the last edge of the junction.
+   */
+  public int getEndEdge(int junctionId) {
+    return edgeOffset[junctionId + 1];
+  }
+
+  public int getEdgeTarget(int edge) {
+    return edgeTarget[edge];
+  }
+
+  public int getEdgeSegment(int edge) {
+    return edgeSegment[edge];
+  }
+
+  public int getEdgeLength(int edge) {
+    return edgeLength[edge];
+  }
+
+  public int getEdgeSpeedLimit(int edge) {
+    return edgeSpeedLimit[edge];
+  }
+
+  /**
+   * Time to travel the edge at the speed limit [ms].
+   */
+  public int getEdgeTravelTime(int edge) {
+    return edgeTravelTime[edge];
+  }
+
+  public int getEdgeSource(int edge) {
+    return edgeSource[edge];
+  }
+
+  public int getFirstInEdge(int junctionId) {
+    return inEdgeOffset[junctionId];
+  }
+
+  /**
+   * Index after the last incoming edge of the junction.
+   */
+  public int getEndInEdge(int junctionId) {
+    return inEdgeOffset[junctionId + 1];
+  }
+
+  /**
+   * Get an edge arriving to a junction, by its index in [getFirstInEdge(), getEndInEdge()).
+   */
+  public int getInEdge(int i) {
+    return inEdge[i];
+  }
+
+  public int getSegmentSource(int segmentId) {
+    return segmentSource[segmentId];
+  }
+
+  public int getSegmentTarget(int segmentId) {
+    return segmentTarget[segmentId];
+  }
+
+  public int getSegmentLength(int segmentId) {
+    return segmentLength[segmentId];
+  }
+
+  public boolean isSegmentDirected(int segmentId) {
+    return segmentDirected[segmentId];
+  }
+
+  public int getSegmentSpeedLimit(int segmentId) {
+    return segmentSpeedLimit[segmentId];
+  }
+
+  /**
+   * Highest speed limit in the network [mm/s].
+   */
+  public int getMaxSpeedLimit() {
+    return maxSpeedLimit;
+  }
+
+  public long getJunctionX(int junctionId) {
+    return junctionX[junctionId];
+  }
+
+  public long getJunctionY(int junctionId) {
+    return junctionY[junctionId];
+  }
+
+  /**
+   * Index of the junction among the segment's ends (0: source, 1: target), or -1 if it is not an end of the segment.
+   * Same as RoadSegment.getJunctionIndex().
+   */
+  public int getJunctionIndex(int segmentId, int junctionId) {
+    if (segmentSource[segmentId] == junctionId) {
+      return 0;
+    } else if (segmentTarget[segmentId] == junctionId) {
+      return 1;
+    } else {
+      return -1;
+    }
+  }
+}
@@ -6,17 +6,32 @@ package edu.gatech.lbs.core.world.roadnet;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import edu.gatech.lbs.core.logging.Logz;
+import edu.gatech.lbs.core.logging.Varz;
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.CartesianVector;
 import edu.gatech.lbs.core.vector.RoadnetVector;
 import edu.gatech.lbs.core.world.BoundingBox;
 import edu.gatech.lbs.core.world.IWorld;
 import edu.gatech.lbs.core.world.roadnet.partition.Partition;
+import edu.gatech.lbs.core.world.roadnet.partition.PartitionTableCache;
+import edu.gatech.lbs.core.world.roadnet.route.DijkstraRoutingEngine;
+import edu.gatech.lbs.core.world.roadnet.route.IRoutingEngine;
 import edu.gatech.lbs.core.world.roadnet.route.Route;
 
 public class RoadMap implements IWorld {
@@ -24,9 +39,18 @@ public class RoadMap implements IWorld {
   protected HashMap<Integer, RoadSegment> segments; // segmentId --> segment
   protected HashMap<Integer, RoadJunction> junctions; // junctionId --> junction
 
+  // id-indexed copies of the above, for lookups without boxing & hashing (null, until compacted):
+  protected RoadSegment[] segmentIndex; // segmentId --> segment
+  protected RoadJunction[] junctionIndex; // junctionId --> junction
+
+  private volatile RoadGraph graph; // routing snapshot, rebuilt on demand after changes
+  private volatile RoadSegmentGrid segmentGrid; // spatial index, rebuilt on demand after changes
+  private IRoutingEngine routingEngine;
+
   private int highestSegmentId;
 
   private Collection<Partition> partitions;
+  private PartitionTableCache partitionTableCache; // if set, new partitions are lazy, and their tables are cached here
 
   private BoundingBox bounds;
 
@@ -40,6 +64,50 @@ public class RoadMap implements IWorld {
     highestSegmentId = -1;
 
     bounds = new BoundingBox();
+
+    routingEngine = new DijkstraRoutingEngine(this);
+  }
+
+  /**
+   * Switch to dense array storage for id lookups. Ids are expected to be mostly dense (as assigned by the map
+   * parsers), so this should be done after the map is loaded & pruned. Later changes to the map are also kept in the
+   * arrays.
+   */
+  public void compact() {
+    int maxJunctionId = -1;
+    for (RoadJunction junction : junctions.values()) {
+      maxJunctionId = Math.max(maxJunctionId, junction.getId());
+    }
+
+    segmentIndex = new RoadSegment[highestSegmentId + 1];
+    for (RoadSegment segment : segments.values()) {
+      segmentIndex[segment.getId()] = segment;
+    }
+    junctionIndex = new RoadJunction[maxJunctionId + 1];
+    for (RoadJunction junction : junctions.values()) {
+      junctionIndex[junction.getId()] = junction;
+    }
+  }
+
+  public boolean isCompact() {
+    return segmentIndex != null;
+  }
+
+  /**
+   * Get the CSR snapshot of the road network graph, building it if the map has changed since the last call.
+   */
+  public RoadGraph getGraph() {
+    RoadGraph g = graph;
+    if (g == null) {
+      synchronized (this) {
+        g = graph;
+        if (g == null) {
+          g = new RoadGraph(this);
+          graph = g;
+        }
+      }
+    }
+    return g;
   }
 
   public int getRoadSegmentCount() {
@@ -62,14 +130,28 @@ public class RoadMap implements IWorld {
     }
 
     // store segment:
+    graph = null;
+    segmentGrid = null;
     segments.put(segment.getId(), segment);
     highestSegmentId = Math.max(highestSegmentId, segment.getId());
+    if (segmentIndex != null) {
+      if (segment.getId() >= segmentIndex.length) {
+        segmentIndex = Arrays.copyOf(segmentIndex, Math.max(segment.getId() + 1, 2 * segmentIndex.length));
+      }
+      segmentIndex[segment.getId()] = segment;
+    }
 
     // store junctions:
     for (int i = 0; i < 2; i++) {
       RoadJunction junction = segment.getEndJunction(i);
       if (!junctions.containsKey(junction.getId())) {
         junctions.put(junction.getId(), junction);
+        if (junctionIndex != null) {
+          if (junction.getId() >= junctionIndex.length) {
+            junctionIndex = Arrays.copyOf(junctionIndex, Math.max(junction.getId() + 1, 2 * junctionIndex.length));
+          }
+          junctionIndex[junction.getId()] = junction;
+        }
       }
     }
 
@@ -87,23 +169,81 @@ public class RoadMap implements IWorld {
    */
   public void removeRoadSegment(RoadSegment segment) {
     // remove segment:
+    graph = null;
+    segmentGrid = null;
     segments.remove(segment.getId());
+    if (segmentIndex != null) {
+      segmentIndex[segment.getId()] = null;
+    }
 
     // remove segment from junctions, and also remove unconnected junctions:
     for (int i = 0; i < 2; i++) {
       RoadJunction junction = segment.getEndJunction(i);
       junction.removeRoad(segment);
       if (junction.getDegree() == 0) {
-        junctions.remove(junction);
+        junctions.remove(junction.getId());
+        if (junctionIndex != null) {
+          junctionIndex[junction.getId()] = null;
+        }
       }
     }
   }
 
+  /**
+   * Remove many segments at once, eg. whole disconnected components. Junctions left without roads are dropped
+   * outright, instead of detaching the removed segments from them one by one.
+   */
+  public void removeRoadSegments(Collection<RoadSegment> trash) {
+    graph = null;
+    segmentGrid = null;
+    BitSet isTrash = new BitSet();
+    for (RoadSegment segment : trash) {
+      isTrash.set(segment.getId());
+    }
+
+    for (RoadSegment segment : trash) {
+      segments.remove(segment.getId());
+      if (segmentIndex != null) {
+        segmentIndex[segment.getId()] = null;
+      }
+
+      for (int i = 0; i < 2; i++) {
+        RoadJunction junction = segment.getEndJunction(i);
+        if (junctions.get(junction.getId()) != junction) {
+          continue; // dropped already
+        }
+        if (isAllTrash(junction.getOriginatingRoads(), isTrash) && isAllTrash(junction.getTerminatingRoads(), isTrash)) {
+          junctions.remove(junction.getId());
+          if (junctionIndex != null) {
+            junctionIndex[junction.getId()] = null;
+          }
+        } else {
+          junction.removeRoad(segment);
+        }
+      }
+    }
+  }
+
+  private static boolean isAllTrash(Collection<RoadSegment> roads, BitSet isTrash) {
+    for (RoadSegment road : roads) {
+      if (!isTrash.get(road.getId())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public RoadSegment getRoadSegment(int segmentId) {
+    if (segmentIndex != null) {
+      return (segmentId >= 0 && segmentId < segmentIndex.length) ? segmentIndex[segmentId] : null;
+    }
     return segments.get(segmentId);
   }
 
   public RoadJunction getRoadJunction(int junctionId) {
+    if (junctionIndex != null) {
+      return (junctionId >= 0 && junctionId < junctionIndex.length) ? junctionIndex[junctionId] : null;
+    }
     return junctions.get(junctionId);
   }
 
@@ -144,7 +284,7 @@ public class RoadMap implements IWorld {
       lengthMin = Math.min(lengthMin, length);
       lengthMax = Math.max(lengthMax, length);
 
-      int points = segment.getGeometry().getPoints().length;
+      int points = segment.getGeometry().getPointCount();
       pointsTotal += points;
       pointsMin = Math.min(pointsMin, points);
       pointsMax = Math.max(pointsMax, points);
@@ -184,9 +324,13 @@ public class RoadMap implements IWorld {
         + String.format("%.1f", degAvg) + ", max= " + degMax);
   }
 
-  protected Collection<RoadJunction> getRoadJunctionsInOrder(int orderingMode) {
-    TreeSet<RoadJunctionDistance> juncSet = new TreeSet<RoadJunctionDistance>();
-
+  /**
+   * Get the ids of all junctions, in the order they are to be tried as partition seeds: by decreasing speed-thru if
+   * orderingMode is 1, otherwise in random order. Ties are broken by junctionId.
+   */
+  protected int[] getRoadJunctionIdsInOrder(int orderingMode, RandomStream rnd) {
+    long[] keys = new long[junctions.size()]; // (score, junctionId) pairs, for sorting
+    int i = 0;
     for (RoadJunction junction : junctions.values()) {
       int score = 0;
       switch (orderingMode) {
@@ -198,42 +342,73 @@ public class RoadMap implements IWorld {
           break;
         default:
           // random order:
-          score = (int) (1e6 * Math.random());
+          score = (int) (1e6 * rnd.nextDouble());
       }
 
-      juncSet.add(new RoadJunctionDistance(junction, score));
+      keys[i++] = ((long) score << 32) | junction.getId();
     }
+    Arrays.sort(keys);
 
-    List<RoadJunction> juncs = new LinkedList<RoadJunction>();
-    for (RoadJunctionDistance junc : juncSet) {
-      juncs.add(junc.junction);
+    int[] juncs = new int[keys.length];
+    for (i = 0; i < keys.length; i++) {
+      juncs[i] = (int) keys[i];
     }
     return juncs;
   }
 
   /**
    * Partition the roadnet.
+   * 
+   * @param rnd
+   *          stream used to order the partition seed junctions, if seedPriorityMode is random (may be null otherwise)
+   */
+  public Collection<Partition> makePartitions(int partitionRadius, int distanceMode, int seedPriorityMode, RandomStream rnd) {
+    return makePartitions(partitionRadius, distanceMode, seedPriorityMode, rnd, 1);
+  }
+
+  /**
+   * Partition the roadnet.
+   * 
+   * @param rnd
+   *          stream used to order the partition seed junctions, if seedPriorityMode is random (may be null otherwise)
+   * @param threadCount
+   *          if more than 1, partitions are grown from this many seeds at a time, concurrently (see
+   *          growRegions() & RegionGrowTask); the result does not depend on thread scheduling, but differs from the
+   *          sequential partitioning
    */
-  public Collection<Partition> makePartitions(int partitionRadius, int distanceMode, int seedPriorityMode) {
+  public Collection<Partition> makePartitions(int partitionRadius, int distanceMode, int seedPriorityMode, RandomStream rnd, int threadCount) {
+    if (distanceMode < 1 || distanceMode > 3) {
+      Logz.println("Partitioning failed on invalid mode.");
+      System.exit(-1);
+    }
     partitions = new ArrayList<Partition>();
+    RoadGraph g = getGraph();
 
-    HashMap<Integer, Integer> segmentStatus = new HashMap<Integer, Integer>(); // segmentID --> partitionID
-    HashMap<Integer, Integer> junctionStatus = new HashMap<Integer, Integer>(); // junctionID --> code (1: in partition,
-                                                                                // 2: border point)
+    int[] segmentStatus = new int[g.getSegmentIdBound()]; // segmentID --> partitionID (-1: uncovered)
+    Arrays.fill(segmentStatus, -1);
+    int segmentStatusCount = 0;
+    byte[] junctionStatus = new byte[g.getJunctionIdBound()]; // junctionID --> code (0: uncovered, 1: in partition,
+                                                              // 2: border point)
+    int junctionStatusCount = 0;
 
-    LinkedList<RoadJunction> juncs = new LinkedList<RoadJunction>(getRoadJunctionsInOrder(seedPriorityMode));
+    int[] juncs = getRoadJunctionIdsInOrder(seedPriorityMode, rnd);
+    int nextJunc = 0; // juncs before this are all covered
+
+    ForkJoinPool pool = (threadCount > 1 ? new ForkJoinPool(threadCount) : null);
+    int[] aliveStamp = (threadCount > 1 ? new int[g.getJunctionIdBound()] : null); // junctionID --> last region reaching it
+    int regionCount = 0;
 
     // while there are uncovered segments:
-    while (segmentStatus.size() < segments.size()) {
+    while (segmentStatusCount < segments.size()) {
       // if there are no completely uncovered junctions, only 1-segment partition(s) remain:
-      if (junctionStatus.size() == junctions.size()) {
+      if (junctionStatusCount == junctions.size()) {
         // find all uncovered segments, and make a partition out of each:
         for (Integer segmentId : segments.keySet()) {
-          if (segmentStatus.containsKey(segmentId)) {
+          if (segmentStatus[segmentId] != -1) {
             continue;
           }
           Partition p = new Partition(partitions.size());
-          RoadSegment seg = segments.get(segmentId);
+          RoadSegment seg = getRoadSegment(segmentId);
           p.addSegment(seg);
           Collection<RoadJunction> B = new LinkedList<RoadJunction>();
           B.add(seg.startJunction);
@@ -241,97 +416,117 @@ public class RoadMap implements IWorld {
           p.setBorderPoints(B);
           partitions.add(p);
 
-          segmentStatus.put(segmentId, p.getId());
+          segmentStatus[segmentId] = p.getId();
+          segmentStatusCount++;
+        }
+      } else if (pool != null) {
+        // next uncovered seeds:
+        List<Integer> seeds = new ArrayList<Integer>(threadCount);
+        for (int i = nextJunc; i < juncs.length && seeds.size() < threadCount; i++) {
+          if (junctionStatus[juncs[i]] == 0) {
+            seeds.add(juncs[i]);
+          } else if (seeds.isEmpty()) {
+            nextJunc = i + 1;
+          }
+        }
+
+        List<RegionClaim> claims = growRegions(pool, g, segmentStatus, seeds, partitionRadius, distanceMode);
+
+        // resolve conflicts in seed order: a region keeps the segments not kept by earlier regions, as long as they
+        // are still connected to its seed:
+        for (RegionClaim claim : claims) {
+          int stamp = ++regionCount;
+          aliveStamp[claim.seedId] = stamp;
+          junctionStatusCount += junctionStatus[claim.seedId] == 0 ? 1 : 0;
+          junctionStatus[claim.seedId] = 1;
+
+          Partition p = null;
+          for (int k = 0; k < claim.count; k++) {
+            int segId = claim.segment[k];
+            if (segmentStatus[segId] != -1 || aliveStamp[claim.fromJunction[k]] != stamp) {
+              continue;
+            }
+            if (p == null) {
+              p = new Partition(partitions.size());
+            }
+            segmentStatus[segId] = p.getId();
+            segmentStatusCount++;
+            p.addSegment(getRoadSegment(segId));
+
+            int otherEndId = claim.toJunction[k];
+            aliveStamp[otherEndId] = stamp;
+            junctionStatusCount += junctionStatus[otherEndId] == 0 ? 1 : 0;
+            junctionStatus[otherEndId] = 1;
+          }
+          if (p != null) {
+            partitions.add(p);
+          }
         }
       } else {
         Partition p = new Partition(partitions.size());
-        TreeSet<RoadJunctionDistance> junctionQueue = new TreeSet<RoadJunctionDistance>();
-        HashMap<Integer, RoadJunctionDistance> junctionDist = new HashMap<Integer, RoadJunctionDistance>(); // junctionID
-                                                                                                            // -->
-                                                                                                            // minDist
-        List<RoadJunction> borderPoints = new LinkedList<RoadJunction>(); // partition border points
-
-        RoadJunction seedJun = juncs.poll();
-        while (junctionStatus.containsKey(seedJun.getId())) {
-          seedJun = juncs.poll();
+        List<RoadJunction> borderPoints = new ArrayList<RoadJunction>(); // partition border points
+
+        while (junctionStatus[juncs[nextJunc]] != 0) {
+          nextJunc++;
         }
-        int d = 0;
-        RoadJunctionDistance seedDist = new RoadJunctionDistance(seedJun, d);
-        junctionQueue.add(seedDist);
-        junctionDist.put(seedJun.getId(), seedDist);
-
-        while (!junctionQueue.isEmpty()) {
-          RoadJunction jun = junctionQueue.pollFirst().junction;
-          d = junctionDist.get(jun.getId()).distance;
-          if (d <= partitionRadius) {
-            junctionStatus.put(jun.getId(), 1);
-            List<RoadSegment> reachableSegments = jun.getReachableRoads();
-            for (RoadSegment seg : reachableSegments) {
-              // if segment is uncovered:
-              if (!segmentStatus.containsKey(seg.getId())) {
-                segmentStatus.put(seg.getId(), p.getId());
-                p.addSegment(seg);
-
-                int d2 = 0;
-                switch (distanceMode) {
-                  case 1:
-                    d2 = d + 1; // hop; [count]
-                    break;
-                  case 2:
-                    d2 = d + seg.getLength(); // road-distance; [mm]
-                    break;
-                  case 3:
-                    d2 = d + 1000 * (int) ((double) seg.getLength() / seg.getSpeedLimit()); // travel-distance; [ms]
-                    break;
-                  default:
-                    Logz.println("Partitioning failed on invalid mode.");
-                    System.exit(-1);
-                }
-
-                RoadJunction otherEnd = seg.getOtherJunction(jun);
-
-                // if other end is already a border in another partition, it must be a border in this one too:
-                if (junctionStatus.containsKey(otherEnd.getId()) && junctionStatus.get(otherEnd.getId()) == 2) {
-                  borderPoints.add(otherEnd);
-                } else {
-                  // set the shortest available distance for the other end-junction:
-                  RoadJunctionDistance d3 = junctionDist.get(otherEnd.getId());
-                  if (d3 == null || d2 < d3.distance) {
-                    if (d3 != null) {
-                      junctionQueue.remove(d3);
-                    }
-                    RoadJunctionDistance otherDist = new RoadJunctionDistance(otherEnd, d2);
-                    junctionQueue.add(otherDist);
-                    junctionDist.put(otherEnd.getId(), otherDist);
-
-                    // mark as internal point:
-                    junctionStatus.put(otherEnd.getId(), 1);
-                  }
-                }
+        int seedJunId = juncs[nextJunc];
+        RoutingWorkspace ws = RoutingWorkspace.get(g.getJunctionIdBound());
+        ws.update(seedJunId, 0, -1);
+
+        while (!ws.isQueueEmpty()) {
+          int junId = ws.peek();
+          int d = ws.getDistance(junId);
+          if (d > partitionRadius) {
+            // over-the-range junctions stay in the queue:
+            break;
+          }
+          ws.poll();
+          junctionStatusCount += junctionStatus[junId] == 0 ? 1 : 0;
+          junctionStatus[junId] = 1;
+          for (int e = g.getFirstEdge(junId); e < g.getEndEdge(junId); e++) {
+            int segId = g.getEdgeSegment(e);
+            // if segment is uncovered:
+            if (segmentStatus[segId] == -1) {
+              segmentStatus[segId] = p.getId();
+              segmentStatusCount++;
+              p.addSegment(getRoadSegment(segId));
+
+              int d2 = d + getPartitionDistance(g, e, distanceMode);
+              int otherEndId = g.getEdgeTarget(e);
+
+              // if other end is already a border in another partition, it must be a border in this one too:
+              if (junctionStatus[otherEndId] == 2) {
+                borderPoints.add(getRoadJunction(otherEndId));
+              } else if (!ws.isReached(otherEndId) || d2 < ws.getDistance(otherEndId)) {
+                // set the shortest available distance for the other end-junction:
+                ws.update(otherEndId, d2, segId);
+
+                // mark as internal point:
+                junctionStatusCount += junctionStatus[otherEndId] == 0 ? 1 : 0;
+                junctionStatus[otherEndId] = 1;
               }
             }
-          } else {
-            // push back over-the-range junction:
-            junctionQueue.add(new RoadJunctionDistance(jun, d));
-            break;
           }
         }
 
         // all junctions remaining in the queue are borders (too-far other-ends of in-partition segments),
         // except those that only have outlets into the current precinct:
-        for (RoadJunctionDistance roadJunctionDist : junctionQueue) {
-          RoadJunction roadJunction = roadJunctionDist.junction;
-          List<RoadSegment> reachableSegments = roadJunction.getReachableRoads();
-          for (RoadSegment roadSegment : reachableSegments) {
-            if (!segmentStatus.containsKey(roadSegment.getId()) || segmentStatus.get(roadSegment.getId()) != p.getId()) {
-              borderPoints.add(roadJunction);
+        for (int i = 0; i < ws.getReachedCount(); i++) {
+          int junId = ws.getReached(i);
+          if (!ws.isQueued(junId)) {
+            continue;
+          }
+          for (int e = g.getFirstEdge(junId); e < g.getEndEdge(junId); e++) {
+            if (segmentStatus[g.getEdgeSegment(e)] != p.getId()) {
+              borderPoints.add(getRoadJunction(junId));
               break;
             }
           }
         }
         // mark as border:
         for (RoadJunction point : borderPoints) {
-          junctionStatus.put(point.getId(), 2);
+          junctionStatusCount += junctionStatus[point.getId()] == 0 ? 1 : 0;
+          junctionStatus[point.getId()] = 2;
         }
 
         // don't bother with border-points (& distance pre-calculation), when looking for connected components:
@@ -343,9 +538,243 @@ public class RoadMap implements IWorld {
 
     }
 
+    if (pool != null) {
+      pool.shutdown();
+      // border points are the junctions with segments in other partitions:
+      if (partitionRadius < Integer.MAX_VALUE) {
+        for (Partition p : partitions) {
+          List<RoadJunction> borderPoints = new ArrayList<RoadJunction>();
+          for (RoadSegment segment : p.getSegments()) {
+            for (int i = 0; i < 2; i++) {
+              int junId = segment.getEndJunction(i).getId();
+              if (isPartitionBorder(g, segmentStatus, junId, p.getId())) {
+                borderPoints.add(getRoadJunction(junId));
+              }
+            }
+          }
+          p.setBorderPoints(borderPoints);
+        }
+      }
+    }
+
+    if (partitionRadius < Integer.MAX_VALUE) {
+      if (partitionTableCache != null) {
+        // tables are computed on first use:
+        for (Partition p : partitions) {
+          p.setTableCache(partitionTableCache);
+        }
+      } else {
+        precomputePartitions(partitions, Runtime.getRuntime().availableProcessors());
+      }
+    }
+
     return partitions;
   }
 
+  /**
+   * Length of an edge, as measured for partitioning: 1 hop (distanceMode 1), its length [mm] (2), or its travel time
+   * in whole seconds [ms] (3).
+   */
+  private static int getPartitionDistance(RoadGraph g, int edge, int distanceMode) {
+    switch (distanceMode) {
+      case 1:
+        return 1; // hop; [count]
+      case 2:
+        return g.getEdgeLength(edge); // road-distance; [mm]
+      default:
+        return 1000 * (int) ((double) g.getEdgeLength(edge) / g.getEdgeSpeedLimit(edge)); // travel-distance; [ms]
+    }
+  }
+
+  /**
+   * Is the junction an end of a segment in another partition (or of an uncovered segment)?
+   */
+  private static boolean isPartitionBorder(RoadGraph g, int[] segmentStatus, int junId, int partitionId) {
+    for (int e = g.getFirstEdge(junId); e < g.getEndEdge(junId); e++) {
+      if (segmentStatus[g.getEdgeSegment(e)] != partitionId) {
+        return true;
+      }
+    }
+    for (int i = g.getFirstInEdge(junId); i < g.getEndInEdge(junId); i++) {
+      if (segmentStatus[g.getEdgeSegment(g.getInEdge(i))] != partitionId) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Grow a tentative region from each seed concurrently, each over the uncovered segments within the radius, as if it
+   * was the only one. Regions may overlap; the claims are returned in seed order, for conflict resolution.
+   */
+  private static List<RegionClaim> growRegions(ForkJoinPool pool, RoadGraph g, int[] segmentStatus, List<Integer> seeds, int partitionRadius, int distanceMode) {
+    List<RegionGrowTask> tasks = new ArrayList<RegionGrowTask>(seeds.size());
+    for (int seedId : seeds) {
+      tasks.add(new RegionGrowTask(g, segmentStatus, seedId, partitionRadius, distanceMode));
+    }
+    List<RegionClaim> claims = new ArrayList<RegionClaim>(seeds.size());
+    try {
+      for (Future<RegionClaim> future : pool.invokeAll(tasks)) {
+        claims.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+    return claims;
+  }
+
+  /**
+   * Segments of a tentative region, in the order they were claimed, each with the junction it was claimed from, and
+   * its other end.
+   */
+  private static class RegionClaim {
+    int seedId;
+    int count;
+    int[] segment = new int[16];
+    int[] fromJunction = new int[16];
+    int[] toJunction = new int[16];
+
+    void add(int segId, int fromJunId, int toJunId) {
+      if (count == segment.length) {
+        segment = Arrays.copyOf(segment, 2 * count);
+        fromJunction = Arrays.copyOf(fromJunction, 2 * count);
+        toJunction = Arrays.copyOf(toJunction, 2 * count);
+      }
+      segment[count] = segId;
+      fromJunction[count] = fromJunId;
+      toJunction[count] = toJunId;
+      count++;
+    }
+  }
+
+  /**
+   * Grows a tentative region from a seed, with a Dijkstra search bounded by the partition radius, claiming each
+   * uncovered segment when first leaving a junction on it. The shared segment status is only read.
+   */
+  private static class RegionGrowTask implements Callable<RegionClaim> {
+    private final RoadGraph g;
+    private final int[] segmentStatus;
+    private final int seedId;
+    private final int partitionRadius;
+    private final int distanceMode;
+
+    public RegionGrowTask(RoadGraph g, int[] segmentStatus, int seedId, int partitionRadius, int distanceMode) {
+      this.g = g;
+      this.segmentStatus = segmentStatus;
+      this.seedId = seedId;
+      this.partitionRadius = partitionRadius;
+      this.distanceMode = distanceMode;
+    }
+
+    public RegionClaim call() {
+      RegionClaim claim = new RegionClaim();
+      claim.seedId = seedId;
+      BitSet claimed = new BitSet();
+
+      RoutingWorkspace ws = RoutingWorkspace.get(g.getJunctionIdBound());
+      ws.update(seedId, 0, -1);
+      while (!ws.isQueueEmpty()) {
+        int junId = ws.poll();
+        int d = ws.getDistance(junId);
+        if (d > partitionRadius) {
+          break;
+        }
+        for (int e = g.getFirstEdge(junId); e < g.getEndEdge(junId); e++) {
+          int segId = g.getEdgeSegment(e);
+          if (segmentStatus[segId] != -1 || claimed.get(segId)) {
+            continue;
+          }
+          claimed.set(segId);
+          int otherEndId = g.getEdgeTarget(e);
+          claim.add(segId, junId, otherEndId);
+
+          int d2 = d + getPartitionDistance(g, e, distanceMode);
+          if (!ws.isReached(otherEndId) || d2 < ws.getDistance(otherEndId)) {
+            ws.update(otherEndId, d2, segId);
+          }
+        }
+      }
+      return claim;
+    }
+  }
+
+  /**
+   * Precompute the node-to-node tables of the partitions concurrently, on a fork-join pool. The number of partitions
+   * done so far is reported in Varz as partitionsPrecomputed.
+   */
+  public static void precomputePartitions(Collection<Partition> partitions, int threadCount) {
+    final Partition[] parts = partitions.toArray(new Partition[partitions.size()]);
+    final AtomicInteger doneCount = new AtomicInteger();
+    Varz.set("partitionsPrecomputed", 0);
+    long wallStartTime = System.nanoTime();
+
+    ForkJoinPool pool = new ForkJoinPool(threadCount);
+    ForkJoinTask<Void> task = pool.submit(new PartitionPrecomputeAction(parts, 0, parts.length, doneCount));
+    try {
+      while (true) {
+        try {
+          task.get(1, TimeUnit.SECONDS);
+          break;
+        } catch (TimeoutException e) {
+          Varz.set("partitionsPrecomputed", doneCount.get());
+        }
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+
+    Varz.set("partitionsPrecomputed", doneCount.get());
+    Varz.set("wallPartitionPrecomputeTime", (long) ((System.nanoTime() - wallStartTime) / 1e6));
+  }
+
+  /**
+   * Precomputes a range of partitions, splitting it in halves until single partitions remain.
+   */
+  private static class PartitionPrecomputeAction extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Partition[] partitions;
+    private final int from;
+    private final int to;
+    private final AtomicInteger doneCount;
+
+    public PartitionPrecomputeAction(Partition[] partitions, int from, int to, AtomicInteger doneCount) {
+      this.partitions = partitions;
+      this.from = from;
+      this.to = to;
+      this.doneCount = doneCount;
+    }
+
+    protected void compute() {
+      if (to - from == 1) {
+        partitions[from].precomputeDistances();
+        doneCount.incrementAndGet();
+      } else if (to - from > 1) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new PartitionPrecomputeAction(partitions, from, mid, doneCount),
+            new PartitionPrecomputeAction(partitions, mid, to, doneCount));
+      }
+    }
+  }
+
+  /**
+   * Make the partitions created from now on lazy, with their node-to-node tables held in the given cache (null: compute
+   * all tables up front).
+   */
+  public void setPartitionTableCache(PartitionTableCache partitionTableCache) {
+    this.partitionTableCache = partitionTableCache;
+  }
+
+  public PartitionTableCache getPartitionTableCache() {
+    return partitionTableCache;
+  }
+
   public void setPartitions(Collection<Partition> partitions) {
     this.partitions = partitions;
   }
@@ -354,47 +783,97 @@ public class RoadMap implements IWorld {
     return partitions;
   }
 
-  public Collection<Partition> getConnectedComponents() {
-    // for undirected road networks (the result might not be correct for directed road networks)
-    return makePartitions(Integer.MAX_VALUE, 1, 0);
-  }
-
   /**
-   * Calculate path lengths between all node pairs.
+   * Label the connected components of the road network, ignoring segment directions, with a single union-find pass
+   * over the segments.
+   * 
+   * @return segmentId --> component label (-1: no such segment); labels are 0, 1, ..., in the order of the lowest
+   *         segmentId in each component
    */
-  public static int[][] doFloydWarshall(int path[][], List<Integer>[][] minPath, List<Boolean>[][] direction) {
-    int n = path.length;
-
-    for (int k = 0; k < n; k++) {
-      for (int i = 0; i < n; i++) {
-        for (int j = 0; j < n; j++) {
-          int newValue = path[i][k] + path[k][j];
-          if (newValue >= 0 && newValue < path[i][j]) {
-            path[i][j] = newValue;
-
-            minPath[i][j].clear();
-            minPath[i][j].addAll(minPath[i][k]);
-            minPath[i][j].addAll(minPath[k][j]);
-
-            direction[i][j].clear();
-            direction[i][j].addAll(direction[i][k]);
-            direction[i][j].addAll(direction[k][j]);
-          }
+  public int[] getConnectedComponentLabels() {
+    RoadGraph g = getGraph();
+    int[] parent = new int[g.getJunctionIdBound()]; // junctionID --> parent in union-find forest
+    int[] rank = new int[g.getJunctionIdBound()];
+    for (int j = 0; j < parent.length; j++) {
+      parent[j] = j;
+    }
+    for (int s = 0; s < g.getSegmentIdBound(); s++) {
+      if (g.getSegmentSource(s) == -1) {
+        continue;
+      }
+      int root0 = findRoot(parent, g.getSegmentSource(s));
+      int root1 = findRoot(parent, g.getSegmentTarget(s));
+      if (root0 != root1) {
+        // union by rank:
+        if (rank[root0] < rank[root1]) {
+          parent[root0] = root1;
+        } else {
+          parent[root1] = root0;
+          rank[root0] += (rank[root0] == rank[root1] ? 1 : 0);
         }
       }
     }
 
-    return path;
+    int[] rootLabel = rank; // reused: root junctionID --> label (-1: not labeled yet)
+    Arrays.fill(rootLabel, -1);
+    int labelCount = 0;
+    int[] labels = new int[g.getSegmentIdBound()];
+    for (int s = 0; s < labels.length; s++) {
+      if (g.getSegmentSource(s) == -1) {
+        labels[s] = -1;
+        continue;
+      }
+      int root = findRoot(parent, g.getSegmentSource(s));
+      if (rootLabel[root] == -1) {
+        rootLabel[root] = labelCount++;
+      }
+      labels[s] = rootLabel[root];
+    }
+    return labels;
+  }
+
+  private static int findRoot(int[] parent, int j) {
+    while (parent[j] != j) {
+      // path halving:
+      parent[j] = parent[parent[j]];
+      j = parent[j];
+    }
+    return j;
+  }
+
+  public Collection<Partition> getConnectedComponents() {
+    // for undirected road networks (the result might not be correct for directed road networks)
+    // the seed order does not change the components, so the deterministic speed-thru order is used (no random stream):
+    return makePartitions(Integer.MAX_VALUE, 1, 1, null);
+  }
+
+  public void setRoutingEngine(IRoutingEngine routingEngine) {
+    this.routingEngine = routingEngine;
+  }
+
+  public IRoutingEngine getRoutingEngine() {
+    return routingEngine;
   }
 
   /**
-   * Shortest route with Dijkstra's algorithm.
+   * Shortest route with the map's routing engine (by default, Dijkstra's algorithm).
    * 
    * @param source
    * @param target
    * @return
    */
   public Route getShortestRoute(RoadnetVector source, RoadnetVector target) {
+    return routingEngine.getShortestRoute(source, target);
+  }
+
+  /**
+   * Shortest route with Dijkstra's algorithm.
+   * 
+   * @param source
+   * @param target
+   * @return
+   */
+  public Route getDijkstraRoute(RoadnetVector source, RoadnetVector target) {
     return getSpanningTree(source, target, null, null);
   }
 
@@ -404,9 +883,70 @@ public class RoadMap implements IWorld {
   }
 
   /**
-   * Spanning tree & shortest route with Dijkstra's algorithm. Data for visited nodes is dynamically maintained with a
-   * hash-structure (expecting that the number of nodes visited will be much less than the total number of nodes in the
-   * graph).
+   * Lengths of the shortest routes from the source to each of the targets, with a single Dijkstra search that stops at
+   * the given length, or once all targets are reached. Targets farther than the given length get -1.
+   */
+  public int[] getShortestRouteLengths(RoadnetVector source, List<RoadnetVector> targets, int maxLength) {
+    RoadGraph g = getGraph();
+    RoadSegment sourceSeg = source.getRoadSegment();
+    RoutingWorkspace ws = RoutingWorkspace.get(g.getJunctionIdBound());
+
+    long[] lengths = new long[targets.size()];
+    long maxFound = 0; // longest of the lengths found so far
+    for (int i = 0; i < lengths.length; i++) {
+      RoadnetVector target = targets.get(i);
+      lengths[i] = Long.MAX_VALUE;
+      if (sourceSeg.getId() == target.getRoadSegment().getId()
+          && (!sourceSeg.isDirected || source.getProgress() <= target.getProgress())) {
+        lengths[i] = Math.abs(target.getProgress() - source.getProgress());
+      }
+      maxFound = Math.max(maxFound, lengths[i]);
+    }
+
+    // expand to two ends of current segment:
+    for (int j = 0; j == 0 || (j == 1 && !sourceSeg.isDirected()); j++) {
+      int junId = sourceSeg.getEndJunction(j).getId();
+      int d = (j == 0 ? source.getProgress() : sourceSeg.getLength() - source.getProgress());
+      if (!ws.isReached(junId) || d < ws.getDistance(junId)) {
+        ws.update(junId, d, -1);
+      }
+    }
+
+    while (!ws.isQueueEmpty() && ws.getDistance(ws.peek()) <= maxLength && ws.getDistance(ws.peek()) < maxFound) {
+      int junId = ws.poll();
+      int d = ws.getDistance(junId);
+
+      // check for shorter routes to the targets, via this junction:
+      maxFound = 0;
+      for (int i = 0; i < lengths.length; i++) {
+        RoadnetVector target = targets.get(i);
+        RoadSegment targetSeg = target.getRoadSegment();
+        int idx = g.getJunctionIndex(targetSeg.getId(), junId);
+        if (idx != -1) {
+          lengths[i] = Math.min(lengths[i], d + (idx == 0 ? target.getProgress() : targetSeg.getLength() - target.getProgress()));
+        }
+        maxFound = Math.max(maxFound, lengths[i]);
+      }
+
+      for (int e = g.getFirstEdge(junId); e < g.getEndEdge(junId); e++) {
+        int d2 = d + g.getEdgeLength(e);
+        int otherEndId = g.getEdgeTarget(e);
+        if (!ws.isReached(otherEndId) || d2 < ws.getDistance(otherEndId)) {
+          ws.update(otherEndId, d2, g.getEdgeSegment(e));
+        }
+      }
+    }
+
+    int[] result = new int[lengths.length];
+    for (int i = 0; i < lengths.length; i++) {
+      result[i] = lengths[i] <= maxLength ? (int) lengths[i] : -1;
+    }
+    return result;
+  }
+
+  /**
+   * Spanning tree & shortest route with Dijkstra's algorithm. Search state is kept in the calling thread's
+   * RoutingWorkspace; the spanning tree is copied into the given maps, if any.
    * 
    * @param source
    * @param target
@@ -416,11 +956,7 @@ public class RoadMap implements IWorld {
       HashMap<Integer, RoadJunctionDistance> junctionDist, HashMap<Integer, RoadSegment> previous) {
     Route route = (target != null) ? new Route(source, target) : null;
 
-    TreeSet<RoadJunctionDistance> junctionQueue = new TreeSet<RoadJunctionDistance>();
-    junctionDist = (junctionDist != null) ? junctionDist : new HashMap<Integer, RoadJunctionDistance>(); // junctionID
-                                                                                                         // --> minDist
-    previous = (previous != null) ? previous : new HashMap<Integer, RoadSegment>(); // junctionID --> previous-road
-
+    RoadGraph g = getGraph();
     RoadSegment sourceSeg = source.getRoadSegment();
     RoadSegment targetSeg = (target != null) ? target.getRoadSegment() : null;
 
@@ -434,46 +970,39 @@ public class RoadMap implements IWorld {
       }
     }
 
+    RoutingWorkspace ws = RoutingWorkspace.get(g.getJunctionIdBound());
+
     // expand to two ends of current segment:
     for (int j = 0; j == 0 || (j == 1 && !sourceSeg.isDirected()); j++) {
-      RoadJunction jun = sourceSeg.getEndJunction(j);
+      int junId = sourceSeg.getEndJunction(j).getId();
       int d = (j == 0 ? source.getProgress() : sourceSeg.getLength() - source.getProgress());
-
-      RoadJunctionDistance otherDist = new RoadJunctionDistance(jun, d);
-      junctionQueue.add(otherDist);
-      junctionDist.put(jun.getId(), otherDist);
+      if (!ws.isReached(junId) || d < ws.getDistance(junId)) {
+        ws.update(junId, d, -1);
+      }
     }
 
     int dMin = Integer.MAX_VALUE;
-    RoadJunction lastJunction = null;
-    while (!junctionQueue.isEmpty() && junctionQueue.first().distance < dMin) {
-      RoadJunction jun = junctionQueue.pollFirst().junction;
-      List<RoadSegment> reachableSegments = jun.getReachableRoads();
-      for (RoadSegment segment : reachableSegments) {
-        int d2 = junctionDist.get(jun.getId()).distance + segment.getLength(); // road-distance
-        RoadJunction otherEnd = segment.getOtherJunction(jun);
+    int lastJunctionId = -1;
+    while (!ws.isQueueEmpty() && ws.getDistance(ws.peek()) < dMin) {
+      int junId = ws.poll();
+      int d = ws.getDistance(junId);
+      for (int e = g.getFirstEdge(junId); e < g.getEndEdge(junId); e++) {
+        int d2 = d + g.getEdgeLength(e); // road-distance
+        int otherEndId = g.getEdgeTarget(e);
 
         // set the shortest available distance for the other end-junction:
-        RoadJunctionDistance d3 = junctionDist.get(otherEnd.getId());
-        if (d3 == null || d2 < d3.distance) {
-          if (d3 != null) {
-            junctionQueue.remove(d3);
-          }
-          RoadJunctionDistance otherDist = new RoadJunctionDistance(otherEnd, d2);
-          junctionQueue.add(otherDist);
-          junctionDist.put(otherEnd.getId(), otherDist);
-
-          previous.put(otherEnd.getId(), segment);
+        if (!ws.isReached(otherEndId) || d2 < ws.getDistance(otherEndId)) {
+          ws.update(otherEndId, d2, g.getEdgeSegment(e));
         }
 
         // check for possible shortest route, if arrived to a junction next to target:
         if (target != null) {
-          int idx = targetSeg.getJunctionIndex(otherEnd);
+          int idx = g.getJunctionIndex(targetSeg.getId(), otherEndId);
           if (idx != -1) {
             int dMin2 = d2 + (idx == 0 ? target.getProgress() : targetSeg.getLength() - target.getProgress());
             if (dMin2 < dMin) {
               dMin = dMin2;
-              lastJunction = otherEnd;
+              lastJunctionId = otherEndId;
             }
           }
         }
@@ -481,23 +1010,32 @@ public class RoadMap implements IWorld {
       }
     }
 
+    // copy spanning tree:
+    for (int i = 0; i < ws.getReachedCount() && (junctionDist != null || previous != null); i++) {
+      int junId = ws.getReached(i);
+      if (junctionDist != null) {
+        junctionDist.put(junId, new RoadJunctionDistance(getRoadJunction(junId), ws.getDistance(junId)));
+      }
+      if (previous != null && ws.getPrevSegment(junId) != -1) {
+        previous.put(junId, getRoadSegment(ws.getPrevSegment(junId)));
+      }
+    }
+
     if (target != null) {
       // last segment of route:
-      route.addLastSegment(targetSeg, targetSeg.getJunctionIndex(lastJunction) == 0);
+      route.addLastSegment(targetSeg, g.getJunctionIndex(targetSeg.getId(), lastJunctionId) == 0);
 
       // collect segments of route:
-      RoadJunction junction = lastJunction;
-      RoadSegment seg;
-      do {
-        seg = previous.get(junction.getId());
-        if (seg != null) {
-          route.addFirstSegment(seg, seg.getJunctionIndex(junction) == 1);
-          junction = seg.getOtherJunction(junction);
-        }
-      } while (seg != null);
+      int junId = lastJunctionId;
+      int segId;
+      while ((segId = ws.getPrevSegment(junId)) != -1) {
+        RoadSegment seg = getRoadSegment(segId);
+        route.addFirstSegment(seg, g.getJunctionIndex(segId, junId) == 1);
+        junId = g.getSegmentSource(segId) == junId ? g.getSegmentTarget(segId) : g.getSegmentSource(segId);
+      }
 
       // first segment of route:
-      route.addFirstSegment(sourceSeg, sourceSeg.getJunctionIndex(junction) == 1);
+      route.addFirstSegment(sourceSeg, g.getJunctionIndex(sourceSeg.getId(), junId) == 1);
     }
 
     return route;
@@ -507,19 +1045,34 @@ public class RoadMap implements IWorld {
     return bounds;
   }
 
-  // TODO: use an index
-  public RoadnetVector getRoadnetLocation(CartesianVector v) {
-    long minDist = -1;
-    RoadnetVector minVector = null;
-    for (RoadSegment segment : segments.values()) {
-      RoadnetVector vv = segment.getRoadnetLocation(v);
-      long dist = vv.toCartesianVector().vectorTo(v).getLength();
-      if (minDist < 0 || dist < minDist) {
-        minDist = dist;
-        minVector = vv;
+  /**
+   * Get the spatial index of the segments' geometries, building it if the map has changed since the last call.
+   */
+  public RoadSegmentGrid getSegmentGrid() {
+    RoadSegmentGrid grid = segmentGrid;
+    if (grid == null) {
+      synchronized (this) {
+        grid = segmentGrid;
+        if (grid == null) {
+          grid = new RoadSegmentGrid(segments.values());
+          segmentGrid = grid;
+        }
       }
     }
+    return grid;
+  }
 
-    return minVector;
+  /**
+   * Map-match a location: get the nearest point of the road network.
+   */
+  public RoadnetVector getRoadnetLocation(CartesianVector v) {
+    return getSegmentGrid().getNearestLocation(v);
+  }
+
+  /**
+   * Get the nearest point on each of the k nearest segments within the radius [mm], by increasing distance.
+   */
+  public List<RoadnetVector> getRoadnetLocations(CartesianVector v, int k, long radius) {
+    return getSegmentGrid().getNearestLocations(v, k, radius);
   }
 }
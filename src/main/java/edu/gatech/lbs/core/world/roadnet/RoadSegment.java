@@ -52,6 +52,10 @@ public class RoadSegment {
     return geometry.getLocationAt(progress);
   }
 
+  public void getLocationAt(int progress, CartesianVector location) {
+    geometry.getLocationAt(progress, location);
+  }
+
   public CartesianVector getTangentAt(int progress) {
     return geometry.getTangentAt(progress);
   }
@@ -4,89 +4,156 @@
 //
 package edu.gatech.lbs.core.world.roadnet;
 
+import java.util.Arrays;
+
 import edu.gatech.lbs.core.vector.CartesianVector;
-import edu.gatech.lbs.core.vector.IVector;
 
+/**
+ * Polyline of a road segment. Coordinates are kept in primitive arrays, together with the cumulative (rounded) length
+ * at each point, so that a progress is turned into a location with a binary search and one interpolation.
+ */
 public class RoadSegmentGeometry {
 
-  protected CartesianVector[] points;
+  protected long[] x; // [mm]
+  protected long[] y; // [mm]
+  protected int[] cumLength; // [mm], rounded length of the polyline from its first point up to each point
+
+  // shared end point instances, as returned before the coordinates were stored in arrays:
+  protected CartesianVector firstLocation;
+  protected CartesianVector lastLocation;
 
   public RoadSegmentGeometry(CartesianVector[] points) {
-    this.points = points;
+    int n = points.length;
+    x = new long[n];
+    y = new long[n];
+    cumLength = new int[n];
+    for (int i = 0; i < n; i++) {
+      x[i] = points[i].getX();
+      y[i] = points[i].getY();
+      if (i > 0) {
+        cumLength[i] = cumLength[i - 1] + getEdgeLength(i - 1);
+      }
+    }
+    firstLocation = points[0];
+    lastLocation = points[n - 1];
+  }
+
+  /**
+   * Length of the edge from point i to point i+1.
+   * All edges in the geometry are rounded with 2 mm precision, thus all junction-to-junction distances
+   * in the road network are even; and all closed loop routes have a halfway-point with a distance measured
+   * in whole millimeters.
+   */
+  private int getEdgeLength(int i) {
+    long dx = x[i + 1] - x[i];
+    long dy = y[i + 1] - y[i];
+    return (int) ((long) Math.sqrt(dx * dx + dy * dy) & (~1));
   }
 
   public CartesianVector getFirstLocation() {
-    return points[0];
+    return firstLocation;
   }
 
   public CartesianVector getLastLocation() {
-    return points[points.length - 1];
+    return lastLocation;
   }
 
   /**
    * Get total length of segment.
-   * All edges in the geometry are rounded with 2 mm precision, thus all junction-to-junction distances
-   * in the road network are even; and all closed loop routes have a halfway-point with a distance measured
-   * in whole millimeters.
    */
   public int getTotalLength() {
-    return getDistanceBetweenPoints(0, points.length);
+    return cumLength[cumLength.length - 1];
+  }
+
+  public int getPointCount() {
+    return x.length;
+  }
+
+  public long getX(int i) {
+    return x[i];
+  }
+
+  public long getY(int i) {
+    return y[i];
   }
 
+  public CartesianVector getPoint(int i) {
+    return new CartesianVector(x[i], y[i]);
+  }
+
+  /**
+   * Get a copy of the points of the polyline.
+   */
   public CartesianVector[] getPoints() {
+    CartesianVector[] points = new CartesianVector[x.length];
+    for (int i = 0; i < x.length; i++) {
+      points[i] = getPoint(i);
+    }
     return points;
   }
 
   public int getDistanceBetweenPoints(int sindex, int eindex) {
-    int length = 0;
-    for (int i = sindex; i < eindex - 1; i++) {
-      length += points[i].vectorTo(points[i + 1]).getLength() & (~1);
+    return (eindex - 1 > sindex) ? cumLength[eindex - 1] - cumLength[sindex] : 0;
+  }
+
+  /**
+   * Get the index of the first point at or beyond the given progress (the last point, if beyond the end).
+   */
+  private int getPointIndexAt(int progress) {
+    int i = Arrays.binarySearch(cumLength, progress);
+    if (i < 0) {
+      i = Math.min(-i - 1, cumLength.length - 1);
+    } else {
+      // first of several points with the same progress (zero-length edges):
+      while (i > 0 && cumLength[i - 1] == progress) {
+        i--;
+      }
     }
-    return length;
+    return i;
   }
 
   public CartesianVector getLocationAt(int progress) {
-    int length = 0;
-    int i;
-    for (i = 0; length < progress; i++) {
-      length += points[i].vectorTo(points[i + 1]).getLength() & (~1);
-    }
+    CartesianVector location = new CartesianVector(0, 0);
+    getLocationAt(progress, location);
+    return location;
+  }
 
-    // v= last vector + (progress overshoot)*(vector from last point to one-before-last point)
-    IVector v = points[i].clone();
-    if (length > progress) {
-      IVector tn = points[i].vectorTo(points[i - 1]);
-      tn.times((length - progress) / (double) (tn.getLength() & (~1)));
-      v.add(tn);
+  /**
+   * Write the location at the given progress into the given vector, without allocating.
+   */
+  public void getLocationAt(int progress, CartesianVector location) {
+    int i = getPointIndexAt(progress);
+
+    // v= point i + (progress overshoot)*(vector from point i to point i-1)
+    long vx = x[i];
+    long vy = y[i];
+    if (cumLength[i] > progress && i > 0) {
+      double d = (cumLength[i] - progress) / (double) (cumLength[i] - cumLength[i - 1]);
+      vx += (long) ((x[i - 1] - x[i]) * d);
+      vy += (long) ((y[i - 1] - y[i]) * d);
     }
-    return (CartesianVector) v;
+    location.set(vx, vy);
   }
 
   /**
    * Get the tangent-vector at the given progress. The length of the vector is 1 km (1e6 mm).
    */
   public CartesianVector getTangentAt(int progress) {
-    int length = 0;
-    int i;
-    for (i = 0; length < progress; i++) {
-      length += points[i].vectorTo(points[i + 1]).getLength();
-    }
+    int i = getPointIndexAt(progress);
 
-    IVector tn;
-    if (length > progress || i == points.length - 1) {
-      tn = points[i - 1].vectorTo(points[i]);
-    } else {
-      tn = points[i].vectorTo(points[i + 1]);
-    }
+    int j = (cumLength[i] > progress || i == x.length - 1) ? i - 1 : i;
+    CartesianVector tn = new CartesianVector(x[j + 1] - x[j], y[j + 1] - y[j]);
     tn.times(1e6 / tn.getLength());
-    return (CartesianVector) tn;
+    return tn;
   }
 
   public int getLocationProgress(CartesianVector v) {
     long minDist = -1;
     int minPointIdx = -1;
-    for (int i = 0; i < points.length; i++) {
-      long dist = v.vectorTo(points[i]).getLength();
+    for (int i = 0; i < x.length; i++) {
+      long dx = x[i] - v.getX();
+      long dy = y[i] - v.getY();
+      long dist = (long) Math.sqrt(dx * dx + dy * dy);
       if (minDist < 0 || dist < minDist) {
         minDist = dist;
         minPointIdx = i;
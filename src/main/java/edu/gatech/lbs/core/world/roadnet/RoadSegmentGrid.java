@@ -0,0 +1,244 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import edu.gatech.lbs.core.vector.CartesianVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+
+/**
+ * Immutable uniform grid index over the pieces (consecutive point pairs) of the road segments' geometries, for
+ * map-matching Cartesian locations. Each piece is listed in every cell its bounding box overlaps. Locations are
+ * matched by projecting onto the nearest piece, not by snapping to the nearest geometry point.
+ */
+public class RoadSegmentGrid {
+  private static final int maxCellsPerSide = 4096;
+
+  private final RoadSegment[] pieceSegment; // piece --> segment
+  private final int[] pieceProgress; // piece --> progress along the segment at the piece's start [mm]
+  private final int[] pieceLength; // piece --> length [mm], as rounded by RoadSegmentGeometry
+  private final long[] pieceX0, pieceY0, pieceX1, pieceY1; // piece --> end points [mm]
+
+  private final long x0, y0; // [mm], corner of the grid
+  private final long cellSize; // [mm]
+  private final int cols, rows;
+  // pieces in cell c are cellPiece[cellOffset[c]], ..., cellPiece[cellOffset[c+1]-1]:
+  private final int[] cellOffset;
+  private final int[] cellPiece;
+
+  public RoadSegmentGrid(Collection<RoadSegment> segments) {
+    int pieceCount = 0;
+    for (RoadSegment segment : segments) {
+      if (segment.getGeometry() != null) {
+        pieceCount += Math.max(1, segment.getGeometry().getPointCount() - 1);
+      }
+    }
+    pieceSegment = new RoadSegment[pieceCount];
+    pieceProgress = new int[pieceCount];
+    pieceLength = new int[pieceCount];
+    pieceX0 = new long[pieceCount];
+    pieceY0 = new long[pieceCount];
+    pieceX1 = new long[pieceCount];
+    pieceY1 = new long[pieceCount];
+
+    long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+    int p = 0;
+    for (RoadSegment segment : segments) {
+      if (segment.getGeometry() == null) {
+        continue;
+      }
+      RoadSegmentGeometry geometry = segment.getGeometry();
+      int pointCount = geometry.getPointCount();
+      for (int i = 0; i == 0 || i < pointCount - 1; i++) {
+        int j = Math.min(i + 1, pointCount - 1);
+        pieceSegment[p] = segment;
+        pieceProgress[p] = geometry.getDistanceBetweenPoints(0, i + 1);
+        pieceLength[p] = geometry.getDistanceBetweenPoints(i, j + 1);
+        pieceX0[p] = geometry.getX(i);
+        pieceY0[p] = geometry.getY(i);
+        pieceX1[p] = geometry.getX(j);
+        pieceY1[p] = geometry.getY(j);
+        minX = Math.min(minX, Math.min(pieceX0[p], pieceX1[p]));
+        minY = Math.min(minY, Math.min(pieceY0[p], pieceY1[p]));
+        maxX = Math.max(maxX, Math.max(pieceX0[p], pieceX1[p]));
+        maxY = Math.max(maxY, Math.max(pieceY0[p], pieceY1[p]));
+        p++;
+      }
+    }
+    if (pieceCount == 0) {
+      minX = minY = maxX = maxY = 0;
+    }
+
+    // about one piece per cell, but at most maxCellsPerSide^2 cells:
+    x0 = minX;
+    y0 = minY;
+    double area = (double) (maxX - minX + 1) * (maxY - minY + 1);
+    long size = Math.max(1, (long) Math.ceil(Math.sqrt(area / Math.max(1, pieceCount))));
+    size = Math.max(size, (maxX - minX) / maxCellsPerSide + 1);
+    size = Math.max(size, (maxY - minY) / maxCellsPerSide + 1);
+    cellSize = size;
+    cols = (int) ((maxX - minX) / cellSize + 1);
+    rows = (int) ((maxY - minY) / cellSize + 1);
+
+    cellOffset = new int[cols * rows + 1];
+    for (p = 0; p < pieceCount; p++) {
+      for (int r = getRow(Math.min(pieceY0[p], pieceY1[p])); r <= getRow(Math.max(pieceY0[p], pieceY1[p])); r++) {
+        for (int c = getCol(Math.min(pieceX0[p], pieceX1[p])); c <= getCol(Math.max(pieceX0[p], pieceX1[p])); c++) {
+          cellOffset[r * cols + c + 1]++;
+        }
+      }
+    }
+    for (int c = 0; c < cols * rows; c++) {
+      cellOffset[c + 1] += cellOffset[c];
+    }
+    cellPiece = new int[cellOffset[cols * rows]];
+    int[] cellCount = new int[cols * rows];
+    for (p = 0; p < pieceCount; p++) {
+      for (int r = getRow(Math.min(pieceY0[p], pieceY1[p])); r <= getRow(Math.max(pieceY0[p], pieceY1[p])); r++) {
+        for (int c = getCol(Math.min(pieceX0[p], pieceX1[p])); c <= getCol(Math.max(pieceX0[p], pieceX1[p])); c++) {
+          int cell = r * cols + c;
+          cellPiece[cellOffset[cell] + cellCount[cell]++] = p;
+        }
+      }
+    }
+  }
+
+  private int getCol(long x) {
+    return (int) Math.max(0, Math.min(cols - 1, (x - x0) / cellSize));
+  }
+
+  private int getRow(long y) {
+    return (int) Math.max(0, Math.min(rows - 1, (y - y0) / cellSize));
+  }
+
+  /**
+   * Squared distance of the location from the piece, and the fraction of the piece at the projected point.
+   */
+  private double getSquaredDistance(int p, long x, long y, double[] fraction) {
+    double dx = pieceX1[p] - pieceX0[p];
+    double dy = pieceY1[p] - pieceY0[p];
+    double len2 = dx * dx + dy * dy;
+    double t = len2 > 0 ? ((x - pieceX0[p]) * dx + (y - pieceY0[p]) * dy) / len2 : 0;
+    t = Math.max(0, Math.min(1, t));
+    fraction[0] = t;
+    double ex = pieceX0[p] + t * dx - x;
+    double ey = pieceY0[p] + t * dy - y;
+    return ex * ex + ey * ey;
+  }
+
+  private RoadnetVector getLocation(int p, double fraction) {
+    return new RoadnetVector(pieceSegment[p], pieceProgress[p] + (int) Math.round(fraction * pieceLength[p]));
+  }
+
+  /**
+   * Get the nearest location on the road network, or null if there are no segments.
+   */
+  public RoadnetVector getNearestLocation(CartesianVector v) {
+    List<RoadnetVector> locations = getNearestLocations(v, 1, Long.MAX_VALUE);
+    return locations.isEmpty() ? null : locations.get(0);
+  }
+
+  /**
+   * Get the nearest location on each of the k nearest segments within the given radius, by increasing distance.
+   */
+  public List<RoadnetVector> getNearestLocations(CartesianVector v, int k, long radius) {
+    long x = v.getX();
+    long y = v.getY();
+    int col = getCol(x);
+    int row = getRow(y);
+    double[] fraction = new double[1];
+    double radius2 = (double) radius * radius;
+
+    // segmentId --> nearest piece & its fraction & squared distance found so far:
+    HashMap<Integer, double[]> best = new HashMap<Integer, double[]>();
+    double[] kthDistances = new double[k]; // squared distances of the k nearest segments so far, ascending
+    Arrays.fill(kthDistances, Double.MAX_VALUE);
+
+    // examine rings of cells around the location's cell, until the rest is surely farther than the k-th nearest:
+    int maxRing = Math.max(cols, rows);
+    for (int ring = 0; ring <= maxRing; ring++) {
+      double bound = (double) Math.max(0, ring - 1) * cellSize; // min. distance of pieces not yet examined
+      if (bound * bound > Math.min(kthDistances[k - 1], radius2)) {
+        break;
+      }
+      for (int r = row - ring; r <= row + ring; r++) {
+        if (r < 0 || r >= rows) {
+          continue;
+        }
+        boolean isEdgeRow = (r == row - ring || r == row + ring);
+        for (int c = col - ring; c <= col + ring; c += (isEdgeRow ? 1 : 2 * Math.max(1, ring))) {
+          if (c < 0 || c >= cols) {
+            continue;
+          }
+          int cell = r * cols + c;
+          for (int i = cellOffset[cell]; i < cellOffset[cell + 1]; i++) {
+            int p = cellPiece[i];
+            double dist2 = getSquaredDistance(p, x, y, fraction);
+            if (dist2 > radius2) {
+              continue;
+            }
+            int segId = pieceSegment[p].getId();
+            double[] b = best.get(segId);
+            if (b == null) {
+              best.put(segId, new double[] { p, fraction[0], dist2 });
+              insertDistance(kthDistances, dist2, Double.MAX_VALUE);
+            } else if (dist2 < b[2]) {
+              insertDistance(kthDistances, dist2, b[2]);
+              b[0] = p;
+              b[1] = fraction[0];
+              b[2] = dist2;
+            }
+          }
+        }
+      }
+    }
+
+    List<double[]> candidates = new ArrayList<double[]>(best.values());
+    Collections.sort(candidates, new Comparator<double[]>() {
+      public int compare(double[] b0, double[] b1) {
+        int cmp = Double.compare(b0[2], b1[2]);
+        // tie-break by segmentId, for a deterministic order:
+        return cmp != 0 ? cmp : pieceSegment[(int) b0[0]].getId() - pieceSegment[(int) b1[0]].getId();
+      }
+    });
+    List<RoadnetVector> locations = new ArrayList<RoadnetVector>(Math.min(k, candidates.size()));
+    for (int i = 0; i < candidates.size() && i < k; i++) {
+      double[] b = candidates.get(i);
+      locations.add(getLocation((int) b[0], b[1]));
+    }
+    return locations;
+  }
+
+  /**
+   * Update the ascending list of the k smallest squared distances, when a segment's distance improves from oldDist2
+   * (Double.MAX_VALUE: new segment) to dist2.
+   */
+  private static void insertDistance(double[] kthDistances, double dist2, double oldDist2) {
+    int k = kthDistances.length;
+    // remove the old value, if it is listed:
+    int i = Arrays.binarySearch(kthDistances, oldDist2);
+    if (oldDist2 != Double.MAX_VALUE && i >= 0) {
+      System.arraycopy(kthDistances, i + 1, kthDistances, i, k - i - 1);
+      kthDistances[k - 1] = Double.MAX_VALUE;
+    }
+    // insert the new value:
+    int j = k - 1;
+    if (dist2 >= kthDistances[j]) {
+      return;
+    }
+    while (j > 0 && kthDistances[j - 1] > dist2) {
+      kthDistances[j] = kthDistances[j - 1];
+      j--;
+    }
+    kthDistances[j] = dist2;
+  }
+}
@@ -0,0 +1,231 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet;
+
+import java.util.Arrays;
+
+/**
+ * Reusable per-thread state of a shortest route search: junction distances & predecessor segments, and an indexed
+ * binary min-heap of junctions ordered by (key, junctionId), where the key is the distance unless the search sets it
+ * otherwise (e.g. A*). A junction's entries are only valid if its stamp equals the current generation, so starting a
+ * new search does not need to clear the arrays. Each thread has a second workspace, for the backward half of
+ * bidirectional searches.
+ */
+public class RoutingWorkspace {
+  private static final ThreadLocal<RoutingWorkspace> workspaces = new ThreadLocal<RoutingWorkspace>() {
+    protected RoutingWorkspace initialValue() {
+      return new RoutingWorkspace();
+    }
+  };
+  private static final ThreadLocal<RoutingWorkspace> backwardWorkspaces = new ThreadLocal<RoutingWorkspace>() {
+    protected RoutingWorkspace initialValue() {
+      return new RoutingWorkspace();
+    }
+  };
+
+  private int[] stamp; // junctionId --> generation of the search that last reached the junction
+  private int generation;
+  private int[] dist; // junctionId --> distance from source [mm]
+  private int[] prevSegment; // junctionId --> segmentId on which the junction was reached (-1: source)
+  private int[] key; // junctionId --> heap priority
+  private int[] heapPos; // junctionId --> position in heap (-1: not in heap)
+
+  private int[] heap; // junctionIds
+  private int heapSize;
+
+  private int[] reached; // junctionIds reached in current search, in order of first reach
+  private int reachedCount;
+
+  private RoutingWorkspace() {
+    stamp = new int[0];
+    dist = new int[0];
+    prevSegment = new int[0];
+    key = new int[0];
+    heapPos = new int[0];
+    heap = new int[16];
+    reached = new int[16];
+    generation = 0;
+  }
+
+  /**
+   * Get the calling thread's workspace, cleared for a new search on a graph with the given junction id bound.
+   */
+  public static RoutingWorkspace get(int junctionIdBound) {
+    RoutingWorkspace ws = workspaces.get();
+    ws.reset(junctionIdBound);
+    return ws;
+  }
+
+  /**
+   * Get the calling thread's second workspace, cleared for a new search. It is distinct from the one returned by
+   * get(), so the two can be used together.
+   */
+  public static RoutingWorkspace getBackward(int junctionIdBound) {
+    RoutingWorkspace ws = backwardWorkspaces.get();
+    ws.reset(junctionIdBound);
+    return ws;
+  }
+
+  private void reset(int junctionIdBound) {
+    if (stamp.length < junctionIdBound) {
+      stamp = new int[junctionIdBound];
+      dist = new int[junctionIdBound];
+      prevSegment = new int[junctionIdBound];
+      key = new int[junctionIdBound];
+      heapPos = new int[junctionIdBound];
+      generation = 0;
+    }
+    generation++;
+    if (generation == 0) {
+      // stamps wrapped around:
+      Arrays.fill(stamp, 0);
+      generation = 1;
+    }
+    heapSize = 0;
+    reachedCount = 0;
+  }
+
+  public boolean isReached(int junctionId) {
+    return stamp[junctionId] == generation;
+  }
+
+  /**
+   * Is the junction waiting in the queue?
+   */
+  public boolean isQueued(int junctionId) {
+    return stamp[junctionId] == generation && heapPos[junctionId] != -1;
+  }
+
+  /**
+   * Distance of a reached junction.
+   */
+  public int getDistance(int junctionId) {
+    return dist[junctionId];
+  }
+
+  /**
+   * Predecessor segment of a reached junction, or -1 if it was reached directly from the source.
+   */
+  public int getPrevSegment(int junctionId) {
+    return prevSegment[junctionId];
+  }
+
+  /**
+   * Heap priority of a reached junction.
+   */
+  public int getKey(int junctionId) {
+    return key[junctionId];
+  }
+
+  public int getReachedCount() {
+    return reachedCount;
+  }
+
+  public int getReached(int i) {
+    return reached[i];
+  }
+
+  /**
+   * Set the distance & predecessor of the junction, and (re)queue it by its distance.
+   */
+  public void update(int junctionId, int distance, int segmentId) {
+    update(junctionId, distance, segmentId, distance);
+  }
+
+  /**
+   * Set the distance & predecessor of the junction, and (re)queue it with the given priority.
+   */
+  public void update(int junctionId, int distance, int segmentId, int priority) {
+    if (stamp[junctionId] != generation) {
+      stamp[junctionId] = generation;
+      heapPos[junctionId] = -1;
+      if (reachedCount == reached.length) {
+        reached = Arrays.copyOf(reached, 2 * reached.length);
+      }
+      reached[reachedCount++] = junctionId;
+    }
+    dist[junctionId] = distance;
+    prevSegment[junctionId] = segmentId;
+    key[junctionId] = priority;
+
+    int pos = heapPos[junctionId];
+    if (pos == -1) {
+      if (heapSize == heap.length) {
+        heap = Arrays.copyOf(heap, 2 * heap.length);
+      }
+      pos = heapSize++;
+      heap[pos] = junctionId;
+      heapPos[junctionId] = pos;
+      siftUp(pos);
+    } else {
+      siftUp(pos);
+      siftDown(heapPos[junctionId]);
+    }
+  }
+
+  public boolean isQueueEmpty() {
+    return heapSize == 0;
+  }
+
+  /**
+   * The queued junction with the least (key, junctionId).
+   */
+  public int peek() {
+    return heap[0];
+  }
+
+  public int poll() {
+    int junctionId = heap[0];
+    heapPos[junctionId] = -1;
+    heapSize--;
+    if (heapSize > 0) {
+      heap[0] = heap[heapSize];
+      heapPos[heap[0]] = 0;
+      siftDown(0);
+    }
+    return junctionId;
+  }
+
+  private boolean isLess(int j0, int j1) {
+    return key[j0] < key[j1] || (key[j0] == key[j1] && j0 < j1);
+  }
+
+  private void siftUp(int pos) {
+    int j = heap[pos];
+    while (pos > 0) {
+      int parentPos = (pos - 1) >>> 1;
+      int parent = heap[parentPos];
+      if (!isLess(j, parent)) {
+        break;
+      }
+      heap[pos] = parent;
+      heapPos[parent] = pos;
+      pos = parentPos;
+    }
+    heap[pos] = j;
+    heapPos[j] = pos;
+  }
+
+  private void siftDown(int pos) {
+    int j = heap[pos];
+    int half = heapSize >>> 1;
+    while (pos < half) {
+      int childPos = 2 * pos + 1;
+      int child = heap[childPos];
+      if (childPos + 1 < heapSize && isLess(heap[childPos + 1], child)) {
+        childPos++;
+        child = heap[childPos];
+      }
+      if (!isLess(child, j)) {
+        break;
+      }
+      heap[pos] = child;
+      heapPos[child] = pos;
+      pos = childPos;
+    }
+    heap[pos] = j;
+    heapPos[j] = pos;
+  }
+}
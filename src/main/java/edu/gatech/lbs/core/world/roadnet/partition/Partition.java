@@ -7,7 +7,10 @@ package edu.gatech.lbs.core.world.roadnet.partition;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -19,6 +22,7 @@ import edu.gatech.lbs.core.vector.RoadnetVector;
 import edu.gatech.lbs.core.world.roadnet.RoadJunction;
 import edu.gatech.lbs.core.world.roadnet.RoadMap;
 import edu.gatech.lbs.core.world.roadnet.RoadSegment;
+import edu.gatech.lbs.core.world.roadnet.RoutingWorkspace;
 import edu.gatech.lbs.core.world.roadnet.route.Route;
 
 public class Partition {
@@ -30,9 +34,11 @@ public class Partition {
   protected List<RoadJunction> junctions;
   protected HashMap<Integer, Integer> junctionMap; // junctionID --> junction-in-partition-ID mapping
   protected boolean[] isBorderPoint; // border-points
-  protected int[][] d; // node-to-node distance table
-  protected List<Integer>[][] minPath; // node-to-node shortest paths
-  protected List<Boolean>[][] direction; // node-to-node shortest paths' directionality
+  // node-to-node tables, for node pair (i,j) at [i * junctionCount + j]:
+  // (heap arrays, or views of a memory-mapped partition file; null while a lazy partition's tables are not loaded)
+  protected volatile IntBuffer d; // shortest distance (Integer.MAX_VALUE: unreachable)
+  protected volatile IntBuffer nextHop; // first segment-in-partition-ID of the shortest path (-1: none)
+  protected PartitionTableCache tableCache; // if lazy, cache holding the tables while they are in memory
 
   protected List<RoadnetVector> borderLocations; // derived & cached locations of all border points
 
@@ -61,21 +67,19 @@ public class Partition {
     }
 
     int n = junctions.size();
-    d = new int[n][n];
-    minPath = new ArrayList[n][n];
-    direction = new ArrayList[n][n];
-    for (int i = 0; i < d.length; i++) {
-      for (int j = 0; j < d.length; j++) {
-        d[i][j] = in.readInt();
-        assert (d[i][j] >= 0);
-
-        int pathLength = in.readInt();
-        minPath[i][j] = new ArrayList<Integer>();
-        direction[i][j] = new ArrayList<Boolean>();
-        for (int k = 0; k < pathLength; k++) {
-          int theInt = in.readInt();
-          minPath[i][j].add(Math.abs(theInt));
-          direction[i][j].add((theInt > 0));
+    d = IntBuffer.allocate(n * n);
+    nextHop = IntBuffer.allocate(n * n);
+    for (int i = 0; i < n * n; i++) {
+      d.put(i, in.readInt());
+      assert (d.get(i) >= 0);
+
+      // only the first segment of the path is kept, the rest is found by following next hops:
+      int pathLength = in.readInt();
+      nextHop.put(i, -1);
+      for (int k = 0; k < pathLength; k++) {
+        int theInt = in.readInt();
+        if (k == 0) {
+          nextHop.put(i, Math.abs(theInt));
         }
       }
     }
@@ -84,6 +88,85 @@ public class Partition {
     borderLocations = getBorderLocations();
   }
 
+  /**
+   * Load a partition record of a PartitionFile. The distance & next hop tables are not copied, but are views of the
+   * given buffer, so pages of a memory-mapped file are only read in when the tables are first accessed.
+   */
+  public Partition(ByteBuffer in, RoadMap map) {
+    this(in.getInt());
+
+    int segmentCount = in.getInt();
+    for (int i = 0; i < segmentCount; i++) {
+      int id = in.getInt();
+      addSegment(map.getRoadSegment(id));
+    }
+
+    int junctionCnt = in.getInt();
+    assert (junctionCnt == junctions.size());
+    isBorderPoint = new boolean[junctions.size()];
+    for (int i = 0; i < junctions.size(); i++) {
+      isBorderPoint[i] = in.get() != 0;
+    }
+    in.position(in.position() + getPadding(junctions.size()));
+
+    int n = junctions.size();
+    d = sliceInts(in, n * n);
+    nextHop = sliceInts(in, n * n);
+
+    // derive inside-partition border point locations:
+    borderLocations = getBorderLocations();
+  }
+
+  private static IntBuffer sliceInts(ByteBuffer in, int count) {
+    ByteBuffer slice = in.slice();
+    slice.limit(4 * count);
+    in.position(in.position() + 4 * count);
+    return slice.asIntBuffer();
+  }
+
+  /**
+   * Bytes needed after n border point flags to keep the tables int-aligned.
+   */
+  private static int getPadding(int n) {
+    return (4 - n % 4) % 4;
+  }
+
+  /**
+   * Size of the partition's PartitionFile record [bytes].
+   */
+  public long getRecordSize() {
+    long n = junctions.size();
+    return 4 * (3 + segments.size()) + n + getPadding((int) n) + 2 * 4 * n * n;
+  }
+
+  /**
+   * Write the partition as a PartitionFile record: id, segment ids, border point flags, then the flat distance & next
+   * hop tables.
+   */
+  public void saveRecordTo(DataOutputStream out) throws IOException {
+    out.writeInt(partitionId);
+    out.writeInt(segments.size());
+    for (RoadSegment segment : segments) {
+      out.writeInt(segment.getId());
+    }
+    out.writeInt(isBorderPoint.length);
+    for (int i = 0; i < isBorderPoint.length; i++) {
+      out.writeBoolean(isBorderPoint[i]);
+    }
+    for (int i = 0; i < getPadding(isBorderPoint.length); i++) {
+      out.writeByte(0);
+    }
+    int n = junctions.size();
+    IntBuffer dist = getDistanceTable();
+    for (int i = 0; i < n * n; i++) {
+      out.writeInt(dist.get(i));
+    }
+    IntBuffer hops = getNextHopTable();
+    for (int i = 0; i < n * n; i++) {
+      out.writeInt(hops.get(i));
+    }
+  }
+
   public void saveTo(DataOutputStream out) throws IOException {
     out.writeInt(partitionId);
     out.writeInt(segments.size());
@@ -94,18 +177,45 @@ public class Partition {
     for (int i = 0; i < isBorderPoint.length; i++) {
       out.writeBoolean(isBorderPoint[i]);
     }
-    for (int i = 0; i < d.length; i++) {
-      for (int j = 0; j < d.length; j++) {
-        out.writeInt(d[i][j]);
-
-        out.writeInt(minPath[i][j].size());
-        for (int k = 0; k < minPath[i][j].size(); k++) {
-          out.writeInt(minPath[i][j].get(k) * (direction[i][j].get(k) ? 1 : -1));
+    int n = junctions.size();
+    List<Integer> path = new ArrayList<Integer>();
+    List<Boolean> direction = new ArrayList<Boolean>();
+    IntBuffer dist = getDistanceTable();
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        out.writeInt(dist.get(i * n + j));
+
+        getPath(i, j, path, direction);
+        out.writeInt(path.size());
+        for (int k = 0; k < path.size(); k++) {
+          out.writeInt(path.get(k) * (direction.get(k) ? 1 : -1));
         }
       }
     }
   }
 
+  /**
+   * Get the segment-in-partition-IDs of the shortest path between two nodes, and their traversal directions, by
+   * following the next hops.
+   */
+  protected void getPath(int nodeIdx0, int nodeIdx1, List<Integer> path, List<Boolean> direction) {
+    path.clear();
+    direction.clear();
+    int n = junctions.size();
+    IntBuffer hops = getNextHopTable();
+    int idx = nodeIdx0;
+    // each hop gets closer to the target, so at most n-1 hops are needed:
+    while (idx != nodeIdx1 && hops.get(idx * n + nodeIdx1) != -1 && path.size() < n) {
+      int segIdx = hops.get(idx * n + nodeIdx1);
+      RoadSegment seg = segments.get(segIdx);
+      int idx0 = junctionMap.get(seg.getEndJunction(0).getId());
+      int idx1 = junctionMap.get(seg.getEndJunction(1).getId());
+      path.add(segIdx);
+      direction.add(idx == idx0); // by definition, the segment's directionality is junction[0]->junction[1]
+      idx = (idx == idx0 ? idx1 : idx0);
+    }
+  }
+
   public int getId() {
     return partitionId;
   }
@@ -141,38 +251,124 @@ public class Partition {
       isBorderPoint[junctionMap.get(roadJunction.getId())] = true;
     }
 
-    // precompute node-to-node distances:
-    // initialize distances for Floyd-Warshall:
+    // derive inside-partition border point locations:
+    borderLocations = getBorderLocations();
+  }
+
+  /**
+   * Precompute the node-to-node distance & next hop tables, with a Dijkstra search on the partition's segments towards
+   * each node. Partitions are independent, so this may run concurrently for different partitions.
+   */
+  public void precomputeDistances() {
     int n = junctions.size();
-    d = new int[n][n];
-    minPath = new ArrayList[n][n];
-    direction = new ArrayList[n][n];
-    // set 0-length path for self-access:
-    for (int i = 0; i < junctions.size(); i++) {
-      for (int j = 0; j < junctions.size(); j++) {
-        d[i][j] = Integer.MAX_VALUE;
-        minPath[i][j] = new ArrayList<Integer>();
-        direction[i][j] = new ArrayList<Boolean>();
+    int m = segments.size();
+
+    // segments arriving to node i are inSegment[inOffset[i]], ..., inSegment[inOffset[i+1]-1], traversable from inSource:
+    int[] inOffset = new int[n + 1];
+    int[] inSegment = new int[2 * m];
+    int[] inSource = new int[2 * m];
+    int[] segmentEnds = new int[2 * m];
+    for (int k = 0; k < m; k++) {
+      RoadSegment segment = segments.get(k);
+      segmentEnds[2 * k] = junctionMap.get(segment.getEndJunction(0).getId());
+      segmentEnds[2 * k + 1] = junctionMap.get(segment.getEndJunction(1).getId());
+      inOffset[segmentEnds[2 * k + 1] + 1]++;
+      if (!segment.isDirected()) {
+        inOffset[segmentEnds[2 * k] + 1]++;
       }
-      d[i][i] = 0;
     }
-    // set segment-length path for nodes connected by a segment:
-    for (RoadSegment segment : segments) {
-      int idx0 = junctionMap.get(segment.getEndJunction(0).getId());
-      int idx1 = junctionMap.get(segment.getEndJunction(1).getId());
-      d[idx0][idx1] = segment.getLength();
-      minPath[idx0][idx1].add(segmentMap.get(segment.getId()));
-      direction[idx0][idx1].add(true); // by definition, the segment's directionality is junction[0]->junction[1]
-      if (!segment.isDirected()) {
-        d[idx1][idx0] = segment.getLength();
-        minPath[idx1][idx0].add(segmentMap.get(segment.getId()));
-        direction[idx1][idx0].add(false);
+    for (int i = 0; i < n; i++) {
+      inOffset[i + 1] += inOffset[i];
+    }
+    int[] inCount = new int[n];
+    for (int k = 0; k < m; k++) {
+      int idx0 = segmentEnds[2 * k];
+      int idx1 = segmentEnds[2 * k + 1];
+      inSegment[inOffset[idx1] + inCount[idx1]] = k;
+      inSource[inOffset[idx1] + inCount[idx1]++] = idx0;
+      if (!segments.get(k).isDirected()) {
+        inSegment[inOffset[idx0] + inCount[idx0]] = k;
+        inSource[inOffset[idx0] + inCount[idx0]++] = idx1;
       }
     }
-    d = RoadMap.doFloydWarshall(d, minPath, direction);
 
-    // derive inside-partition border point locations:
-    borderLocations = getBorderLocations();
+    int[] dist0 = new int[n * n];
+    int[] nextHop0 = new int[n * n];
+    Arrays.fill(dist0, Integer.MAX_VALUE);
+    Arrays.fill(nextHop0, -1);
+    for (int target = 0; target < n; target++) {
+      RoutingWorkspace ws = RoutingWorkspace.get(n);
+      ws.update(target, 0, -1);
+      while (!ws.isQueueEmpty()) {
+        int idx = ws.poll();
+        int dist = ws.getDistance(idx);
+        dist0[idx * n + target] = dist;
+        nextHop0[idx * n + target] = ws.getPrevSegment(idx);
+        for (int a = inOffset[idx]; a < inOffset[idx + 1]; a++) {
+          int k = inSegment[a];
+          int dist2 = dist + segments.get(k).getLength();
+          int idx2 = inSource[a];
+          if (!ws.isReached(idx2) || dist2 < ws.getDistance(idx2)) {
+            ws.update(idx2, dist2, k);
+          }
+        }
+      }
+    }
+    d = IntBuffer.wrap(dist0);
+    nextHop = IntBuffer.wrap(nextHop0);
+  }
+
+  /**
+   * Make the partition lazy: its tables are computed on first use instead of up front, and are held in the given cache,
+   * which may drop them again when they go cold.
+   */
+  public void setTableCache(PartitionTableCache tableCache) {
+    this.tableCache = tableCache;
+  }
+
+  /**
+   * Compute the tables of a lazy partition, unless they are in memory already.
+   */
+  private synchronized void loadTables() {
+    if (d == null || nextHop == null) {
+      precomputeDistances();
+      long n = junctions.size();
+      tableCache.add(this, 2 * 4 * n * n);
+    }
+  }
+
+  /**
+   * Drop the tables of a lazy partition (called by its cache). Callers still using the tables keep their reference.
+   */
+  void evictTables() {
+    d = null;
+    nextHop = null;
+  }
+
+  protected IntBuffer getDistanceTable() {
+    if (tableCache == null) {
+      return d;
+    }
+    IntBuffer table = d;
+    while (table == null) {
+      loadTables();
+      table = d;
+    }
+    tableCache.touch(this);
+    return table;
+  }
+
+  protected IntBuffer getNextHopTable() {
+    if (tableCache == null) {
+      return nextHop;
+    }
+    IntBuffer table = nextHop;
+    while (table == null) {
+      loadTables();
+      table = nextHop;
+    }
+    tableCache.touch(this);
+    return table;
   }
 
   /**
@@ -234,6 +430,7 @@ public class Partition {
       return route;
     }
 
+    IntBuffer dist = getDistanceTable();
     int minDist = Integer.MAX_VALUE;
     int nodeIdx0_best = -1;
     int nodeIdx1_best = -1;
@@ -252,7 +449,7 @@ public class Partition {
         int dist1 = (j1 == 0 ? loc1.getProgress() : seg1.getLength() - loc1.getProgress());
 
         // total distance is node-to-node distance + fractions on the source & target segments:
-        int newMinDist = d[nodeIdx0][nodeIdx1] + dist0 + dist1;
+        int newMinDist = dist.get(nodeIdx0 * junctions.size() + nodeIdx1) + dist0 + dist1;
         if (newMinDist < minDist) {
           minDist = newMinDist;
           nodeIdx0_best = nodeIdx0;
@@ -268,9 +465,11 @@ public class Partition {
     // set the pre-computed distance:
     route.setLength(minDist);
     route.addFirstSegment(seg0, j0_best == 1); // fwd-traversed if exiting source's segment at junction[1]
-    for (int idx = 0; idx < minPath[nodeIdx0_best][nodeIdx1_best].size(); idx++) {
-      int segId = minPath[nodeIdx0_best][nodeIdx1_best].get(idx);
-      route.addLastSegment(segments.get(segId), direction[nodeIdx0_best][nodeIdx1_best].get(idx));
+    List<Integer> path = new ArrayList<Integer>();
+    List<Boolean> direction = new ArrayList<Boolean>();
+    getPath(nodeIdx0_best, nodeIdx1_best, path, direction);
+    for (int idx = 0; idx < path.size(); idx++) {
+      route.addLastSegment(segments.get(path.get(idx)), direction.get(idx));
     }
     route.addLastSegment(seg1, j1_best == 0); // fwd-traversed if entering target's segment at junction[0]
 
@@ -298,14 +497,16 @@ public class Partition {
   public int getJunctionDistance(RoadJunction jun0, RoadJunction jun1) {
     int junId0 = junctionMap.get(jun0.getId());
     int junId1 = junctionMap.get(jun1.getId());
-    return d[junId0][junId1];
+    return getDistanceTable().get(junId0 * junctions.size() + junId1);
   }
 
   public int getMaxJunctionDistance(RoadJunction jun0) {
     int junId = junctionMap.get(jun0.getId());
+    int n = junctions.size();
+    IntBuffer dist = getDistanceTable();
     int maxDist = 0;
-    for (int i = 0; i < d.length; ++i) {
-      maxDist = Math.max(maxDist, d[junId][i]);
+    for (int i = 0; i < n; ++i) {
+      maxDist = Math.max(maxDist, dist.get(junId * n + i));
     }
     return maxDist;
   }
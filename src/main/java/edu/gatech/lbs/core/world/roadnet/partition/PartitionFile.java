@@ -0,0 +1,129 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet.partition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+
+/**
+ * Versioned partition file, laid out to be memory-mapped: a header (magic, version, partition count), the byte offset
+ * of each partition's record (plus the end of the last one), then the records (see Partition.saveRecordTo()). The
+ * distance & next hop tables of loaded partitions stay in the mapped file, and are paged in on first access.
+ *
+ * Files in the legacy format (partition count, then Partition.saveTo() for each) are recognized and read too.
+ */
+public class PartitionFile {
+  public static final int magic = 0x47544D50; // "GTMP"
+  public static final int version = 1;
+
+  public static final String mappedFormat = "mapped";
+  public static final String legacyFormat = "legacy";
+
+  private static final long maxChunkSize = 1L << 30; // [bytes], max. size of a mapping shared by several records
+
+  public static void write(String filename, Collection<Partition> partitions, String format) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+    try {
+      if (format.equalsIgnoreCase(legacyFormat)) {
+        out.writeInt(partitions.size());
+        for (Partition partition : partitions) {
+          partition.saveTo(out);
+        }
+      } else {
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeInt(partitions.size());
+        long offset = 3 * 4 + 8 * (partitions.size() + 1);
+        for (Partition partition : partitions) {
+          out.writeLong(offset);
+          offset += partition.getRecordSize();
+        }
+        out.writeLong(offset);
+        for (Partition partition : partitions) {
+          partition.saveRecordTo(out);
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  public static List<Partition> read(String filename, RoadMap roadmap) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+    try {
+      int first = in.readInt();
+      if (first != magic) {
+        // legacy format, starting with the partition count:
+        List<Partition> partitions = new ArrayList<Partition>(first);
+        for (int i = 0; i < first; i++) {
+          partitions.add(new Partition(in, roadmap));
+        }
+        return partitions;
+      }
+      int fileVersion = in.readInt();
+      if (fileVersion != version) {
+        throw new IOException("Unsupported partition file version " + fileVersion + ".");
+      }
+    } finally {
+      in.close();
+    }
+    return readMapped(filename, roadmap);
+  }
+
+  private static List<Partition> readMapped(String filename, RoadMap roadmap) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(filename, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 3 * 4);
+      header.position(2 * 4);
+      int partitionCount = header.getInt();
+      ByteBuffer offsetTable = channel.map(FileChannel.MapMode.READ_ONLY, 3 * 4, 8 * (partitionCount + 1));
+      long[] offsets = new long[partitionCount + 1];
+      for (int i = 0; i <= partitionCount; i++) {
+        offsets[i] = offsetTable.getLong();
+      }
+      if (offsets[partitionCount] != channel.size()) {
+        throw new IOException("Truncated partition file.");
+      }
+
+      // map consecutive records together, in chunks of at most maxChunkSize (or a single larger record):
+      List<Partition> partitions = new ArrayList<Partition>(partitionCount);
+      ByteBuffer chunk = null;
+      long chunkStart = 0;
+      long chunkEnd = 0;
+      for (int i = 0; i < partitionCount; i++) {
+        if (offsets[i + 1] > chunkEnd) {
+          chunkStart = offsets[i];
+          chunkEnd = chunkStart;
+          for (int k = i + 1; k <= partitionCount && (k == i + 1 || offsets[k] - chunkStart <= maxChunkSize); k++) {
+            chunkEnd = offsets[k];
+          }
+          chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+        }
+        ByteBuffer record = chunk.duplicate();
+        record.position((int) (offsets[i] - chunkStart));
+        record.limit((int) (offsets[i + 1] - chunkStart));
+        partitions.add(new Partition(record, roadmap));
+      }
+      return partitions;
+    } finally {
+      // mappings stay valid after the file is closed:
+      file.close();
+    }
+  }
+}
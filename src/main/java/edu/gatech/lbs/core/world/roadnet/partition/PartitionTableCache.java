@@ -0,0 +1,69 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet.partition;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded set of partitions whose node-to-node tables are in memory. When the total table size exceeds the
+ * capacity, the tables of the least recently used partitions are dropped, to be recomputed on their next use.
+ */
+public class PartitionTableCache {
+  private final long capacity; // [bytes]
+  private long size; // [bytes]
+  private final LinkedHashMap<Partition, Long> entries; // in access order, partition --> table size [bytes]
+
+  private long loadCount;
+  private long evictionCount;
+
+  public PartitionTableCache(long capacity) {
+    this.capacity = capacity;
+    entries = new LinkedHashMap<Partition, Long>(16, 0.75f, true);
+  }
+
+  /**
+   * Mark the partition's tables as recently used.
+   */
+  public synchronized void touch(Partition partition) {
+    entries.get(partition);
+  }
+
+  /**
+   * Register the freshly loaded tables of a partition, and evict cold partitions until the cache fits its capacity.
+   * The partition just added is never evicted, even if it alone exceeds the capacity.
+   */
+  public synchronized void add(Partition partition, long tableSize) {
+    Long oldSize = entries.put(partition, tableSize);
+    size += tableSize - (oldSize == null ? 0 : oldSize);
+    loadCount++;
+
+    Iterator<Map.Entry<Partition, Long>> it = entries.entrySet().iterator();
+    while (size > capacity && entries.size() > 1) {
+      Map.Entry<Partition, Long> entry = it.next();
+      it.remove();
+      size -= entry.getValue();
+      entry.getKey().evictTables();
+      evictionCount++;
+    }
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public synchronized long getLoadCount() {
+    return loadCount;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+}
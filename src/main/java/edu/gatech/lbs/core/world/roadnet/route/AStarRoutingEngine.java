@@ -0,0 +1,81 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet.route;
+
+import edu.gatech.lbs.core.vector.CartesianVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadGraph;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.core.world.roadnet.RoutingWorkspace;
+
+/**
+ * A* search, guided by the straight-line distance to the target: as is, for shortest distance routes, and divided by
+ * the highest speed limit of the network, for shortest travel time routes.
+ */
+public class AStarRoutingEngine extends RoutingEngine {
+  public static final String xmlName = "astar";
+
+  // Segment lengths are rounded down piece by piece, so a segment can be a few mm shorter than the straight line
+  // between its ends. The straight-line distance is scaled down by this much, to remain a lower bound.
+  public static final double heuristicScale = 0.99;
+
+  public AStarRoutingEngine(RoadMap roadmap, boolean isTravelTime) {
+    super(roadmap, isTravelTime);
+  }
+
+  protected int getHeuristic(RoadGraph g, int junctionId, RoadnetVector target, CartesianVector targetLocation) {
+    if (isTravelTime && g.getMaxSpeedLimit() <= 0) {
+      return 0;
+    }
+    double dx = g.getJunctionX(junctionId) - targetLocation.getX();
+    double dy = g.getJunctionY(junctionId) - targetLocation.getY();
+    double d = heuristicScale * Math.sqrt(dx * dx + dy * dy);
+    return (int) (isTravelTime ? 1000 * d / g.getMaxSpeedLimit() : d);
+  }
+
+  public Route getShortestRoute(RoadnetVector source, RoadnetVector target) {
+    Route route = getSingleSegmentRoute(source, target);
+    if (route != null) {
+      return route;
+    }
+
+    RoadGraph g = roadmap.getGraph();
+    CartesianVector targetLocation = target.toCartesianVector();
+    RoutingWorkspace ws = RoutingWorkspace.get(g.getJunctionIdBound());
+    addSourceJunctions(g, source, target, targetLocation, ws);
+
+    // as the heuristic is not exact, junctions may be settled more than once:
+    int cMin = Integer.MAX_VALUE;
+    int lastJunctionId = -1;
+    while (!ws.isQueueEmpty() && ws.getKey(ws.peek()) < cMin) {
+      int junId = ws.poll();
+      int c = ws.getDistance(junId);
+
+      // check for possible shortest route, if at a junction next to target:
+      int cTarget = getCostToTarget(g, junId, target);
+      if (cTarget != -1 && c + cTarget < cMin) {
+        cMin = c + cTarget;
+        lastJunctionId = junId;
+      }
+
+      for (int e = g.getFirstEdge(junId); e < g.getEndEdge(junId); e++) {
+        int cost = getEdgeCost(g, e);
+        if (cost == RoadGraph.impassable) {
+          continue;
+        }
+        int c2 = c + cost;
+        int otherEndId = g.getEdgeTarget(e);
+        if (!ws.isReached(otherEndId) || c2 < ws.getDistance(otherEndId)) {
+          ws.update(otherEndId, c2, g.getEdgeSegment(e), c2 + getHeuristic(g, otherEndId, target, targetLocation));
+        }
+      }
+    }
+
+    if (lastJunctionId == -1) {
+      return null;
+    }
+    return makeRoute(g, source, target, lastJunctionId, ws, null);
+  }
+}
@@ -0,0 +1,77 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet.route;
+
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadGraph;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.core.world.roadnet.RoutingWorkspace;
+
+/**
+ * Bidirectional Dijkstra search: grows a search tree forward from the source and one backward from the target, always
+ * expanding the one with the closer frontier, until no route thru the unsettled junctions could be shorter than the
+ * best one found where the trees meet.
+ */
+public class BidirectionalRoutingEngine extends RoutingEngine {
+  public static final String xmlName = "bidirectional";
+
+  public BidirectionalRoutingEngine(RoadMap roadmap, boolean isTravelTime) {
+    super(roadmap, isTravelTime);
+  }
+
+  public Route getShortestRoute(RoadnetVector source, RoadnetVector target) {
+    Route route = getSingleSegmentRoute(source, target);
+    if (route != null) {
+      return route;
+    }
+
+    RoadGraph g = roadmap.getGraph();
+    RoutingWorkspace fw = RoutingWorkspace.get(g.getJunctionIdBound());
+    RoutingWorkspace bw = RoutingWorkspace.getBackward(g.getJunctionIdBound());
+    addSourceJunctions(g, source, null, null, fw);
+    addTargetJunctions(g, target, bw);
+
+    int cMin = Integer.MAX_VALUE;
+    int meetJunctionId = -1;
+    while (!fw.isQueueEmpty() && !bw.isQueueEmpty()
+        && (long) fw.getDistance(fw.peek()) + bw.getDistance(bw.peek()) < cMin) {
+      boolean isForward = fw.getDistance(fw.peek()) <= bw.getDistance(bw.peek());
+      RoutingWorkspace ws = isForward ? fw : bw;
+      RoutingWorkspace other = isForward ? bw : fw;
+
+      int junId = ws.poll();
+      int c = ws.getDistance(junId);
+      if (other.isReached(junId) && c + other.getDistance(junId) < cMin) {
+        cMin = c + other.getDistance(junId);
+        meetJunctionId = junId;
+      }
+
+      int end = isForward ? g.getEndEdge(junId) : g.getEndInEdge(junId);
+      for (int i = isForward ? g.getFirstEdge(junId) : g.getFirstInEdge(junId); i < end; i++) {
+        int e = isForward ? i : g.getInEdge(i);
+        int cost = getEdgeCost(g, e);
+        if (cost == RoadGraph.impassable) {
+          continue;
+        }
+        int c2 = c + cost;
+        int otherEndId = isForward ? g.getEdgeTarget(e) : g.getEdgeSource(e);
+        if (!ws.isReached(otherEndId) || c2 < ws.getDistance(otherEndId)) {
+          ws.update(otherEndId, c2, g.getEdgeSegment(e));
+
+          // check for possible shortest route, if the other search tree also reached this junction:
+          if (other.isReached(otherEndId) && c2 + other.getDistance(otherEndId) < cMin) {
+            cMin = c2 + other.getDistance(otherEndId);
+            meetJunctionId = otherEndId;
+          }
+        }
+      }
+    }
+
+    if (meetJunctionId == -1) {
+      return null;
+    }
+    return makeRoute(g, source, target, meetJunctionId, fw, bw);
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet.route;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.ContractionHierarchy;
+import edu.gatech.lbs.core.world.roadnet.RoadGraph;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.core.world.roadnet.RoutingWorkspace;
+
+/**
+ * Shortest route queries on a contraction hierarchy of the road network: a forward search from the source on upward
+ * edges, and a backward search from the target on downward edges, meeting at the highest junction of the route. The
+ * road map must not be changed after the hierarchy was built.
+ */
+public class ContractionHierarchyRoutingEngine extends RoutingEngine {
+  public static final String xmlName = "ch";
+
+  protected ContractionHierarchy hierarchy;
+
+  public ContractionHierarchyRoutingEngine(RoadMap roadmap, ContractionHierarchy hierarchy) {
+    super(roadmap, hierarchy.isTravelTime());
+    this.hierarchy = hierarchy;
+  }
+
+  public ContractionHierarchy getHierarchy() {
+    return hierarchy;
+  }
+
+  public Route getShortestRoute(RoadnetVector source, RoadnetVector target) {
+    Route route = getSingleSegmentRoute(source, target);
+    if (route != null) {
+      return route;
+    }
+
+    RoadGraph g = roadmap.getGraph();
+    RoutingWorkspace fw = RoutingWorkspace.get(hierarchy.getJunctionIdBound());
+    RoutingWorkspace bw = RoutingWorkspace.getBackward(hierarchy.getJunctionIdBound());
+    addSourceJunctions(g, source, null, null, fw);
+    addTargetJunctions(g, target, bw);
+
+    // each search runs until its frontier is beyond the best route found:
+    int cMin = Integer.MAX_VALUE;
+    int meetJunctionId = -1;
+    while (true) {
+      boolean isForwardDone = fw.isQueueEmpty() || fw.getDistance(fw.peek()) >= cMin;
+      boolean isBackwardDone = bw.isQueueEmpty() || bw.getDistance(bw.peek()) >= cMin;
+      if (isForwardDone && isBackwardDone) {
+        break;
+      }
+      boolean isForward = !isForwardDone && (isBackwardDone || fw.getDistance(fw.peek()) <= bw.getDistance(bw.peek()));
+      RoutingWorkspace ws = isForward ? fw : bw;
+      RoutingWorkspace other = isForward ? bw : fw;
+
+      int junId = ws.poll();
+      int c = ws.getDistance(junId);
+      if (other.isReached(junId) && c + other.getDistance(junId) < cMin) {
+        cMin = c + other.getDistance(junId);
+        meetJunctionId = junId;
+      }
+
+      int end = isForward ? hierarchy.getEndUpEdge(junId) : hierarchy.getEndDownEdge(junId);
+      for (int i = isForward ? hierarchy.getFirstUpEdge(junId) : hierarchy.getFirstDownEdge(junId); i < end; i++) {
+        int e = isForward ? hierarchy.getUpEdge(i) : hierarchy.getDownEdge(i);
+        int c2 = c + hierarchy.getEdgeCost(e);
+        int otherEndId = isForward ? hierarchy.getEdgeTarget(e) : hierarchy.getEdgeSource(e);
+        if (!ws.isReached(otherEndId) || c2 < ws.getDistance(otherEndId)) {
+          ws.update(otherEndId, c2, e);
+        }
+      }
+    }
+
+    if (meetJunctionId == -1) {
+      return null;
+    }
+
+    // hierarchy edges of the route, from the first junction to the last:
+    List<Integer> edges = new ArrayList<Integer>();
+    int firstJunctionId = meetJunctionId;
+    int e;
+    while ((e = fw.getPrevSegment(firstJunctionId)) != -1) {
+      edges.add(0, e);
+      firstJunctionId = hierarchy.getEdgeSource(e);
+    }
+    int junId = meetJunctionId;
+    while ((e = bw.getPrevSegment(junId)) != -1) {
+      edges.add(e);
+      junId = hierarchy.getEdgeTarget(e);
+    }
+
+    // unpack to segments:
+    List<Integer> segmentIds = new ArrayList<Integer>();
+    for (int edge : edges) {
+      hierarchy.unpackEdge(edge, segmentIds);
+    }
+
+    route = new Route(source, target);
+    int sourceSegId = source.getRoadSegment().getId();
+    route.addLastSegment(source.getRoadSegment(), g.getJunctionIndex(sourceSegId, firstJunctionId) == 1);
+    junId = firstJunctionId;
+    for (int segId : segmentIds) {
+      route.addLastSegment(roadmap.getRoadSegment(segId), g.getSegmentSource(segId) == junId);
+      junId = getOtherJunction(g, segId, junId);
+    }
+    int targetSegId = target.getRoadSegment().getId();
+    route.addLastSegment(target.getRoadSegment(), g.getJunctionIndex(targetSegId, junId) == 0);
+    return route;
+  }
+}
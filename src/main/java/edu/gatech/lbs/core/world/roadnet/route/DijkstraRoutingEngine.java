@@ -0,0 +1,25 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet.route;
+
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+
+/**
+ * Shortest distance routes with RoadMap's unidirectional Dijkstra search. This is the default routing engine.
+ */
+public class DijkstraRoutingEngine implements IRoutingEngine {
+  public static final String xmlName = "dijkstra";
+
+  protected RoadMap roadmap;
+
+  public DijkstraRoutingEngine(RoadMap roadmap) {
+    this.roadmap = roadmap;
+  }
+
+  public Route getShortestRoute(RoadnetVector source, RoadnetVector target) {
+    return roadmap.getDijkstraRoute(source, target);
+  }
+}
@@ -0,0 +1,17 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet.route;
+
+import edu.gatech.lbs.core.vector.RoadnetVector;
+
+/**
+ * Shortest route search on a road network.
+ */
+public interface IRoutingEngine {
+  /**
+   * Get the shortest route from source to target, or null if the target is unreachable.
+   */
+  public Route getShortestRoute(RoadnetVector source, RoadnetVector target);
+}
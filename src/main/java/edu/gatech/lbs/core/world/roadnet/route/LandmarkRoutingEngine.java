@@ -0,0 +1,44 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet.route;
+
+import edu.gatech.lbs.core.vector.CartesianVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.LandmarkTable;
+import edu.gatech.lbs.core.world.roadnet.RoadGraph;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+
+/**
+ * A* search with landmark lower bounds (ALT): the cost to the target is bounded by the triangle inequality on the
+ * precomputed landmark costs, or by the straight-line bound of AStarRoutingEngine, whichever is higher.
+ */
+public class LandmarkRoutingEngine extends AStarRoutingEngine {
+  public static final String xmlName = "alt";
+
+  protected LandmarkTable landmarks;
+
+  public LandmarkRoutingEngine(RoadMap roadmap, LandmarkTable landmarks) {
+    super(roadmap, landmarks.isTravelTime());
+    this.landmarks = landmarks;
+  }
+
+  public LandmarkTable getLandmarks() {
+    return landmarks;
+  }
+
+  protected int getHeuristic(RoadGraph g, int junctionId, RoadnetVector target, CartesianVector targetLocation) {
+    // the target is reached thru one of the ends of its segment:
+    int segId = target.getRoadSegment().getId();
+    int bound = Integer.MAX_VALUE;
+    for (int j = 0; j < 2; j++) {
+      int junId = (j == 0 ? g.getSegmentSource(segId) : g.getSegmentTarget(segId));
+      int c = getCostToTarget(g, junId, target);
+      if (c != -1) {
+        bound = Math.min(bound, landmarks.getLowerBound(junctionId, junId) + c);
+      }
+    }
+    return Math.max(bound, super.getHeuristic(g, junctionId, target, targetLocation));
+  }
+}
@@ -0,0 +1,142 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.core.world.roadnet.route;
+
+import edu.gatech.lbs.core.vector.CartesianVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadGraph;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.core.world.roadnet.RoadSegment;
+import edu.gatech.lbs.core.world.roadnet.RoutingWorkspace;
+
+/**
+ * Common parts of the routing engines that search the road network's RoadGraph: route costs by distance [mm] or by
+ * travel time at the speed limits [ms], and building the Route from the search trees.
+ */
+public abstract class RoutingEngine implements IRoutingEngine {
+  protected RoadMap roadmap;
+  protected boolean isTravelTime; // minimize travel time, instead of distance?
+
+  protected RoutingEngine(RoadMap roadmap, boolean isTravelTime) {
+    this.roadmap = roadmap;
+    this.isTravelTime = isTravelTime;
+  }
+
+  public boolean isTravelTime() {
+    return isTravelTime;
+  }
+
+  /**
+   * Cost of traveling the given length on the segment.
+   */
+  protected int getCost(RoadGraph g, int segmentId, int length) {
+    return isTravelTime ? RoadGraph.getTravelTime(length, g.getSegmentSpeedLimit(segmentId)) : length;
+  }
+
+  protected int getEdgeCost(RoadGraph g, int edge) {
+    return isTravelTime ? g.getEdgeTravelTime(edge) : g.getEdgeLength(edge);
+  }
+
+  /**
+   * Seed the search with the ends of the source segment that can be driven to from the source. For goal-directed
+   * searches, the target & its Cartesian location are given to prioritize them; otherwise they are null.
+   */
+  protected void addSourceJunctions(RoadGraph g, RoadnetVector source, RoadnetVector target,
+      CartesianVector targetLocation, RoutingWorkspace ws) {
+    int segId = source.getRoadSegment().getId();
+    for (int j = 0; j == 0 || (j == 1 && !g.isSegmentDirected(segId)); j++) {
+      int junId = (j == 0 ? g.getSegmentSource(segId) : g.getSegmentTarget(segId));
+      int c = getCost(g, segId, j == 0 ? source.getProgress() : g.getSegmentLength(segId) - source.getProgress());
+      if (c != RoadGraph.impassable && (!ws.isReached(junId) || c < ws.getDistance(junId))) {
+        ws.update(junId, c, -1, c + (target != null ? getHeuristic(g, junId, target, targetLocation) : 0));
+      }
+    }
+  }
+
+  /**
+   * Seed a backward search with the ends of the target segment that the target can be driven to from.
+   */
+  protected void addTargetJunctions(RoadGraph g, RoadnetVector target, RoutingWorkspace ws) {
+    int segId = target.getRoadSegment().getId();
+    for (int j = 0; j < 2; j++) {
+      int junId = (j == 0 ? g.getSegmentSource(segId) : g.getSegmentTarget(segId));
+      int c = getCostToTarget(g, junId, target);
+      if (c != -1 && (!ws.isReached(junId) || c < ws.getDistance(junId))) {
+        ws.update(junId, c, -1);
+      }
+    }
+  }
+
+  /**
+   * Cost from the junction to the target, if the junction is an end of the target segment that the target can be
+   * driven to from, or -1 otherwise (also if the segment is impassable).
+   */
+  protected int getCostToTarget(RoadGraph g, int junctionId, RoadnetVector target) {
+    int segId = target.getRoadSegment().getId();
+    int c = -1;
+    if (g.getSegmentSource(segId) == junctionId) {
+      c = getCost(g, segId, target.getProgress());
+    } else if (g.getSegmentTarget(segId) == junctionId && !g.isSegmentDirected(segId)) {
+      c = getCost(g, segId, g.getSegmentLength(segId) - target.getProgress());
+    }
+    return c != RoadGraph.impassable ? c : -1;
+  }
+
+  /**
+   * Lower bound of the cost from the junction to the target, for goal-directed searches.
+   */
+  protected int getHeuristic(RoadGraph g, int junctionId, RoadnetVector target, CartesianVector targetLocation) {
+    return 0;
+  }
+
+  /**
+   * Route with a single segment, if source & target are on the same segment, and target is reachable from source on
+   * the segment; null otherwise.
+   */
+  protected static Route getSingleSegmentRoute(RoadnetVector source, RoadnetVector target) {
+    RoadSegment seg = source.getRoadSegment();
+    if (seg.getId() == target.getRoadSegment().getId()
+        && (!seg.isDirected() || source.getProgress() <= target.getProgress())) {
+      Route route = new Route(source, target);
+      route.addFirstSegment(seg, source.getProgress() <= target.getProgress());
+      return route;
+    }
+    return null;
+  }
+
+  /**
+   * Build the route that goes thru the given junction, following the forward search tree back to the source, and the
+   * backward search tree (if any) on to the target.
+   */
+  protected Route makeRoute(RoadGraph g, RoadnetVector source, RoadnetVector target, int junctionId,
+      RoutingWorkspace forward, RoutingWorkspace backward) {
+    Route route = new Route(source, target);
+
+    // segments from the junction to the target:
+    int junId = junctionId;
+    int segId;
+    while (backward != null && (segId = backward.getPrevSegment(junId)) != -1) {
+      route.addLastSegment(roadmap.getRoadSegment(segId), g.getJunctionIndex(segId, junId) == 0);
+      junId = getOtherJunction(g, segId, junId);
+    }
+    RoadSegment targetSeg = target.getRoadSegment();
+    route.addLastSegment(targetSeg, g.getJunctionIndex(targetSeg.getId(), junId) == 0);
+
+    // segments from the source to the junction:
+    junId = junctionId;
+    while ((segId = forward.getPrevSegment(junId)) != -1) {
+      route.addFirstSegment(roadmap.getRoadSegment(segId), g.getJunctionIndex(segId, junId) == 1);
+      junId = getOtherJunction(g, segId, junId);
+    }
+    RoadSegment sourceSeg = source.getRoadSegment();
+    route.addFirstSegment(sourceSeg, g.getJunctionIndex(sourceSeg.getId(), junId) == 1);
+
+    return route;
+  }
+
+  protected static int getOtherJunction(RoadGraph g, int segmentId, int junctionId) {
+    return g.getSegmentSource(segmentId) == junctionId ? g.getSegmentTarget(segmentId) : g.getSegmentSource(segmentId);
+  }
+}
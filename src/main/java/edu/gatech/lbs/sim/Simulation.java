@@ -25,12 +25,17 @@ import edu.gatech.lbs.core.logging.Logz;
 import edu.gatech.lbs.core.logging.Varz;
 import edu.gatech.lbs.core.query.LocationBasedQuery;
 import edu.gatech.lbs.core.query.QueryKey;
+import edu.gatech.lbs.core.random.RandomStreamFactory;
+import edu.gatech.lbs.core.vector.CartesianVector;
 import edu.gatech.lbs.core.vector.IVector;
 import edu.gatech.lbs.core.world.IWorld;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.core.world.roadnet.RoadSegment;
 import edu.gatech.lbs.sim.agent.SimAgent;
 import edu.gatech.lbs.sim.config.IXmlConfigInterpreter;
 import edu.gatech.lbs.sim.config.NullInterpreter;
 import edu.gatech.lbs.sim.config.XmlAgentsConfigInterpreter;
+import edu.gatech.lbs.sim.config.XmlSimulationConfigInterpreter;
 import edu.gatech.lbs.sim.config.XmlTimesConfigInterpreter;
 import edu.gatech.lbs.sim.config.XmlWorldConfigInterpreter;
 import edu.gatech.lbs.sim.gui.SimPanel;
@@ -70,6 +75,8 @@ public class Simulation {
   protected HashMap<QueryKey, LocationBasedQuery> queries; // simQueryKey -> query
   protected HashMap<Integer, List<IVector>> trajectories;// agentID -->list of locations
   protected SimEventQueue eventQueue; // the simulation event queue
+  protected String eventQueueType; // event store used by the queues, see SimEventQueue.makeEventStore()
+  protected RandomStreamFactory randomStreams; // source of all random numbers used to generate traces
   protected Collection<ISimActivity> simActivities;
 
 
@@ -77,6 +84,7 @@ public class Simulation {
     simActivities = new LinkedList<ISimActivity>();
     agents = new HashMap<Integer, SimAgent>();
     trajectories = new HashMap<Integer, List<IVector>>();
+    randomStreams = RandomStreamFactory.makeUnseeded();
   }
 
   public void setSimTimes(long simStartTime, long simEndTime, long simWarmupDuration) {
@@ -107,6 +115,9 @@ public class Simulation {
 
   public void setWorld(IWorld world) {
     this.world = world;
+    if (world instanceof RoadMap) {
+      CartesianVector.setDefaultRoadMap((RoadMap) world);
+    }
   }
 
   public IWorld getWorld() {
@@ -165,8 +176,8 @@ public class Simulation {
   }
 
   public void updateAgentIndex(SimAgent agent, IVector newLocation) {
-    IVector oldLocation = agent.getLocation();
-    int oldSegmentId = oldLocation != null ? oldLocation.toRoadnetVector().getRoadSegment().getId() : -1;
+    RoadSegment oldSegment = agent.getSimPhysicalAttributes().getRoadSegment();
+    int oldSegmentId = oldSegment != null ? oldSegment.getId() : -1;
     int newSegmentId = newLocation != null ? newLocation.toRoadnetVector().getRoadSegment().getId() : -1;
 
     if (oldSegmentId == newSegmentId) {
@@ -198,6 +209,31 @@ public class Simulation {
     agent.simulateRemoveQuery(simKey);
   }
 
+  public void setEventQueueType(String eventQueueType) {
+    // fail early on unknown types:
+    SimEventQueue.makeEventStore(eventQueueType);
+    this.eventQueueType = eventQueueType;
+  }
+
+  public String getEventQueueType() {
+    return eventQueueType;
+  }
+
+  public void setRandomStreams(RandomStreamFactory randomStreams) {
+    this.randomStreams = randomStreams;
+  }
+
+  public RandomStreamFactory getRandomStreams() {
+    return randomStreams;
+  }
+
+  /**
+   * Makes an empty event queue, backed by the configured event store.
+   */
+  public SimEventQueue makeEventQueue() {
+    return new SimEventQueue(SimEventQueue.makeEventStore(eventQueueType));
+  }
+
   public SimEventQueue getQueue() {
     return eventQueue;
   }
@@ -283,7 +319,7 @@ public class Simulation {
    * previously loaded configuration.
    */
   public void initSimulation() {
-    eventQueue = new SimEventQueue();
+    eventQueue = makeEventQueue();
     eventQueue.setLoadableSimEvents(getLoadableTraceSimEvents());
 
     agentIndex = new HashMap<Integer, List<SimAgent>>();
@@ -334,6 +370,7 @@ public class Simulation {
 
     Varz.set("simRunTime", (simEndTime - simStartTime - simWarmupDuration) / 1000.0); // [sec], without warmup
     Varz.set("agentCount", agents.size());
+    Varz.set("randomSeed", randomStreams.getRootSeed());
   }
 
   /**
@@ -354,6 +391,7 @@ public class Simulation {
    */
   protected Collection<IXmlConfigInterpreter> getConfigInterpreters() {
     Collection<IXmlConfigInterpreter> interpreters = new LinkedList<IXmlConfigInterpreter>();
+    interpreters.add(new XmlSimulationConfigInterpreter());
     interpreters.add(new XmlTimesConfigInterpreter());
     interpreters.add(new XmlWorldConfigInterpreter());
     interpreters.add(new XmlAgentsConfigInterpreter());
@@ -0,0 +1,139 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.agent;
+
+import java.util.Arrays;
+
+import edu.gatech.lbs.core.vector.IVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.core.world.roadnet.RoadSegment;
+import edu.gatech.lbs.sim.scheduling.event.IMobilityChangeEvent;
+
+/**
+ * Struct-of-arrays store of the agents' last road network mobility state, indexed by simAgentId: the timestamp of the
+ * last mobility change, and the segment, progress, velocity & acceleration it set. Agents backed by the store (see
+ * StoredSimPhysicalAttributes) keep no reference to their last event or its vectors, which makes the per-agent heap
+ * footprint small enough for millions of agents.
+ */
+public class AgentStateStore {
+  public static final String xmlName = "arrays";
+
+  // flags:
+  private static final byte hasLocation = 1;
+  private static final byte hasVelocity = 2;
+  private static final byte hasAcceleration = 4;
+
+  private RoadMap roadmap;
+
+  private long[] timestamp; // [ms]
+  private int[] segmentId;
+  private int[] progress; // [mm]
+  private int[] velocity; // [mm/s]
+  private int[] acceleration; // [mm/s^2]
+  private byte[] flags;
+
+  public AgentStateStore(RoadMap roadmap, int capacity) {
+    this.roadmap = roadmap;
+    capacity = Math.max(1, capacity);
+    timestamp = new long[capacity];
+    segmentId = new int[capacity];
+    progress = new int[capacity];
+    velocity = new int[capacity];
+    acceleration = new int[capacity];
+    flags = new byte[capacity];
+  }
+
+  private void ensureCapacity(int simAgentId) {
+    if (simAgentId < flags.length) {
+      return;
+    }
+    int capacity = Math.max(simAgentId + 1, 2 * flags.length);
+    timestamp = Arrays.copyOf(timestamp, capacity);
+    segmentId = Arrays.copyOf(segmentId, capacity);
+    progress = Arrays.copyOf(progress, capacity);
+    velocity = Arrays.copyOf(velocity, capacity);
+    acceleration = Arrays.copyOf(acceleration, capacity);
+    flags = Arrays.copyOf(flags, capacity);
+  }
+
+  /**
+   * Check whether the state set by the event can be stored: its location is on the road network, and its velocity &
+   * acceleration (if any) are along the same segment.
+   */
+  public static boolean isStorable(IMobilityChangeEvent event) {
+    if (!(event.getLocation() instanceof RoadnetVector)) {
+      return false;
+    }
+    RoadSegment segment = ((RoadnetVector) event.getLocation()).getRoadSegment();
+    return isAlong(event.getVelocity(), segment) && isAlong(event.getAcceleration(), segment);
+  }
+
+  private static boolean isAlong(IVector v, RoadSegment segment) {
+    return v == null || (v instanceof RoadnetVector && ((RoadnetVector) v).getRoadSegment() == segment);
+  }
+
+  /**
+   * Store the state set by the event (which must be storable).
+   */
+  public void set(int simAgentId, IMobilityChangeEvent event) {
+    ensureCapacity(simAgentId);
+    RoadnetVector s0 = (RoadnetVector) event.getLocation();
+    RoadnetVector v0 = (RoadnetVector) event.getVelocity();
+    RoadnetVector a0 = (RoadnetVector) event.getAcceleration();
+    timestamp[simAgentId] = event.getTimestamp();
+    segmentId[simAgentId] = s0.getRoadSegment().getId();
+    progress[simAgentId] = s0.getProgress();
+    velocity[simAgentId] = v0 == null ? 0 : v0.getProgress();
+    acceleration[simAgentId] = a0 == null ? 0 : a0.getProgress();
+    flags[simAgentId] = (byte) (hasLocation | (v0 == null ? 0 : hasVelocity) | (a0 == null ? 0 : hasAcceleration));
+  }
+
+  public void clear(int simAgentId) {
+    if (simAgentId < flags.length) {
+      flags[simAgentId] = 0;
+    }
+  }
+
+  public boolean hasLocation(int simAgentId) {
+    return simAgentId < flags.length && (flags[simAgentId] & hasLocation) != 0;
+  }
+
+  public boolean hasVelocity(int simAgentId) {
+    return simAgentId < flags.length && (flags[simAgentId] & hasVelocity) != 0;
+  }
+
+  public boolean hasAcceleration(int simAgentId) {
+    return simAgentId < flags.length && (flags[simAgentId] & hasAcceleration) != 0;
+  }
+
+  public long getTimestamp(int simAgentId) {
+    return timestamp[simAgentId];
+  }
+
+  public int getSegmentId(int simAgentId) {
+    return segmentId[simAgentId];
+  }
+
+  public RoadSegment getRoadSegment(int simAgentId) {
+    return roadmap.getRoadSegment(segmentId[simAgentId]);
+  }
+
+  public int getProgress(int simAgentId) {
+    return progress[simAgentId];
+  }
+
+  public int getVelocity(int simAgentId) {
+    return velocity[simAgentId];
+  }
+
+  public int getAcceleration(int simAgentId) {
+    return acceleration[simAgentId];
+  }
+
+  public int getCapacity() {
+    return flags.length;
+  }
+}
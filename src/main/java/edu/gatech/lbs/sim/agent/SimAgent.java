@@ -20,6 +20,14 @@ public class SimAgent implements IPhysicalAttributes {
     this.physicalAttributes = new SimPhysicalAttributes(sim);
   }
 
+  /**
+   * Agent whose physical attributes are kept in the given store.
+   */
+  public SimAgent(Simulation sim, int simAgentId, AgentStateStore store) {
+    this.simAgentId = simAgentId;
+    this.physicalAttributes = new StoredSimPhysicalAttributes(sim, store, simAgentId);
+  }
+
   public int getSimAgentId() {
     return simAgentId;
   }
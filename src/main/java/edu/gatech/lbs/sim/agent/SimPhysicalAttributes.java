@@ -4,10 +4,18 @@
 //
 package edu.gatech.lbs.sim.agent;
 
+import edu.gatech.lbs.core.vector.CartesianVector;
 import edu.gatech.lbs.core.vector.IVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadSegment;
 import edu.gatech.lbs.sim.Simulation;
 import edu.gatech.lbs.sim.scheduling.event.IMobilityChangeEvent;
 
+/**
+ * Physical attributes of an agent, extrapolated from its last mobility change event. Besides the IVector getters,
+ * there are primitive accessors (getRoadSegment() & getProgressAt(), getCartesianLocationAt()) for callers querying
+ * many agents, eg. trace snapshots and drawing, which compute the same values without allocating vectors.
+ */
 public class SimPhysicalAttributes implements IPhysicalAttributes {
   protected IMobilityChangeEvent event;
   protected Simulation sim;
@@ -25,23 +33,82 @@ public class SimPhysicalAttributes implements IPhysicalAttributes {
       return null;
     }
 
-    double dt = (sim.getTime() - event.getTimestamp()) / 1000.0;
+    IVector s0 = event.getLocation();
+    if (s0 instanceof RoadnetVector) {
+      return new RoadnetVector(((RoadnetVector) s0).getRoadSegment(), getProgressAt(sim.getTime()));
+    } else if (s0 instanceof CartesianVector) {
+      CartesianVector s = new CartesianVector(0, 0);
+      getCartesianLocationAt(sim.getTime(), s);
+      return s;
+    }
+    return null;
+  }
+
+  /**
+   * Get the road segment the agent is on, or null if its location is not on the road network.
+   */
+  public RoadSegment getRoadSegment() {
+    if (event == null || !(event.getLocation() instanceof RoadnetVector)) {
+      return null;
+    }
+    return ((RoadnetVector) event.getLocation()).getRoadSegment();
+  }
+
+  /**
+   * Get the progress along getRoadSegment() at the given time.
+   */
+  public int getProgressAt(long t) {
+    double dt = (t - event.getTimestamp()) / 1000.0;
 
     // s(t)= s0 + v0*t + a0/2*(t0^2)
+    RoadnetVector s0 = (RoadnetVector) event.getLocation();
+    RoadnetVector v0 = (RoadnetVector) event.getVelocity();
+    RoadnetVector a0 = (RoadnetVector) event.getAcceleration();
+    int progress = s0.getProgress();
+    if (v0 != null) {
+      progress += (int) (v0.getProgress() * dt);
+      if (a0 != null) {
+        progress += (int) (a0.getProgress() * (dt * dt / 2));
+      }
+    }
+    return progress;
+  }
+
+  /**
+   * Write the Cartesian location at the given time into the given vector.
+   *
+   * @return false, if there is no location to write
+   */
+  public boolean getCartesianLocationAt(long t, CartesianVector location) {
+    if (event == null || event.getLocation() == null) {
+      return false;
+    }
+
     IVector s0 = event.getLocation();
+    if (s0 instanceof RoadnetVector) {
+      ((RoadnetVector) s0).getRoadSegment().getLocationAt(getProgressAt(t), location);
+      return true;
+    }
+
+    double dt = (t - event.getTimestamp()) / 1000.0;
+
+    CartesianVector s = (CartesianVector) s0;
     IVector v0 = event.getVelocity();
     IVector a0 = event.getAcceleration();
-    IVector s = null;
-    if (s0 != null) {
-      s = s0.clone();
-      if (v0 != null) {
-        s.add(v0.clone().times(dt));
-        if (a0 != null) {
-          s.add(a0.clone().times(dt * dt / 2));
-        }
+    long x = s.getX();
+    long y = s.getY();
+    if (v0 != null) {
+      CartesianVector v = v0.toCartesianVector();
+      x += (long) (v.getX() * dt);
+      y += (long) (v.getY() * dt);
+      if (a0 != null) {
+        CartesianVector a = a0.toCartesianVector();
+        x += (long) (a.getX() * (dt * dt / 2));
+        y += (long) (a.getY() * (dt * dt / 2));
       }
     }
-    return s;
+    location.set(x, y);
+    return true;
   }
 
   public IVector getVelocity() {
@@ -49,10 +116,14 @@ public class SimPhysicalAttributes implements IPhysicalAttributes {
       return null;
     }
 
+    IVector v0 = event.getVelocity();
+    if (v0 instanceof RoadnetVector) {
+      return new RoadnetVector(((RoadnetVector) v0).getRoadSegment(), getProgressVelocityAt(sim.getTime()));
+    }
+
     double dt = (sim.getTime() - event.getTimestamp()) / 1000.0;
 
     // v(t)= v0 + a0*t
-    IVector v0 = event.getVelocity();
     IVector a0 = event.getAcceleration();
     IVector v = null;
     if (v0 != null) {
@@ -64,6 +135,22 @@ public class SimPhysicalAttributes implements IPhysicalAttributes {
     return v;
   }
 
+  /**
+   * Get the velocity along getRoadSegment() at the given time.
+   */
+  public int getProgressVelocityAt(long t) {
+    double dt = (t - event.getTimestamp()) / 1000.0;
+
+    // v(t)= v0 + a0*t
+    RoadnetVector v0 = (RoadnetVector) event.getVelocity();
+    RoadnetVector a0 = (RoadnetVector) event.getAcceleration();
+    int velocity = v0 == null ? 0 : v0.getProgress();
+    if (v0 != null && a0 != null) {
+      velocity += (int) (a0.getProgress() * dt);
+    }
+    return velocity;
+  }
+
   public IVector getAcceleration() {
     if (event == null) {
       return null;
@@ -0,0 +1,125 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.agent;
+
+import edu.gatech.lbs.core.vector.CartesianVector;
+import edu.gatech.lbs.core.vector.IVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadSegment;
+import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.scheduling.event.IMobilityChangeEvent;
+
+/**
+ * Physical attributes of an agent, kept in an AgentStateStore instead of as a reference to the last mobility change
+ * event. Events that the store cannot represent (eg. off-network locations) are referenced as before.
+ */
+public class StoredSimPhysicalAttributes extends SimPhysicalAttributes {
+  protected AgentStateStore store;
+  protected int simAgentId;
+
+  public StoredSimPhysicalAttributes(Simulation sim, AgentStateStore store, int simAgentId) {
+    super(sim);
+    this.store = store;
+    this.simAgentId = simAgentId;
+  }
+
+  @Override
+  public void setEvent(IMobilityChangeEvent event) {
+    if (event != null && AgentStateStore.isStorable(event)) {
+      store.set(simAgentId, event);
+      this.event = null;
+    } else {
+      store.clear(simAgentId);
+      this.event = event;
+    }
+  }
+
+  private boolean isStored() {
+    return event == null && store.hasLocation(simAgentId);
+  }
+
+  @Override
+  public IVector getLocation() {
+    if (!isStored()) {
+      return super.getLocation();
+    }
+    return new RoadnetVector(store.getRoadSegment(simAgentId), getProgressAt(sim.getTime()));
+  }
+
+  @Override
+  public RoadSegment getRoadSegment() {
+    if (!isStored()) {
+      return super.getRoadSegment();
+    }
+    return store.getRoadSegment(simAgentId);
+  }
+
+  @Override
+  public int getProgressAt(long t) {
+    if (!isStored()) {
+      return super.getProgressAt(t);
+    }
+    double dt = (t - store.getTimestamp(simAgentId)) / 1000.0;
+
+    // s(t)= s0 + v0*t + a0/2*(t0^2)
+    int progress = store.getProgress(simAgentId);
+    if (store.hasVelocity(simAgentId)) {
+      progress += (int) (store.getVelocity(simAgentId) * dt);
+      if (store.hasAcceleration(simAgentId)) {
+        progress += (int) (store.getAcceleration(simAgentId) * (dt * dt / 2));
+      }
+    }
+    return progress;
+  }
+
+  @Override
+  public boolean getCartesianLocationAt(long t, CartesianVector location) {
+    if (!isStored()) {
+      return super.getCartesianLocationAt(t, location);
+    }
+    store.getRoadSegment(simAgentId).getLocationAt(getProgressAt(t), location);
+    return true;
+  }
+
+  @Override
+  public IVector getVelocity() {
+    if (!isStored()) {
+      return super.getVelocity();
+    }
+    if (!store.hasVelocity(simAgentId)) {
+      return null;
+    }
+    return new RoadnetVector(store.getRoadSegment(simAgentId), getProgressVelocityAt(sim.getTime()));
+  }
+
+  @Override
+  public int getProgressVelocityAt(long t) {
+    if (!isStored()) {
+      return super.getProgressVelocityAt(t);
+    }
+    if (!store.hasVelocity(simAgentId)) {
+      return 0;
+    }
+    double dt = (t - store.getTimestamp(simAgentId)) / 1000.0;
+
+    // v(t)= v0 + a0*t
+    int velocity = store.getVelocity(simAgentId);
+    if (store.hasAcceleration(simAgentId)) {
+      velocity += (int) (store.getAcceleration(simAgentId) * dt);
+    }
+    return velocity;
+  }
+
+  @Override
+  public IVector getAcceleration() {
+    if (!isStored()) {
+      return super.getAcceleration();
+    }
+    if (!store.hasAcceleration(simAgentId)) {
+      return null;
+    }
+    return new RoadnetVector(store.getRoadSegment(simAgentId), store.getAcceleration(simAgentId));
+  }
+}
@@ -10,7 +10,9 @@ import java.util.Collection;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
 import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.agent.AgentStateStore;
 import edu.gatech.lbs.sim.agent.SimAgent;
 import edu.gatech.lbs.sim.config.helper.XmlMobilityModelInterpreter;
 import edu.gatech.lbs.sim.config.helper.XmlQueryModelInterpreter;
@@ -24,6 +26,10 @@ public class XmlAgentsConfigInterpreter implements IXmlConfigInterpreter {
     return new SimAgent(sim, simAgentId);
   }
 
+  protected SimAgent makeAgent(Simulation sim, int simAgentId, AgentStateStore store) {
+    return store == null ? makeAgent(sim, simAgentId) : new SimAgent(sim, simAgentId, store);
+  }
+
   public void initFromXmlElement(Element rootNode, Simulation sim) {
     // groups of agents:
     Collection<SimAgent> agents = new ArrayList<SimAgent>();
@@ -32,8 +38,22 @@ public class XmlAgentsConfigInterpreter implements IXmlConfigInterpreter {
       Element agentsNode = (Element) agentsNodes.item(i);
       int agentCount = Integer.parseInt(agentsNode.getAttribute("count"));
 
+      // agent state storage:
+      AgentStateStore store = null;
+      String storeType = agentsNode.getAttribute("store");
+      if (storeType.equalsIgnoreCase(AgentStateStore.xmlName)) {
+        if (!(sim.getWorld() instanceof RoadMap)) {
+          System.out.println("Agent state store '" + AgentStateStore.xmlName + "' requires a road network world.");
+          System.exit(-1);
+        }
+        store = new AgentStateStore((RoadMap) sim.getWorld(), agentCount);
+      } else if (!storeType.isEmpty() && !storeType.equalsIgnoreCase("objects")) {
+        System.out.println("Unknown agent state store '" + storeType + "'.");
+        System.exit(-1);
+      }
+
       for (int simAgentId = 0; simAgentId < agentCount; simAgentId++) {
-        agents.add(makeAgent(sim, simAgentId));
+        agents.add(makeAgent(sim, simAgentId, store));
       }
       sim.setAgents(agents);
 
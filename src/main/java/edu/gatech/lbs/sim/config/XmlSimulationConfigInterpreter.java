@@ -0,0 +1,47 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.config;
+
+import org.w3c.dom.Element;
+
+import edu.gatech.lbs.core.random.RandomStreamFactory;
+import edu.gatech.lbs.sim.Simulation;
+
+/**
+ * Interprets simulation-wide options, given as attributes of the root node.
+ */
+public class XmlSimulationConfigInterpreter implements IXmlConfigInterpreter {
+
+  public void initFromXmlElement(Element rootNode, Simulation sim) {
+    // event queue implementation:
+    String eventQueueType = rootNode.getAttribute("eventqueue");
+    if (!eventQueueType.isEmpty()) {
+      sim.setEventQueueType(eventQueueType);
+      System.out.println("Event queue: " + eventQueueType);
+    }
+
+    // root seed of all random streams:
+    sim.setRandomStreams(makeRandomStreams(rootNode));
+    System.out.println("Random seed: " + sim.getRandomStreams().getRootSeed());
+  }
+
+  /**
+   * Make the random streams seeded by the root node's seed attribute, or unseeded, if there is none.
+   */
+  public static RandomStreamFactory makeRandomStreams(Element rootNode) {
+    String seedStr = rootNode.getAttribute("seed");
+    if (seedStr.isEmpty()) {
+      return RandomStreamFactory.makeUnseeded();
+    }
+
+    try {
+      return new RandomStreamFactory(Long.parseLong(seedStr));
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid random seed: " + seedStr);
+      System.exit(-1);
+      return null;
+    }
+  }
+}
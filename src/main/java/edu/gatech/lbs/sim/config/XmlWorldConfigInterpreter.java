@@ -13,26 +13,41 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import edu.gatech.lbs.core.FileHelper;
 import edu.gatech.lbs.core.logging.Varz;
+import edu.gatech.lbs.core.random.RandomStream;
+import edu.gatech.lbs.core.random.RandomStreamFactory;
 import edu.gatech.lbs.core.world.IWorld;
 import edu.gatech.lbs.core.world.roadnet.ClassedRoadMap;
+import edu.gatech.lbs.core.world.roadnet.ContractionHierarchy;
+import edu.gatech.lbs.core.world.roadnet.LandmarkTable;
+import edu.gatech.lbs.core.world.roadnet.RoadGraph;
 import edu.gatech.lbs.core.world.roadnet.RoadMap;
 import edu.gatech.lbs.core.world.roadnet.RoadSegment;
 import edu.gatech.lbs.core.world.roadnet.parser.MapParser;
 import edu.gatech.lbs.core.world.roadnet.parser.ShpMapParser;
 import edu.gatech.lbs.core.world.roadnet.parser.SvgMapParser;
 import edu.gatech.lbs.core.world.roadnet.partition.Partition;
+import edu.gatech.lbs.core.world.roadnet.partition.PartitionFile;
+import edu.gatech.lbs.core.world.roadnet.partition.PartitionTableCache;
+import edu.gatech.lbs.core.world.roadnet.route.AStarRoutingEngine;
+import edu.gatech.lbs.core.world.roadnet.route.BidirectionalRoutingEngine;
+import edu.gatech.lbs.core.world.roadnet.route.ContractionHierarchyRoutingEngine;
+import edu.gatech.lbs.core.world.roadnet.route.DijkstraRoutingEngine;
+import edu.gatech.lbs.core.world.roadnet.route.IRoutingEngine;
+import edu.gatech.lbs.core.world.roadnet.route.LandmarkRoutingEngine;
 import edu.gatech.lbs.core.world.roadnet.writer.KMLMapWriter;
 import edu.gatech.lbs.sim.Simulation;
 import edu.gatech.lbs.sim.config.paramparser.DistanceParser;
 import edu.gatech.lbs.sim.config.paramparser.IParamParser;
 import edu.gatech.lbs.sim.config.paramparser.SpeedParser;
 import edu.gatech.lbs.sim.config.paramparser.TimeParser;
+import edu.gatech.lbs.sim.tracegenerator.mobilitytrace.locationdistribution.HotspotRoadnetLocationDistribution;
 
 public class XmlWorldConfigInterpreter implements IXmlConfigInterpreter {
 
@@ -49,12 +64,171 @@ public class XmlWorldConfigInterpreter implements IXmlConfigInterpreter {
     return roadmap;
   }
 
+  protected static IRoutingEngine makeRoutingEngine(Element routingNode, RoadMap roadmap, RandomStreamFactory randomStreams) {
+    String routingType = routingNode.getAttribute("type");
+    String metric = routingNode.getAttribute("metric");
+    boolean isTravelTime = false;
+    if (metric.equalsIgnoreCase("time")) {
+      isTravelTime = true;
+    } else if (!metric.isEmpty() && !metric.equalsIgnoreCase("distance")) {
+      System.out.println("Unknown routing metric '" + metric + "'.");
+      System.exit(-1);
+    }
+
+    if (routingType.isEmpty() || routingType.equalsIgnoreCase(DijkstraRoutingEngine.xmlName)) {
+      if (isTravelTime) {
+        System.out.println("Routing type '" + DijkstraRoutingEngine.xmlName + "' only supports the distance metric.");
+        System.exit(-1);
+      }
+      return new DijkstraRoutingEngine(roadmap);
+    } else if (routingType.equalsIgnoreCase(BidirectionalRoutingEngine.xmlName)) {
+      return new BidirectionalRoutingEngine(roadmap, isTravelTime);
+    } else if (routingType.equalsIgnoreCase(AStarRoutingEngine.xmlName)) {
+      return new AStarRoutingEngine(roadmap, isTravelTime);
+    } else if (routingType.equalsIgnoreCase(ContractionHierarchyRoutingEngine.xmlName)) {
+      return new ContractionHierarchyRoutingEngine(roadmap, makeContractionHierarchy(routingNode, roadmap, isTravelTime));
+    } else if (routingType.equalsIgnoreCase(LandmarkRoutingEngine.xmlName)) {
+      return new LandmarkRoutingEngine(roadmap, makeLandmarkTable(routingNode, roadmap, isTravelTime, randomStreams));
+    } else {
+      System.out.println("Unknown routing type '" + routingType + "'.");
+      System.exit(-1);
+    }
+    return null;
+  }
+
+  /**
+   * Load the landmark table from its file, or make it (and save it, if a file was given). Landmarks are selected by
+   * farthest-point selection (seeded by the seed attribute, or 0, so a saved table is reused across unseeded runs), or
+   * at the hotspot centers that a hotspotroadnet location distribution with the same count & seed would pick. A file
+   * made with a different selection, count or seed is rebuilt.
+   */
+  protected static LandmarkTable makeLandmarkTable(Element routingNode, RoadMap roadmap, boolean isTravelTime,
+      RandomStreamFactory randomStreams) {
+    String landmarksStr = routingNode.getAttribute("landmarks");
+    int landmarkCount = landmarksStr.isEmpty() ? 16 : Integer.parseInt(landmarksStr);
+    String selection = routingNode.getAttribute("selection");
+    if (selection.isEmpty()) {
+      selection = "farthest";
+    }
+    String seedStr = routingNode.getAttribute("seed");
+    RandomStream rnd = null;
+    if (selection.equalsIgnoreCase("farthest")) {
+      rnd = new RandomStream(seedStr.isEmpty() ? 0 : Long.parseLong(seedStr));
+    } else if (selection.equalsIgnoreCase("hotspots")) {
+      rnd = seedStr.isEmpty() ? randomStreams.getStream("hotspots", 0) : new RandomStream(Long.parseLong(seedStr));
+    } else {
+      System.out.println("Unknown landmark selection '" + selection + "'.");
+      System.exit(-1);
+    }
+    String altFilename = routingNode.getAttribute("filename");
+    String overwriteAllowed = routingNode.getAttribute("overwrite");
+    RoadGraph graph = roadmap.getGraph();
+
+    if (!altFilename.isEmpty() && !overwriteAllowed.equalsIgnoreCase("yes") && FileHelper.isNonEmptyFileOrUrl(altFilename)) {
+      try {
+        System.out.print("Loading landmark table from '" + altFilename + "'... ");
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(altFilename)));
+        LandmarkTable landmarks = new LandmarkTable(in, graph, isTravelTime);
+        in.close();
+        if (landmarks.getRequestedCount() != landmarkCount) {
+          System.out.println("FAILED. Landmark count differs. Rebuilding it.");
+        } else if (!landmarks.getSelection().equalsIgnoreCase(selection) || landmarks.getSeed() != rnd.getSeed()) {
+          System.out.println("FAILED. Landmark selection or seed differs. Rebuilding it.");
+        } else {
+          System.out.println("done.");
+          return landmarks;
+        }
+      } catch (IOException e) {
+        System.out.println("FAILED. " + e.getMessage() + " Rebuilding it.");
+      }
+    }
+
+    System.out.print("Calculating landmark table with " + landmarkCount + " landmarks... ");
+    long wallStartTime = System.nanoTime();
+    LandmarkTable landmarks = null;
+    if (selection.equalsIgnoreCase("farthest")) {
+      landmarks = new LandmarkTable(graph, landmarkCount, isTravelTime, rnd);
+      if (landmarks.getLandmarkCount() < landmarkCount) {
+        System.out.print("only " + landmarks.getLandmarkCount() + " landmarks found... ");
+      }
+    } else {
+      RoadSegment[] centers = HotspotRoadnetLocationDistribution.getHotspotCenters(roadmap, landmarkCount, rnd);
+      int[] landmarkIds = new int[landmarkCount];
+      for (int i = 0; i < landmarkCount; i++) {
+        landmarkIds[i] = centers[i].getSourceJunction().getId();
+      }
+      landmarks = new LandmarkTable(graph, landmarkIds, isTravelTime);
+    }
+    landmarks.setSelection(selection.toLowerCase(), landmarkCount, rnd.getSeed());
+    Varz.set("wallLandmarkTime", (long) ((System.nanoTime() - wallStartTime) / 1e6));
+
+    if (!altFilename.isEmpty()) {
+      System.out.print("saving... ");
+      try {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(altFilename)));
+        landmarks.saveTo(out);
+        out.close();
+      } catch (IOException e) {
+        System.out.println("Unable to write landmark table file '" + altFilename + "'.");
+        System.exit(-1);
+      }
+    }
+    System.out.println("done.");
+    return landmarks;
+  }
+
+  /**
+   * Load the contraction hierarchy from its file, or build it (and save it, if a file was given).
+   */
+  protected static ContractionHierarchy makeContractionHierarchy(Element routingNode, RoadMap roadmap, boolean isTravelTime) {
+    String chFilename = routingNode.getAttribute("filename");
+    String overwriteAllowed = routingNode.getAttribute("overwrite");
+    RoadGraph graph = roadmap.getGraph();
+
+    if (!chFilename.isEmpty() && !overwriteAllowed.equalsIgnoreCase("yes") && FileHelper.isNonEmptyFileOrUrl(chFilename)) {
+      try {
+        System.out.print("Loading contraction hierarchy from '" + chFilename + "'... ");
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(chFilename)));
+        ContractionHierarchy hierarchy = new ContractionHierarchy(in, graph, isTravelTime);
+        in.close();
+        System.out.println("done.");
+        return hierarchy;
+      } catch (IOException e) {
+        System.out.println("FAILED. " + e.getMessage() + " Rebuilding it.");
+      }
+    }
+
+    System.out.print("Building contraction hierarchy... ");
+    long wallStartTime = System.nanoTime();
+    ContractionHierarchy hierarchy = new ContractionHierarchy(graph, isTravelTime);
+    Varz.set("wallContractionTime", (long) ((System.nanoTime() - wallStartTime) / 1e6));
+    Varz.set("contractionEdgeCount", hierarchy.getEdgeCount());
+
+    if (!chFilename.isEmpty()) {
+      System.out.print("saving... ");
+      try {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(chFilename)));
+        hierarchy.saveTo(out);
+        out.close();
+      } catch (IOException e) {
+        System.out.println("Unable to write contraction hierarchy file '" + chFilename + "'.");
+        System.exit(-1);
+      }
+    }
+    System.out.println("done.");
+    return hierarchy;
+  }
+
   public void initFromXmlElement(Element rootNode, Simulation sim) throws IOException {
-    IWorld world = initFromXmlElement(rootNode);
+    IWorld world = initFromXmlElement(rootNode, sim.getRandomStreams());
     sim.setWorld(world);
   }
   
   public IWorld initFromXmlElement(Element rootNode) throws IOException {
+    return initFromXmlElement(rootNode, XmlSimulationConfigInterpreter.makeRandomStreams(rootNode));
+  }
+
+  public IWorld initFromXmlElement(Element rootNode, RandomStreamFactory randomStreams) throws IOException {
     Element worldNode = (Element) rootNode.getElementsByTagName("world").item(0);
 
     IWorld world = null;
@@ -97,32 +271,47 @@ public class XmlWorldConfigInterpreter implements IXmlConfigInterpreter {
 
       System.out.print("Analyzing road network graph connectivity... ");
       // find maximum connected component:
-      Collection<Partition> components = roadmap.getConnectedComponents();
-      int maxComponentSize = -1;
-      Partition maxComponent = null;
-      for (Partition component : components) {
-        if (component.getSegments().size() > maxComponentSize) {
-          maxComponentSize = component.getSegments().size();
-          maxComponent = component;
+      int[] componentLabels = roadmap.getConnectedComponentLabels();
+      int componentCount = 0;
+      for (int label : componentLabels) {
+        componentCount = Math.max(componentCount, label + 1);
+      }
+      int[] componentSizes = new int[componentCount];
+      for (int label : componentLabels) {
+        if (label != -1) {
+          componentSizes[label]++;
+        }
+      }
+      int maxComponent = 0;
+      for (int i = 1; i < componentCount; i++) {
+        if (componentSizes[i] > componentSizes[maxComponent]) {
+          maxComponent = i;
         }
       }
 
       // remove all segments, which are not in the max. connected component:
-      int trashSegmentCount = 0;
-      for (Partition component : components) {
-        if (component != maxComponent) {
-          for (RoadSegment segment : component.getSegments()) {
-            roadmap.removeRoadSegment(segment);
-            trashSegmentCount++;
-          }
+      List<RoadSegment> trashSegments = new ArrayList<RoadSegment>();
+      for (RoadSegment segment : roadmap.getRoadSegments()) {
+        if (componentLabels[segment.getId()] != maxComponent) {
+          trashSegments.add(segment);
         }
       }
-      System.out.println(components.size() + " connected components found. Removed " + trashSegmentCount + " segments that were not in the largest connected component.");
+      roadmap.removeRoadSegments(trashSegments);
+      System.out.println(componentCount + " connected components found. Removed " + trashSegments.size() + " segments that were not in the largest connected component.");
+
+      // segment & junction ids are final now, switch to id-indexed storage:
+      roadmap.compact();
 
       // show stats:
       roadmap.showStats();
       Varz.set("roadmapLength", roadmap.getLengthTotal() / 1000.0);
 
+      // routing:
+      NodeList routingNodes = worldNode.getElementsByTagName("routing");
+      if (routingNodes.getLength() != 0) {
+        roadmap.setRoutingEngine(makeRoutingEngine((Element) routingNodes.item(0), roadmap, randomStreams));
+      }
+
       // partitioning:
       NodeList nl = worldNode.getElementsByTagName("partition");
       if (nl.getLength() != 0) {
@@ -141,22 +330,32 @@ public class XmlWorldConfigInterpreter implements IXmlConfigInterpreter {
           } else {
             seedPriorityMode = 0;
           }
+          // grow partitions from this many seeds at a time, concurrently:
+          String threadsStr = partitionNode.getAttribute("threads");
+          int threadCount = threadsStr.isEmpty() ? 1 : Integer.parseInt(threadsStr);
+          // lazy partitions compute their tables on first use, and keep at most cache_size [MB] of them in memory:
+          if (partitionNode.getAttribute("lazy").equalsIgnoreCase("yes")) {
+            String cacheSizeStr = partitionNode.getAttribute("cache_size");
+            long cacheSize = cacheSizeStr.isEmpty() ? 256 : Long.parseLong(cacheSizeStr);
+            roadmap.setPartitionTableCache(new PartitionTableCache(cacheSize << 20));
+            Varz.set("partitionTableCacheSize", cacheSize);
+          }
           System.out.print("Partitioning roadmap using " + partitionType + " type partitioning with radius=" + radiusStr + "... ");
           long wallStartTime = System.nanoTime();
 
           if (partitionType.equalsIgnoreCase("hop")) {
             int partitionRadius = Integer.parseInt(radiusStr);
-            partitions = roadmap.makePartitions(partitionRadius, 1, seedPriorityMode);
+            partitions = roadmap.makePartitions(partitionRadius, 1, seedPriorityMode, randomStreams.getStream("partition", 0), threadCount);
             Varz.set("partitionRadius", partitionRadius);
           } else if (partitionType.equalsIgnoreCase("distance")) {
             IParamParser pparser = new DistanceParser();
             int partitionRadius = pparser.parse(radiusStr);
-            partitions = roadmap.makePartitions(partitionRadius, 2, seedPriorityMode);
+            partitions = roadmap.makePartitions(partitionRadius, 2, seedPriorityMode, randomStreams.getStream("partition", 0), threadCount);
             Varz.set("partitionRadius", partitionRadius);
           } else if (partitionType.equalsIgnoreCase("time")) {
             IParamParser pparser = new TimeParser();
             int partitionRadius = pparser.parse(radiusStr);
-            partitions = roadmap.makePartitions(partitionRadius, 3, seedPriorityMode);
+            partitions = roadmap.makePartitions(partitionRadius, 3, seedPriorityMode, randomStreams.getStream("partition", 0), threadCount);
             Varz.set("partitionRadius", partitionRadius);
           } else {
             System.out.println("FAILED. Unknown partitioning type '" + partitionType + "'.");
@@ -186,12 +385,21 @@ public class XmlWorldConfigInterpreter implements IXmlConfigInterpreter {
           if (!partitionFilename.isEmpty()) {
             System.out.print("saving... ");
             try {
-              DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partitionFilename)));
-              out.writeInt(partitions.size());
-              for (Partition partition : partitions) {
-                partition.saveTo(out);
+              String partitionFormat = partitionNode.getAttribute("format");
+              if (partitionFormat.isEmpty()) {
+                partitionFormat = PartitionFile.mappedFormat;
+              }
+              boolean isLazy = roadmap.getPartitionTableCache() != null;
+              if (isLazy) {
+                // the file holds all tables, so compute them concurrently now, instead of one by one while writing:
+                RoadMap.precomputePartitions(partitions, Runtime.getRuntime().availableProcessors());
+              }
+              PartitionFile.write(partitionFilename, partitions, partitionFormat);
+              if (isLazy && partitionFormat.equalsIgnoreCase(PartitionFile.mappedFormat)) {
+                // page the tables in from the file from now on, instead of holding all of them in memory:
+                partitions = PartitionFile.read(partitionFilename, roadmap);
+                roadmap.setPartitions(partitions);
               }
-              out.close();
             } catch (IOException e) {
               System.out.println("Unable to write partition file '" + partitionFilename + "'.");
               System.exit(-1);
@@ -202,15 +410,8 @@ public class XmlWorldConfigInterpreter implements IXmlConfigInterpreter {
         } else {
           try {
             System.out.print("Loading roadmap partitioning from '" + partitionFilename + "'... ");
-            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(partitionFilename)));
-            int partitionCount = in.readInt();
-            partitions = new ArrayList<Partition>(partitionCount);
-            for (int i = 0; i < partitionCount; i++) {
-              Partition p = new Partition(in, roadmap);
-              partitions.add(p);
-            }
+            partitions = PartitionFile.read(partitionFilename, roadmap);
             roadmap.setPartitions(partitions);
-            in.close();
             System.out.println("done.");
           } catch (IOException e) {
             System.out.println("Unable to read partition file '" + partitionFilename + "'.");
@@ -7,6 +7,7 @@ package edu.gatech.lbs.sim.config.helper;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.world.roadnet.RoadMap;
 import edu.gatech.lbs.sim.Simulation;
 import edu.gatech.lbs.sim.config.IXmlConfigInterpreter;
@@ -46,8 +47,9 @@ public class XmlLocationDistributionInterpreter implements IXmlConfigInterpreter
       }
       // int[] distrHierarchyStDev = { 5000, 500 };
       // double[] distrHierarcyExitProb = { 0.05, 0.1 };
+      // the shared upper levels of the hierarchy are drawn by their own stream:
       locationDistribution = new HierarchicGaussianLocationDistribution(sim.getWorld().getBounds(),
-          distrHierarchyStDev, distrHierarcyExitProb);
+          distrHierarchyStDev, distrHierarcyExitProb, sim.getRandomStreams().getStream("hierarchicgaussian", 0));
 
     } else if (locationdistributionType.equalsIgnoreCase(UniformRoadnetLocationDistribution.xmlName)) {
       /**
@@ -81,10 +83,11 @@ public class XmlLocationDistributionInterpreter implements IXmlConfigInterpreter
       int hotspotCount = Integer.parseInt(locationDistributionNode.getAttribute("count"));
       double coeff = Double.parseDouble(locationDistributionNode.getAttribute("coeff"));
       String seedStr = locationDistributionNode.getAttribute("seed");
-      long seed = seedStr.isEmpty() ? -1 : Long.parseLong(seedStr);
+      // hotspots are placed by their own seed, if given, otherwise by the simulation's root seed:
+      RandomStream rnd = seedStr.isEmpty() ? sim.getRandomStreams().getStream("hotspots", 0) : new RandomStream(Long.parseLong(seedStr));
 
       locationDistribution = new HotspotRoadnetLocationDistribution((RoadMap) sim.getWorld(), hotspotCount, coeff,
-          seed);
+          rnd);
 
     } else {
       System.out.println("Unknown location distribution: " + locationdistributionType);
@@ -9,9 +9,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
 import org.w3c.dom.Element;
 import edu.gatech.lbs.core.logging.Logz;
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.IVector;
 import edu.gatech.lbs.core.vector.RoadnetVector;
 import edu.gatech.lbs.core.world.roadnet.RoadMap;
@@ -23,7 +23,6 @@ import edu.gatech.lbs.sim.config.paramparser.SpeedParser;
 import edu.gatech.lbs.sim.config.paramparser.TimeParser;
 import edu.gatech.lbs.sim.scheduling.activity.TraceGenerationActivity;
 import edu.gatech.lbs.sim.scheduling.activity.TraceLoadingActivity;
-import edu.gatech.lbs.sim.tracegenerator.ITraceGenerator;
 import edu.gatech.lbs.sim.tracegenerator.mobilitytrace.IndividualMobilityTraceGenerator;
 import edu.gatech.lbs.sim.tracegenerator.mobilitytrace.individual.IndividualMobilityModel;
 import edu.gatech.lbs.sim.tracegenerator.mobilitytrace.individual.RandomWaypoint_IndividualMobilityModel;
@@ -36,11 +35,15 @@ import edu.gatech.lbs.sim.tracegenerator.paramdistribution.IParamDistribution;
 public class XmlMobilityModelInterpreter implements IXmlConfigInterpreter {
 
   public void initFromXmlElement(Element mobilitymodelNode, Simulation sim) {
-    ITraceGenerator mobilityTraceGenerator = null;
+    IndividualMobilityTraceGenerator mobilityTraceGenerator = null;
 
     String mobilityTraceFilename = mobilitymodelNode.getAttribute("filename");
     String mobilitymodelType = mobilitymodelNode.getAttribute("type");
     String overwriteAllowed = mobilitymodelNode.getAttribute("overwrite");
+    String traceReaderType = mobilitymodelNode.getAttribute("reader");
+    String traceFormat = mobilitymodelNode.getAttribute("format");
+    String threadCountStr = mobilitymodelNode.getAttribute("threads");
+    String textOutput = mobilitymodelNode.getAttribute("textoutput");
 
     // location distribution:
     Element locationDistributionNode = (Element) mobilitymodelNode.getElementsByTagName("locationdistribution").item(0);
@@ -62,8 +65,7 @@ public class XmlMobilityModelInterpreter implements IXmlConfigInterpreter {
         mobilityModels.add(new RandomWaypoint_IndividualMobilityModel(sim, agent, locationDistribution,
             speedDistribution, sim.getSimStartTime()));
       }
-      mobilityTraceGenerator = new IndividualMobilityTraceGenerator(sim.getSimStartTime(), sim.getSimEndTime(),
-          mobilityModels);
+      mobilityTraceGenerator = new IndividualMobilityTraceGenerator(sim, mobilityModels);
 
     } else if (mobilitymodelType.equalsIgnoreCase(RoadnetRandomWaypoint_IndividualMobilityModel.xmlName)) {
       Element stoppingTimeNode = (Element) mobilitymodelNode.getElementsByTagName("stopping").item(0);
@@ -76,8 +78,7 @@ public class XmlMobilityModelInterpreter implements IXmlConfigInterpreter {
         mobilityModels.add(new RoadnetRandomWaypoint_IndividualMobilityModel(sim, agent, locationDistribution,
             speedDistribution, stoppingTimeDistribution, sim.getSimStartTime()));
       }
-      mobilityTraceGenerator = new IndividualMobilityTraceGenerator(sim.getSimStartTime(), sim.getSimEndTime(),
-          mobilityModels);
+      mobilityTraceGenerator = new IndividualMobilityTraceGenerator(sim, mobilityModels);
 
     } else if (mobilitymodelType.equalsIgnoreCase(RoadnetRandomTrip_IndividualMobilityModel.xmlName)) {
       Element parkingTimeNode = (Element) mobilitymodelNode.getElementsByTagName("parking").item(0);
@@ -96,8 +97,7 @@ public class XmlMobilityModelInterpreter implements IXmlConfigInterpreter {
             speedDistribution, parkingTimeDistribution, stoppingTimeDistribution, sim.getSimStartTime(), (RoadMap) sim
                 .getWorld()));
       }
-      mobilityTraceGenerator = new IndividualMobilityTraceGenerator(sim.getSimStartTime(), sim.getSimEndTime(),
-          mobilityModels);
+      mobilityTraceGenerator = new IndividualMobilityTraceGenerator(sim, mobilityModels);
 
     } else if (mobilitymodelType.equalsIgnoreCase(RoadnetFixedEndpoint_IndividualMobilityModel.xmlName)) {
       String startNumStr = mobilitymodelNode.getAttribute("startCount");
@@ -139,24 +139,29 @@ public class XmlMobilityModelInterpreter implements IXmlConfigInterpreter {
             speedDistribution, parkingTimeDistribution, stoppingTimeDistribution, sim.getSimStartTime(), (RoadMap) sim
                 .getWorld(), initLocations, destLocations));
       }
-      mobilityTraceGenerator = new IndividualMobilityTraceGenerator(sim.getSimStartTime(), sim.getSimEndTime(),
-          mobilityModels);
+      mobilityTraceGenerator = new IndividualMobilityTraceGenerator(sim, mobilityModels);
 
     } else {
       Logz.println("Unknown mobility model: " + mobilitymodelType);
       System.exit(-1);
     }
 
+    mobilityTraceGenerator.setTraceFormat(traceFormat);
+    mobilityTraceGenerator.setTextOutput(textOutput);
+    if (!threadCountStr.isEmpty()) {
+      int threadCount = threadCountStr.equalsIgnoreCase("auto") ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(threadCountStr);
+      mobilityTraceGenerator.setThreadCount(threadCount);
+    }
     sim.addActivity(new TraceGenerationActivity(mobilityTraceFilename, mobilityTraceGenerator, overwriteAllowed
         .equalsIgnoreCase("yes")));
-    sim.addActivity(new TraceLoadingActivity(mobilityTraceFilename));
+    sim.addActivity(new TraceLoadingActivity(mobilityTraceFilename, traceReaderType));
   }
 
   // generate fixed locations
   protected IVector[] selectRandomLocations(Simulation sim, int locCount) {
     int segCount = ((RoadMap) sim.getWorld()).getRoadSegmentCount();
     HashSet<Integer> locIdxSet = new HashSet<Integer>();
-    Random rnd = new Random();
+    RandomStream rnd = sim.getRandomStreams().getStream("endpoints", 0);
     while (locIdxSet.size() < locCount) {
       locIdxSet.add(rnd.nextInt(segCount));
     }
@@ -34,6 +34,7 @@ public class XmlQueryModelInterpreter implements IXmlConfigInterpreter {
     String queryTraceFilename = querymodelNode.getAttribute("filename");
     String querymodelType = querymodelNode.getAttribute("type");
     String overwriteAllowed = querymodelNode.getAttribute("overwrite");
+    String traceReaderType = querymodelNode.getAttribute("reader");
 
     if (querymodelType.equalsIgnoreCase(GlobalFixedNumberRangeQueryModel.getXmlName())) {
       String queryCountStr = querymodelNode.getAttribute("count");
@@ -69,6 +70,6 @@ public class XmlQueryModelInterpreter implements IXmlConfigInterpreter {
     }
 
     sim.addActivity(new TraceGenerationActivity(queryTraceFilename, queryTraceGenerator, overwriteAllowed.equalsIgnoreCase("yes")));
-    sim.addActivity(new TraceLoadingActivity(queryTraceFilename));
+    sim.addActivity(new TraceLoadingActivity(queryTraceFilename, traceReaderType));
   }
 }
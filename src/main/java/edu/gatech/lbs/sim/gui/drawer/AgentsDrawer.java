@@ -9,6 +9,7 @@ import java.awt.Graphics;
 import java.awt.Point;
 import java.util.Collection;
 
+import edu.gatech.lbs.core.vector.CartesianVector;
 import edu.gatech.lbs.core.vector.IVector;
 import edu.gatech.lbs.sim.Simulation;
 import edu.gatech.lbs.sim.agent.SimAgent;
@@ -19,6 +20,7 @@ public class AgentsDrawer implements IDrawer {
 
   private Simulation sim;
   private SimPanel panel;
+  private CartesianVector location = new CartesianVector(0, 0);
 
   public AgentsDrawer(Simulation sim, SimPanel panel) {
     this.sim = sim;
@@ -29,13 +31,16 @@ public class AgentsDrawer implements IDrawer {
     g.setColor(Color.magenta);
     Collection<SimAgent> agents = sim.getAgents();
     for (SimAgent agent : agents) {
-      IVector loc = agent.getLocation();
-      Point p0 = panel.getPixel(loc.toCartesianVector());
+      if (!agent.getSimPhysicalAttributes().getCartesianLocationAt(sim.getTime(), location)) {
+        continue;
+      }
+      Point p0 = panel.getPixel(location);
       g.fillOval(p0.x - 2, p0.y - 2, 5, 5);
       // g.drawLine(p0.x - 1, p0.y - 1, p0.x + 1, p0.y + 1);
       // g.drawLine(p0.x - 1, p0.y + 1, p0.x + 1, p0.y - 1);
 
       if (isAgentVectorOn) {
+        IVector loc = agent.getLocation();
         IVector v = agent.getVelocity();
         Point p1 = panel.getPixel(loc.toCartesianVector().add(loc.toRoadnetVector().toTangentVector().times(1e-6 * v.getLength() * 5).toCartesianVector()).toCartesianVector());
         g.drawLine(p0.x, p0.y, p1.x, p1.y);
@@ -31,7 +31,8 @@ public class RoadMapDrawer implements IDrawer {
   public void draw(Graphics g) {
     RoadMap roadmap = (RoadMap) world;
 
-    if (partitionColors == null) {
+    // the roadmap might not be partitioned:
+    if (partitionColors == null && roadmap.getPartitions() != null) {
       partitionColors = new ArrayList<Color>();
       for (Partition partition : roadmap.getPartitions()) {
         partitionColors.add(new Color((int) (Math.random() * 256 * 256 * 256)));
@@ -40,14 +41,16 @@ public class RoadMapDrawer implements IDrawer {
 
     // show roadmap:
     for (RoadSegment seg : roadmap.getRoadSegments()) {
-      int partitionID = seg.getPartition().getId();
-      g.setColor(partitionColors.get(partitionID));
+      if (seg.getPartition() != null) {
+        int partitionID = seg.getPartition().getId();
+        g.setColor(partitionColors.get(partitionID));
+      }
 
       IDrawer segDrawer = new SegmentDrawer(panel, seg, Color.lightGray);
       segDrawer.draw(g);
     }
 
-    if (isPartitionBordersOn) {
+    if (isPartitionBordersOn && roadmap.getPartitions() != null) {
       g.setColor(Color.black);
       for (Partition partition : roadmap.getPartitions()) {
         for (RoadJunction roadJunction : partition.getBorderJunctions()) {
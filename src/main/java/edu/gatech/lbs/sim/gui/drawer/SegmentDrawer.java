@@ -4,7 +4,6 @@
 //
 package edu.gatech.lbs.sim.gui.drawer;
 
-import edu.gatech.lbs.core.vector.CartesianVector;
 import edu.gatech.lbs.core.world.roadnet.RoadSegment;
 import edu.gatech.lbs.core.world.roadnet.RoadSegmentGeometry;
 import edu.gatech.lbs.sim.gui.SimPanel;
@@ -26,10 +25,11 @@ public class SegmentDrawer implements IDrawer {
 
 	public void draw(Graphics g) {
 		RoadSegmentGeometry geometry = seg.getGeometry();
-		CartesianVector[] points = geometry.getPoints();
-		for (int i = 0; i < points.length - 1; i++) {
-			Point p0 = panel.getPixel(points[i]);
-			Point p1 = panel.getPixel(points[i + 1]);
+		int pointCount = geometry.getPointCount();
+		Point p1 = panel.getPixel(geometry.getFirstLocation());
+		for (int i = 0; i < pointCount - 1; i++) {
+			Point p0 = p1;
+			p1 = panel.getPixel(geometry.getPoint(i + 1));
 
 			// straight-line segment section:
 			g.setColor(color);
@@ -41,7 +41,7 @@ public class SegmentDrawer implements IDrawer {
 				g.drawLine(p0.x, p0.y, p0.x, p0.y);
 			}
 			// end point:
-			if (i == points.length - 2) {
+			if (i == pointCount - 2) {
 				g.setColor(Color.black);
 				g.drawLine(p1.x, p1.y, p1.x, p1.y);
 			}
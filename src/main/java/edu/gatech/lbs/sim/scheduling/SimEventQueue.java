@@ -4,6 +4,7 @@
 //
 package edu.gatech.lbs.sim.scheduling;
 
+import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
@@ -12,52 +13,72 @@ import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.TreeMap;
 import edu.gatech.lbs.core.world.IWorld;
 import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.scheduling.event.ISimEventLoader;
 import edu.gatech.lbs.sim.scheduling.event.SimEvent;
 import edu.gatech.lbs.sim.scheduling.event.TraceLoadEvent;
+import edu.gatech.lbs.sim.scheduling.queue.HeapSimEventStore;
+import edu.gatech.lbs.sim.scheduling.queue.ISimEventStore;
+import edu.gatech.lbs.sim.scheduling.queue.TreeMapSimEventStore;
 
 public class SimEventQueue {
-  private final int loadBatchSize = (int) 1e5; // max number of events to load at once
+  public static final int loadBatchSize = (int) 1e5; // max number of events to load at once
 
-  private TreeMap<Long, LinkedList<SimEvent>> eventMap; // (time|priority) -> events
-  private int elementCount;
+  private ISimEventStore events; // ordered by (time|priority), then by insertion
 
-  private HashMap<Byte, Class<?>> simEventTypes; // typeCode -> SimEvent subclass
+  private ISimEventLoader[] eventLoaders; // (typeCode & 0xFF) -> loader of SimEvent subclass
 
   public SimEventQueue() {
-    eventMap = new TreeMap<Long, LinkedList<SimEvent>>();
-    elementCount = 0;
-    simEventTypes = new HashMap<Byte, Class<?>>();
+    this(new TreeMapSimEventStore());
   }
 
-  public SimEventQueue(Simulation sim, DataInputStream in, IWorld world) throws IOException {
+  public SimEventQueue(ISimEventStore events) {
+    this.events = events;
+    eventLoaders = new ISimEventLoader[256];
+  }
+
+  /**
+   * Make an empty event store of the given type.
+   */
+  public static ISimEventStore makeEventStore(String type) {
+    if (type == null || type.equalsIgnoreCase(TreeMapSimEventStore.xmlName)) {
+      return new TreeMapSimEventStore();
+    } else if (type.equalsIgnoreCase(HeapSimEventStore.xmlName)) {
+      return new HeapSimEventStore();
+    }
+
+    System.out.println("Unknown event queue type: " + type);
+    System.exit(-1);
+    return null;
+  }
+
+  public SimEventQueue(Simulation sim, DataInput in, IWorld world) throws IOException {
     this();
     loadSome(sim, in);
   }
 
   public void setLoadableSimEvents(List<Class<?>> eventClasses) {
-    simEventTypes.clear();
+    eventLoaders = new ISimEventLoader[256];
 
     for (Class<?> eventClass : eventClasses) {
       try {
         Field typeCodeField = eventClass.getDeclaredField("typeCode");
         byte typeCode = typeCodeField.getByte(null);
-        if (simEventTypes.containsKey(typeCode)) {
+        if (eventLoaders[typeCode & 0xFF] != null) {
           System.out.println("Duplicate simulation event type code='" + typeCode + "'.");
           System.exit(-1);
         }
-        simEventTypes.put(typeCode, eventClass);
+        eventLoaders[typeCode & 0xFF] = getEventLoader(eventClass);
         continue;
 
       } catch (NoSuchFieldException e) {
         // proceed to failure
       } catch (IllegalAccessException e) {
         // proceed to failure
+      } catch (NoSuchMethodException e) {
+        // proceed to failure
       }
 
       System.out.println("Unknown simulation event class: " + eventClass.getName());
@@ -65,34 +86,60 @@ public class SimEventQueue {
     }
   }
 
-  public void loadSome(Simulation sim, DataInputStream in) throws IOException {
+  /**
+   * Get the loader declared by the event class, or, if there is none, make one that calls its
+   * (Simulation, DataInput) or (Simulation, DataInputStream) constructor.
+   */
+  private static ISimEventLoader getEventLoader(Class<?> eventClass) throws IllegalAccessException, NoSuchMethodException {
     try {
-      SimEvent event = null;
-      for (int eventsLoaded = 0; eventsLoaded < loadBatchSize; eventsLoaded++) {
-        byte typeCode = in.readByte();
-
-        Class<?> simEventClass = simEventTypes.get(typeCode);
-        if (simEventClass != null) {
-          try {
-            Class<?>[] argTypes = new Class[] { Simulation.class, DataInputStream.class };
-            Constructor<?> con = simEventClass.getConstructor(argTypes);
-            event = (SimEvent) con.newInstance(new Object[] { sim, in });
-
-            addEvent(event);
-            continue;
-          } catch (NoSuchMethodException e) {
-            // proceed to failure
-          } catch (InvocationTargetException e) {
-            // proceed to failure
-          } catch (IllegalAccessException e) {
-            // proceed to failure
-          } catch (InstantiationException e) {
-            // proceed to failure
+      Field loaderField = eventClass.getDeclaredField("loader");
+      if (ISimEventLoader.class.isAssignableFrom(loaderField.getType())) {
+        return (ISimEventLoader) loaderField.get(null);
+      }
+    } catch (NoSuchFieldException e) {
+      // fall back to constructor
+    }
+
+    Constructor<?> dataInputCon;
+    try {
+      dataInputCon = eventClass.getConstructor(new Class[] { Simulation.class, DataInput.class });
+    } catch (NoSuchMethodException e) {
+      // stream-only events can not be loaded from other trace readers:
+      dataInputCon = eventClass.getConstructor(new Class[] { Simulation.class, DataInputStream.class });
+    }
+    final Constructor<?> con = dataInputCon;
+    final boolean isStreamOnly = con.getParameterTypes()[1] == DataInputStream.class;
+    return new ISimEventLoader() {
+      public SimEvent load(Simulation sim, DataInput in) throws IOException {
+        if (isStreamOnly && !(in instanceof DataInputStream)) {
+          System.out.println("Simulation event can only be loaded from a stream: class=" + con.getDeclaringClass().getName());
+          System.exit(-1);
+        }
+        try {
+          return (SimEvent) con.newInstance(new Object[] { sim, in });
+        } catch (InvocationTargetException e) {
+          if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
           }
+          // proceed to failure
+        } catch (IllegalAccessException e) {
+          // proceed to failure
+        } catch (InstantiationException e) {
+          // proceed to failure
         }
-
-        System.out.println("Unknown simulation event: type code='" + (char) typeCode + "', class=" + (simEventClass == null ? "" : simEventClass.getName()));
+        System.out.println("Unable to load simulation event: class=" + con.getDeclaringClass().getName());
         System.exit(-1);
+        return null;
+      }
+    };
+  }
+
+  public void loadSome(Simulation sim, DataInput in) throws IOException {
+    try {
+      SimEvent event = null;
+      for (int eventsLoaded = 0; eventsLoaded < loadBatchSize; eventsLoaded++) {
+        event = loadEvent(sim, in);
+        addEvent(event);
       }
 
       // if events remain on disk, schedule a trace load:
@@ -102,29 +149,26 @@ public class SimEventQueue {
     }
   }
 
-  public void addEvent(SimEvent event) {
-    Long l = (event.getTimestamp() << 16) | (event.getPriority() & 0xFFFF);
-    LinkedList<SimEvent> eventsAtTimeAndPriority = eventMap.get(l);
-    if (eventsAtTimeAndPriority == null) {
-      eventsAtTimeAndPriority = new LinkedList<SimEvent>();
-      eventMap.put(l, eventsAtTimeAndPriority);
+  /**
+   * Load one event, saved with its type code.
+   */
+  public SimEvent loadEvent(Simulation sim, DataInput in) throws IOException {
+    byte typeCode = in.readByte();
+
+    ISimEventLoader loader = eventLoaders[typeCode & 0xFF];
+    if (loader == null) {
+      System.out.println("Unknown simulation event: type code='" + (char) typeCode + "'");
+      System.exit(-1);
     }
-    // events within time&priority are in order of insertion:
-    eventsAtTimeAndPriority.addLast(event);
-    elementCount++;
+    return loader.load(sim, in);
+  }
+
+  public void addEvent(SimEvent event) {
+    events.add((event.getTimestamp() << 16) | (event.getPriority() & 0xFFFF), event);
   }
 
   public SimEvent pop() {
-    if (eventMap.isEmpty()) {
-      return null;
-    }
-    LinkedList<SimEvent> eventsAtTimeAndPriority = eventMap.firstEntry().getValue();
-    SimEvent event = eventsAtTimeAndPriority.poll();
-    if (eventsAtTimeAndPriority.isEmpty()) {
-      eventMap.pollFirstEntry();
-    }
-    elementCount--;
-    return event;
+    return events.poll();
   }
 
   public void addQueue(SimEventQueue queue) {
@@ -132,22 +176,21 @@ public class SimEventQueue {
       return;
     }
 
-    for (LinkedList<SimEvent> element : queue.eventMap.values()) {
-      for (SimEvent event : element) {
-        addEvent(event);
-      }
+    for (SimEvent event : queue.events.getEventsInOrder()) {
+      addEvent(event);
     }
   }
 
   public void clear() {
-    eventMap.clear();
+    events.clear();
   }
 
   public long getNextEventTime() {
-    if (eventMap.isEmpty()) {
+    SimEvent event = events.peek();
+    if (event == null) {
       return -1;
     } else {
-      return eventMap.firstEntry().getValue().peek().getTimestamp();
+      return event.getTimestamp();
     }
   }
 
@@ -159,22 +202,18 @@ public class SimEventQueue {
   }
 
   public void saveTo(DataOutputStream out) throws IOException {
-    for (LinkedList<SimEvent> element : eventMap.values()) {
-      for (SimEvent event : element) {
-        event.saveTo(out);
-      }
+    for (SimEvent event : events.getEventsInOrder()) {
+      event.saveTo(out);
     }
   }
 
   public int size() {
-    return elementCount;
+    return events.size();
   }
 
   public void saveToTxt(PrintWriter out) throws IOException {
-    for (LinkedList<SimEvent> element : eventMap.values()) {
-      for (SimEvent event : element) {
-        event.saveToTxt(out);
-      }
+    for (SimEvent event : events.getEventsInOrder()) {
+      event.saveToTxt(out);
     }
   }
 }
@@ -5,27 +5,53 @@
 package edu.gatech.lbs.sim.scheduling.activity;
 
 import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 
 import edu.gatech.lbs.core.FileHelper;
 import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.scheduling.event.CompactTraceLoadEvent;
 import edu.gatech.lbs.sim.scheduling.event.TraceLoadEvent;
+import edu.gatech.lbs.sim.trace.CompactTraceReader;
+import edu.gatech.lbs.sim.trace.MappedTraceInput;
 
 public class TraceLoadingActivity implements ISimActivity {
   protected String traceFilename;
-  protected DataInputStream traceInStream;
+  protected String readerType; // "stream" (default) or "mmap"
+  protected DataInput traceIn;
 
   public TraceLoadingActivity(String traceFilename) {
+    this(traceFilename, null);
+  }
+
+  public TraceLoadingActivity(String traceFilename, String readerType) {
     this.traceFilename = traceFilename;
+    this.readerType = readerType;
+    if (readerType != null && !readerType.isEmpty() && !readerType.equalsIgnoreCase("stream")
+        && !readerType.equalsIgnoreCase(MappedTraceInput.xmlName)) {
+      System.out.println("Unknown trace reader: " + readerType);
+      System.exit(-1);
+    }
   }
 
   public void scheduleOn(Simulation sim) {
     if (traceFilename != null) {
       System.out.print(" Opening '" + traceFilename + "' for trace loading... ");
       try {
-        traceInStream = new DataInputStream(new BufferedInputStream(FileHelper.openFileOrUrl(traceFilename)));
-        sim.addEvent(new TraceLoadEvent(sim, sim.getSimStartTime(), traceInStream));
+        // only local files can be mapped, URLs are streamed:
+        if (MappedTraceInput.xmlName.equalsIgnoreCase(readerType) && new File(traceFilename).isFile()) {
+          traceIn = new MappedTraceInput(traceFilename);
+        } else {
+          traceIn = new DataInputStream(new BufferedInputStream(FileHelper.openFileOrUrl(traceFilename)));
+        }
+        if (CompactTraceReader.isCompactTrace(traceFilename)) {
+          sim.addEvent(new CompactTraceLoadEvent(sim, sim.getSimStartTime(), new CompactTraceReader(traceIn)));
+        } else {
+          sim.addEvent(new TraceLoadEvent(sim, sim.getSimStartTime(), traceIn));
+        }
         System.out.println("done.");
       } catch (IOException e) {
         System.out.println("failed.");
@@ -36,8 +62,8 @@ public class TraceLoadingActivity implements ISimActivity {
 
   public void cleanup() {
     try {
-      if (traceInStream != null) {
-        traceInStream.close();
+      if (traceIn != null) {
+        ((Closeable) traceIn).close();
       }
     } catch (IOException e) {
       System.out.println("Failed to close file '" + traceFilename + "'.");
@@ -4,7 +4,7 @@
 //
 package edu.gatech.lbs.sim.scheduling.event;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -15,6 +15,11 @@ import edu.gatech.lbs.sim.agent.SimAgent;
 
 public class AccelerationChangeEvent extends SimEvent implements IMobilityChangeEvent {
   public static final byte typeCode = 'a';
+  public static final ISimEventLoader loader = new ISimEventLoader() {
+    public SimEvent load(Simulation sim, DataInput in) throws IOException {
+      return new AccelerationChangeEvent(sim, in);
+    }
+  };
 
   protected Simulation sim;
   protected SimAgent agent;
@@ -30,7 +35,7 @@ public class AccelerationChangeEvent extends SimEvent implements IMobilityChange
     this.acceleration = acceleration;
   }
 
-  public AccelerationChangeEvent(Simulation sim, DataInputStream in) throws IOException {
+  public AccelerationChangeEvent(Simulation sim, DataInput in) throws IOException {
     super(sim, in);
     int simAgentId = in.readInt();
     agent = sim.getAgent(simAgentId);
@@ -58,6 +63,10 @@ public class AccelerationChangeEvent extends SimEvent implements IMobilityChange
     agent.getSimPhysicalAttributes().setEvent(this);
   }
 
+  public int getSimAgentId() {
+    return agent.getSimAgentId();
+  }
+
   public IVector getLocation() {
     return location;
   }
@@ -0,0 +1,58 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.scheduling.event;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.scheduling.SimEventQueue;
+import edu.gatech.lbs.sim.trace.CompactTraceReader;
+
+/**
+ * Loads the next batch of events from a compact trace.
+ */
+public class CompactTraceLoadEvent extends SimEvent {
+  protected CompactTraceReader reader;
+
+  public CompactTraceLoadEvent(Simulation sim, long timestamp, CompactTraceReader reader) {
+    super(sim, timestamp);
+    this.reader = reader;
+  }
+
+  public void saveTo(DataOutputStream out) throws IOException {
+    // non-persistent
+  }
+
+  public int getPriority() {
+    return Simulation.priorityTraceLoadEvent;
+  }
+
+  public void execute() {
+    try {
+      long lastTimestamp = reader.loadSome(sim, sim.getQueue(), SimEventQueue.loadBatchSize);
+      // if events remain on disk, schedule a trace load:
+      if (lastTimestamp >= 0) {
+        sim.addEvent(new CompactTraceLoadEvent(sim, lastTimestamp, reader));
+      }
+    } catch (IOException e) {
+      System.out.println("Unable to read trace file.");
+      System.exit(-1);
+    }
+  }
+
+  public byte getTypeCode() {
+    return '\0'; // non-persistent
+  }
+
+  public String toString() {
+    return null;
+  }
+
+  public void saveToTxt(PrintWriter out) throws IOException {
+    // non-persistent
+  }
+}
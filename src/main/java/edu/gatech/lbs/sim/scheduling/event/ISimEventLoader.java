@@ -0,0 +1,18 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.scheduling.event;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+import edu.gatech.lbs.sim.Simulation;
+
+/**
+ * Decodes one persisted event from a trace, after its type code has been read.
+ * Loadable SimEvent subclasses expose one as their static 'loader' field.
+ */
+public interface ISimEventLoader {
+  public SimEvent load(Simulation sim, DataInput in) throws IOException;
+}
@@ -8,6 +8,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Collection;
+import edu.gatech.lbs.core.vector.CartesianVector;
 import edu.gatech.lbs.sim.Simulation;
 import edu.gatech.lbs.sim.agent.SimAgent;
 
@@ -31,12 +32,17 @@ public class PeriodicTraceSaveEvent extends SimEvent {
 
   public void execute() {
     try {
-      // save locations of all agents:
+      // save locations of all agents, as non-roadnetwork location records (see LocationChangeEvent.saveTo()):
       Collection<SimAgent> agents = sim.getAgents();
+      CartesianVector location = new CartesianVector(0, 0);
       for (SimAgent agent : agents) {
-        // create a non-roadnetwork location record:
-        SimEvent e = new LocationChangeEvent(sim, timestamp, agent, agent.getLocation().toCartesianVector());
-        e.saveTo(out);
+        if (!agent.getSimPhysicalAttributes().getCartesianLocationAt(sim.getTime(), location)) {
+          continue;
+        }
+        out.writeByte(LocationChangeEvent.typeCode);
+        out.writeLong(timestamp);
+        out.writeInt(agent.getSimAgentId());
+        location.saveTo(out);
       }
 
       // schedule next snapshot:
@@ -4,7 +4,7 @@
 //
 package edu.gatech.lbs.sim.scheduling.event;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -15,6 +15,11 @@ import edu.gatech.lbs.sim.Simulation;
 
 public class QueryCreateEvent extends SimEvent {
   public static final byte typeCode = 'c';
+  public static final ISimEventLoader loader = new ISimEventLoader() {
+    public SimEvent load(Simulation sim, DataInput in) throws IOException {
+      return new QueryCreateEvent(sim, in);
+    }
+  };
 
   protected QueryKey simKey;
   protected LocationBasedQuery query;
@@ -26,7 +31,7 @@ public class QueryCreateEvent extends SimEvent {
     this.sim = sim;
   }
 
-  public QueryCreateEvent(Simulation sim, DataInputStream in) throws IOException {
+  public QueryCreateEvent(Simulation sim, DataInput in) throws IOException {
     super(sim, in);
     simKey = new QueryKey(in);
     query = LocationBasedQueryFactory.load(in);
@@ -4,7 +4,7 @@
 //
 package edu.gatech.lbs.sim.scheduling.event;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -13,6 +13,11 @@ import edu.gatech.lbs.sim.Simulation;
 
 public class QueryDeleteEvent extends SimEvent {
   public static final byte typeCode = 'd';
+  public static final ISimEventLoader loader = new ISimEventLoader() {
+    public SimEvent load(Simulation sim, DataInput in) throws IOException {
+      return new QueryDeleteEvent(sim, in);
+    }
+  };
 
   protected QueryKey simKey;
 
@@ -21,7 +26,7 @@ public class QueryDeleteEvent extends SimEvent {
     this.simKey = simKey;
   }
 
-  public QueryDeleteEvent(Simulation sim, DataInputStream in) throws IOException {
+  public QueryDeleteEvent(Simulation sim, DataInput in) throws IOException {
     super(sim, in);
     simKey = new QueryKey(in);
   }
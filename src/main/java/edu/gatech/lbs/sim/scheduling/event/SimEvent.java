@@ -5,7 +5,7 @@
 package edu.gatech.lbs.sim.scheduling.event;
 
 import edu.gatech.lbs.sim.Simulation;
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -19,7 +19,7 @@ public abstract class SimEvent {
     this.timestamp = timestamp;
   }
 
-  public SimEvent(Simulation sim, DataInputStream in) throws IOException {
+  public SimEvent(Simulation sim, DataInput in) throws IOException {
     this.sim = sim;
     timestamp = in.readLong();
   }
@@ -4,16 +4,16 @@
 //
 package edu.gatech.lbs.sim.scheduling.event;
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import edu.gatech.lbs.sim.Simulation;
 
 public class TraceLoadEvent extends SimEvent {
-  protected DataInputStream in;
+  protected DataInput in;
 
-  public TraceLoadEvent(Simulation sim, long timestamp, DataInputStream in) {
+  public TraceLoadEvent(Simulation sim, long timestamp, DataInput in) {
     super(sim, timestamp);
     this.in = in;
   }
@@ -5,7 +5,7 @@
 package edu.gatech.lbs.sim.scheduling.event;
 
 
-import java.io.DataInputStream;
+import java.io.DataInput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -16,6 +16,11 @@ import edu.gatech.lbs.sim.agent.SimAgent;
 
 public class VelocityChangeEvent extends SimEvent implements IMobilityChangeEvent {
   public static final byte typeCode = 'v';
+  public static final ISimEventLoader loader = new ISimEventLoader() {
+    public SimEvent load(Simulation sim, DataInput in) throws IOException {
+      return new VelocityChangeEvent(sim, in);
+    }
+  };
 
   protected SimAgent agent;
   protected IVector location;
@@ -29,7 +34,7 @@ public class VelocityChangeEvent extends SimEvent implements IMobilityChangeEven
     this.velocity = velocity;
   }
 
-  public VelocityChangeEvent(Simulation sim, DataInputStream in) throws IOException {
+  public VelocityChangeEvent(Simulation sim, DataInput in) throws IOException {
     super(sim, in);
     int simAgentId = in.readInt();
     agent = sim.getAgent(simAgentId);
@@ -55,6 +60,10 @@ public class VelocityChangeEvent extends SimEvent implements IMobilityChangeEven
     agent.getSimPhysicalAttributes().setEvent(this);
   }
 
+  public int getSimAgentId() {
+    return agent.getSimAgentId();
+  }
+
   public IVector getLocation() {
     return location;
   }
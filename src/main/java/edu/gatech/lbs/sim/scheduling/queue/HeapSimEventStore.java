@@ -0,0 +1,152 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.scheduling.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+
+/**
+ * Event store using an implicit 4-ary min-heap over primitive (time|priority) keys.
+ * An insertion sequence number is used as tiebreaker, so events with the same key are
+ * popped in order of insertion. There is no boxing and no per-key list allocation.
+ */
+public class HeapSimEventStore implements ISimEventStore {
+  public static final String xmlName = "heap";
+
+  private static final int arity = 4;
+
+  private long[] keys; // (time|priority) of each heap slot
+  private long[] seqs; // insertion sequence number of each heap slot
+  private SimEvent[] events;
+  private int size;
+  private long nextSeq;
+
+  public HeapSimEventStore() {
+    this(1024);
+  }
+
+  public HeapSimEventStore(int initialCapacity) {
+    initialCapacity = Math.max(initialCapacity, arity);
+    keys = new long[initialCapacity];
+    seqs = new long[initialCapacity];
+    events = new SimEvent[initialCapacity];
+    size = 0;
+    nextSeq = 0;
+  }
+
+  public void add(long key, SimEvent event) {
+    if (size == keys.length) {
+      grow();
+    }
+    siftUp(size, key, nextSeq++, event);
+    size++;
+  }
+
+  public SimEvent poll() {
+    if (size == 0) {
+      return null;
+    }
+    SimEvent event = events[0];
+    size--;
+    if (size > 0) {
+      siftDown(0, keys[size], seqs[size], events[size]);
+    }
+    events[size] = null;
+    return event;
+  }
+
+  public SimEvent peek() {
+    return size == 0 ? null : events[0];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      events[i] = null;
+    }
+    size = 0;
+  }
+
+  public List<SimEvent> getEventsInOrder() {
+    // drain a copy of the heap:
+    HeapSimEventStore copy = new HeapSimEventStore(0);
+    copy.keys = Arrays.copyOf(keys, keys.length);
+    copy.seqs = Arrays.copyOf(seqs, seqs.length);
+    copy.events = Arrays.copyOf(events, events.length);
+    copy.size = size;
+
+    List<SimEvent> ordered = new ArrayList<SimEvent>(size);
+    while (copy.size() > 0) {
+      ordered.add(copy.poll());
+    }
+    return ordered;
+  }
+
+  private static boolean isLess(long key0, long seq0, long key1, long seq1) {
+    return key0 < key1 || (key0 == key1 && seq0 < seq1);
+  }
+
+  private void siftUp(int idx, long key, long seq, SimEvent event) {
+    while (idx > 0) {
+      int parent = (idx - 1) / arity;
+      if (!isLess(key, seq, keys[parent], seqs[parent])) {
+        break;
+      }
+      keys[idx] = keys[parent];
+      seqs[idx] = seqs[parent];
+      events[idx] = events[parent];
+      idx = parent;
+    }
+    keys[idx] = key;
+    seqs[idx] = seq;
+    events[idx] = event;
+  }
+
+  private void siftDown(int idx, long key, long seq, SimEvent event) {
+    while (true) {
+      int firstChild = idx * arity + 1;
+      if (firstChild >= size) {
+        break;
+      }
+      // find smallest child:
+      int minChild = firstChild;
+      int lastChild = Math.min(firstChild + arity, size);
+      for (int c = firstChild + 1; c < lastChild; c++) {
+        if (isLess(keys[c], seqs[c], keys[minChild], seqs[minChild])) {
+          minChild = c;
+        }
+      }
+      if (!isLess(keys[minChild], seqs[minChild], key, seq)) {
+        break;
+      }
+      keys[idx] = keys[minChild];
+      seqs[idx] = seqs[minChild];
+      events[idx] = events[minChild];
+      idx = minChild;
+    }
+    keys[idx] = key;
+    seqs[idx] = seq;
+    events[idx] = event;
+  }
+
+  private void grow() {
+    int newCapacity = keys.length * 2;
+    long[] newKeys = new long[newCapacity];
+    long[] newSeqs = new long[newCapacity];
+    SimEvent[] newEvents = new SimEvent[newCapacity];
+    System.arraycopy(keys, 0, newKeys, 0, size);
+    System.arraycopy(seqs, 0, newSeqs, 0, size);
+    System.arraycopy(events, 0, newEvents, 0, size);
+    keys = newKeys;
+    seqs = newSeqs;
+    events = newEvents;
+  }
+}
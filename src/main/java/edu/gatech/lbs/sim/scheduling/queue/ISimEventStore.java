@@ -0,0 +1,32 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.scheduling.queue;
+
+import java.util.List;
+
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+
+/**
+ * Storage behind a SimEventQueue. Events are ordered by their (time|priority) key,
+ * and events with the same key are kept in order of insertion.
+ */
+public interface ISimEventStore {
+  public void add(long key, SimEvent event);
+
+  public SimEvent poll();
+
+  public SimEvent peek();
+
+  public int size();
+
+  public void clear();
+
+  /**
+   * Get all stored events in queue order, without removing them.
+   * This copies (and, depending on the store, sorts) all events: O(n log n) time and O(n) memory per call. It is meant
+   * for saving & merging whole queues, not for use in the event loop.
+   */
+  public List<SimEvent> getEventsInOrder();
+}
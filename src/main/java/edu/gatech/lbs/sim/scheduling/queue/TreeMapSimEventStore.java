@@ -0,0 +1,75 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.scheduling.queue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+
+/**
+ * Event store keeping a list of events for each distinct (time|priority) key in a red-black tree.
+ */
+public class TreeMapSimEventStore implements ISimEventStore {
+  public static final String xmlName = "treemap";
+
+  private TreeMap<Long, LinkedList<SimEvent>> eventMap; // (time|priority) -> events
+  private int elementCount;
+
+  public TreeMapSimEventStore() {
+    eventMap = new TreeMap<Long, LinkedList<SimEvent>>();
+    elementCount = 0;
+  }
+
+  public void add(long key, SimEvent event) {
+    LinkedList<SimEvent> eventsAtTimeAndPriority = eventMap.get(key);
+    if (eventsAtTimeAndPriority == null) {
+      eventsAtTimeAndPriority = new LinkedList<SimEvent>();
+      eventMap.put(key, eventsAtTimeAndPriority);
+    }
+    // events within time&priority are in order of insertion:
+    eventsAtTimeAndPriority.addLast(event);
+    elementCount++;
+  }
+
+  public SimEvent poll() {
+    if (eventMap.isEmpty()) {
+      return null;
+    }
+    LinkedList<SimEvent> eventsAtTimeAndPriority = eventMap.firstEntry().getValue();
+    SimEvent event = eventsAtTimeAndPriority.poll();
+    if (eventsAtTimeAndPriority.isEmpty()) {
+      eventMap.pollFirstEntry();
+    }
+    elementCount--;
+    return event;
+  }
+
+  public SimEvent peek() {
+    if (eventMap.isEmpty()) {
+      return null;
+    }
+    return eventMap.firstEntry().getValue().peek();
+  }
+
+  public int size() {
+    return elementCount;
+  }
+
+  public void clear() {
+    eventMap.clear();
+    elementCount = 0;
+  }
+
+  public List<SimEvent> getEventsInOrder() {
+    List<SimEvent> events = new ArrayList<SimEvent>(elementCount);
+    for (LinkedList<SimEvent> element : eventMap.values()) {
+      events.addAll(element);
+    }
+    return events;
+  }
+}
@@ -0,0 +1,119 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+
+/**
+ * Hands events over to another trace writer, which runs on its own thread. Events are passed on in batches thru a
+ * bounded queue, so the caller only blocks when the writer thread falls behind by more than the queue's capacity.
+ * Events must not be changed after they were written.
+ */
+public class AsyncTraceWriter implements ITraceWriter {
+  public static final String xmlName = "async";
+
+  public static final int batchSize = 4096; // events per batch
+  public static final int queueCapacity = 16; // max. batches waiting to be written
+
+  private ITraceWriter writer;
+  private BlockingQueue<List<SimEvent>> batches;
+  private List<SimEvent> batch;
+  private Thread writerThread;
+  private volatile IOException error; // first failure of the writer thread
+
+  public AsyncTraceWriter(ITraceWriter writer, String threadName) {
+    this.writer = writer;
+    batches = new ArrayBlockingQueue<List<SimEvent>>(queueCapacity);
+    batch = new ArrayList<SimEvent>(batchSize);
+
+    writerThread = new Thread(new Runnable() {
+      public void run() {
+        writeBatches();
+      }
+    }, threadName);
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Write the batches until the end marker. After a failure, batches are still taken (and dropped) until the end
+   * marker, so the producer never blocks on a full queue; the failure is reported to it by put() & close().
+   */
+  private void writeBatches() {
+    while (true) {
+      List<SimEvent> b;
+      try {
+        b = batches.take();
+      } catch (InterruptedException e) {
+        if (error == null) {
+          error = new IOException("Trace writer thread interrupted.");
+        }
+        continue;
+      }
+      // an empty batch marks the end:
+      if (b.isEmpty()) {
+        return;
+      }
+      if (error != null) {
+        continue;
+      }
+      try {
+        for (SimEvent event : b) {
+          writer.write(event);
+        }
+      } catch (IOException e) {
+        error = e;
+      } catch (Throwable e) {
+        error = new IOException("Trace writer thread failed.", e);
+      }
+    }
+  }
+
+  public void write(SimEvent event) throws IOException {
+    batch.add(event);
+    if (batch.size() >= batchSize) {
+      put(batch);
+      batch = new ArrayList<SimEvent>(batchSize);
+    }
+  }
+
+  private void put(List<SimEvent> b) throws IOException {
+    if (error != null) {
+      throw error;
+    }
+    try {
+      batches.put(b);
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while writing trace.");
+    }
+  }
+
+  /**
+   * Write out the remaining events, and wait for the writer thread to finish.
+   */
+  public void close() throws IOException {
+    try {
+      if (!batch.isEmpty() && error == null) {
+        batches.put(batch);
+      }
+      batch = new ArrayList<SimEvent>(0);
+      // the end marker is sent even after a failure, so the writer thread finishes:
+      batches.put(new ArrayList<SimEvent>(0));
+      writerThread.join();
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while closing trace.");
+    }
+    writer.close();
+    if (error != null) {
+      throw error;
+    }
+  }
+}
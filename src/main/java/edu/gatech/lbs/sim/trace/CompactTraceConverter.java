@@ -0,0 +1,95 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import edu.gatech.lbs.core.FileHelper;
+
+/**
+ * Converts traces between the legacy and the compact trace format. Conversion works on the records alone, so neither
+ * the roadmap nor the simulation config is needed.
+ */
+public class CompactTraceConverter {
+
+  /**
+   * Convert a legacy trace to the compact format.
+   * 
+   * @return number of records converted
+   */
+  public static long toCompact(String legacyFilename, String compactFilename) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(FileHelper.openFileOrUrl(legacyFilename)));
+    CompactTraceWriter out = new CompactTraceWriter(compactFilename);
+    TraceRecord record = new TraceRecord();
+    long recordCount = 0;
+    try {
+      while (true) {
+        record.readLegacy(in);
+        out.write(record);
+        recordCount++;
+      }
+    } catch (EOFException e) {
+      // end of trace
+    }
+    in.close();
+    out.close();
+    return recordCount;
+  }
+
+  /**
+   * Convert a compact trace back to the legacy format.
+   * 
+   * @return number of records converted
+   */
+  public static long toLegacy(String compactFilename, String legacyFilename) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(FileHelper.openFileOrUrl(compactFilename)));
+    CompactTraceReader reader = new CompactTraceReader(in);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(legacyFilename)));
+    TraceRecord record;
+    long recordCount = 0;
+    while ((record = reader.read()) != null) {
+      record.writeLegacy(out);
+      recordCount++;
+    }
+    in.close();
+    out.close();
+    return recordCount;
+  }
+
+  /**
+   * Converts the trace given as first argument into the other format, written to the second argument.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.out.println("Usage:");
+      System.out.println("  java " + CompactTraceConverter.class + " in.trace out.trace");
+      return;
+    }
+
+    long wallStartTime = System.nanoTime();
+    long recordCount;
+    if (CompactTraceReader.isCompactTrace(args[0])) {
+      System.out.print("Converting compact trace '" + args[0] + "' to legacy format... ");
+      recordCount = toLegacy(args[0], args[1]);
+    } else {
+      System.out.print("Converting legacy trace '" + args[0] + "' to compact format... ");
+      recordCount = toCompact(args[0], args[1]);
+    }
+    System.out.println("done. (" + recordCount + " trace records, " + String.format("%.1f", (System.nanoTime() - wallStartTime) / 1e9) + " sec)");
+
+    long inSize = new File(args[0]).length();
+    long outSize = new File(args[1]).length();
+    if (inSize > 0) {
+      System.out.println("  " + inSize + " bytes -> " + outSize + " bytes (" + String.format("%.1f", 100.0 * outSize / inSize) + "%)");
+    }
+  }
+}
@@ -0,0 +1,178 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import edu.gatech.lbs.core.FileHelper;
+import edu.gatech.lbs.core.vector.CartesianVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.scheduling.SimEventQueue;
+
+/**
+ * Reads the compact trace format, one block at a time. See CompactTraceWriter for the layout.
+ */
+public class CompactTraceReader {
+  protected DataInput in;
+
+  // current block:
+  private byte[] block;
+  private int blockLength; // [bytes]
+  private int pos; // [bytes], read position in block
+  private int recordsLeft; // in block
+  private long lastTimestamp;
+  private int lastSimAgentId;
+  private long lastSegmentId;
+
+  private TraceRecord record;
+
+  /**
+   * Check whether the given file is in the compact trace format.
+   */
+  public static boolean isCompactTrace(String traceFilename) throws IOException {
+    DataInputStream in = new DataInputStream(FileHelper.openFileOrUrl(traceFilename));
+    try {
+      return in.readInt() == CompactTraceWriter.magic;
+    } catch (EOFException e) {
+      return false;
+    } finally {
+      in.close();
+    }
+  }
+
+  public CompactTraceReader(DataInput in) throws IOException {
+    this.in = in;
+    if (in.readInt() != CompactTraceWriter.magic) {
+      throw new IOException("Not a compact trace.");
+    }
+    byte version = in.readByte();
+    if (version != CompactTraceWriter.version) {
+      throw new IOException("Unsupported compact trace version " + version + ".");
+    }
+
+    block = new byte[64 * 1024];
+    record = new TraceRecord();
+  }
+
+  /**
+   * Read the next record.
+   * 
+   * @return the record, reused between calls, or null at the end of the trace
+   */
+  public TraceRecord read() throws IOException {
+    if (recordsLeft == 0 && !readBlock()) {
+      return null;
+    }
+    recordsLeft--;
+
+    TraceRecord r = record;
+    int shape = getByte();
+    r.timestamp = lastTimestamp + getZigzag();
+    lastTimestamp = r.timestamp;
+
+    r.vectorCount = shape & CompactTraceWriter.shapeVectorCountMask;
+    if (r.isMobilityChange()) {
+      r.typeCode = TraceRecord.getTypeCode(r.vectorCount);
+      r.simAgentId = lastSimAgentId + (int) getZigzag();
+      lastSimAgentId = r.simAgentId;
+      for (int i = 0; i < r.vectorCount; i++) {
+        if ((shape & (CompactTraceWriter.shapeCartesianBit << i)) != 0) {
+          r.vectorType[i] = CartesianVector.typeCode;
+          r.vectorA[i] = getZigzag();
+          r.vectorB[i] = getZigzag();
+        } else {
+          r.vectorType[i] = RoadnetVector.typeCode;
+          if (i == 0) {
+            r.vectorA[0] = lastSegmentId + getZigzag();
+            lastSegmentId = r.vectorA[0];
+          } else if ((shape & (CompactTraceWriter.shapeSameSegmentBit << i)) != 0) {
+            r.vectorA[i] = r.vectorA[0];
+          } else {
+            r.vectorA[i] = r.vectorA[0] + getZigzag();
+          }
+          r.vectorB[i] = getZigzag();
+        }
+      }
+    } else {
+      // re-insert the timestamp into the legacy bytes:
+      int length = (int) getVarint();
+      r.legacyLength = length + 8;
+      if (r.legacyBytes == null || r.legacyBytes.length < r.legacyLength) {
+        r.legacyBytes = new byte[r.legacyLength];
+      }
+      r.typeCode = block[pos];
+      r.legacyBytes[0] = r.typeCode;
+      for (int i = 0; i < 8; i++) {
+        r.legacyBytes[1 + i] = (byte) (r.timestamp >>> (56 - 8 * i));
+      }
+      System.arraycopy(block, pos + 1, r.legacyBytes, 9, length - 1);
+      pos += length;
+    }
+    return r;
+  }
+
+  /**
+   * Load whole blocks of events into the queue, until at least the given number of events are loaded, or the trace
+   * ends.
+   * 
+   * @return timestamp of the last event loaded, or -1 if the trace has ended
+   */
+  public long loadSome(Simulation sim, SimEventQueue queue, int minEventCount) throws IOException {
+    long timestamp = -1;
+    for (int eventsLoaded = 0; eventsLoaded < minEventCount || recordsLeft > 0; eventsLoaded++) {
+      TraceRecord r = read();
+      if (r == null) {
+        return -1;
+      }
+      queue.addEvent(r.toSimEvent(sim));
+      timestamp = r.timestamp;
+    }
+    return timestamp;
+  }
+
+  private boolean readBlock() throws IOException {
+    try {
+      recordsLeft = in.readInt();
+    } catch (EOFException e) {
+      return false;
+    }
+    blockLength = in.readInt();
+    if (block.length < blockLength) {
+      block = new byte[blockLength];
+    }
+    in.readFully(block, 0, blockLength);
+    pos = 0;
+    lastTimestamp = 0;
+    lastSimAgentId = 0;
+    lastSegmentId = 0;
+    return true;
+  }
+
+  private int getByte() {
+    return block[pos++] & 0xFF;
+  }
+
+  private long getVarint() {
+    long v = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = block[pos++];
+      v |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return v;
+  }
+
+  private long getZigzag() {
+    long v = getVarint();
+    return (v >>> 1) ^ -(v & 1);
+  }
+}
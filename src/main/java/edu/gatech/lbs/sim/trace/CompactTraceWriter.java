@@ -0,0 +1,165 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import edu.gatech.lbs.core.vector.CartesianVector;
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+
+/**
+ * Writes the compact trace format.
+ * 
+ * File layout: magic, version, then blocks of [record count, payload length, payload]. Delta state is reset at the
+ * start of each block, so blocks decode independently. Each record in a payload is:
+ * -shape byte: vector count (0 for other events), which vectors are cartesian, which velocity/acceleration vectors are
+ * on the location's segment,
+ * -zigzag varint timestamp delta,
+ * -mobility change events: zigzag varint agent id delta, then per vector either segment id (delta from previous
+ * location's segment, delta from this location's segment, or omitted if on the same segment) & zigzag varint progress,
+ * or zigzag varint x & y,
+ * -other events: varint length & the event's legacy bytes, without the timestamp.
+ */
+public class CompactTraceWriter implements ITraceWriter {
+  public static final String xmlName = "compact";
+
+  public static final int magic = 0x47544D43; // "GTMC"
+  public static final byte version = 1;
+
+  // shape byte:
+  static final int shapeVectorCountMask = 0x03;
+  static final int shapeCartesianBit = 1 << 2; // shifted by vector index
+  static final int shapeSameSegmentBit = 1 << 4; // shifted by vector index, for vectors 1 & 2
+
+  private static final int blockRecordCount = 4096; // max. records per block
+
+  protected DataOutputStream out;
+
+  // current block:
+  private byte[] block;
+  private int blockLength; // [bytes]
+  private int recordCount;
+  private long lastTimestamp;
+  private int lastSimAgentId;
+  private long lastSegmentId;
+
+  private TraceRecord record;
+
+  public CompactTraceWriter(String traceFilename) throws IOException {
+    this(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(traceFilename))));
+  }
+
+  public CompactTraceWriter(DataOutputStream out) throws IOException {
+    this.out = out;
+    out.writeInt(magic);
+    out.writeByte(version);
+
+    block = new byte[64 * 1024];
+    record = new TraceRecord();
+    startBlock();
+  }
+
+  public void write(SimEvent event) throws IOException {
+    record.setFrom(event);
+    write(record);
+  }
+
+  public void write(TraceRecord r) throws IOException {
+    int shape = r.vectorCount;
+    for (int i = 0; i < r.vectorCount; i++) {
+      if (r.vectorType[i] == CartesianVector.typeCode) {
+        shape |= shapeCartesianBit << i;
+      } else if (i > 0 && r.vectorType[0] != CartesianVector.typeCode && r.vectorA[i] == r.vectorA[0]) {
+        shape |= shapeSameSegmentBit << i;
+      }
+    }
+    putByte(shape);
+    putZigzag(r.timestamp - lastTimestamp);
+    lastTimestamp = r.timestamp;
+
+    if (r.isMobilityChange()) {
+      putZigzag(r.simAgentId - lastSimAgentId);
+      lastSimAgentId = r.simAgentId;
+      for (int i = 0; i < r.vectorCount; i++) {
+        if ((shape & (shapeCartesianBit << i)) != 0) {
+          putZigzag(r.vectorA[i]);
+          putZigzag(r.vectorB[i]);
+        } else {
+          if (i == 0) {
+            putZigzag(r.vectorA[0] - lastSegmentId);
+            lastSegmentId = r.vectorA[0];
+          } else if ((shape & (shapeSameSegmentBit << i)) == 0) {
+            putZigzag(r.vectorA[i] - r.vectorA[0]);
+          }
+          putZigzag(r.vectorB[i]);
+        }
+      }
+    } else {
+      // legacy bytes without the timestamp, which is already delta-encoded:
+      int length = r.legacyLength - 8;
+      putVarint(length);
+      ensureCapacity(length);
+      block[blockLength] = r.legacyBytes[0];
+      System.arraycopy(r.legacyBytes, 9, block, blockLength + 1, length - 1);
+      blockLength += length;
+    }
+
+    recordCount++;
+    if (recordCount == blockRecordCount) {
+      flushBlock();
+    }
+  }
+
+  public void close() throws IOException {
+    flushBlock();
+    out.close();
+  }
+
+  private void startBlock() {
+    blockLength = 0;
+    recordCount = 0;
+    lastTimestamp = 0;
+    lastSimAgentId = 0;
+    lastSegmentId = 0;
+  }
+
+  private void flushBlock() throws IOException {
+    if (recordCount > 0) {
+      out.writeInt(recordCount);
+      out.writeInt(blockLength);
+      out.write(block, 0, blockLength);
+    }
+    startBlock();
+  }
+
+  private void ensureCapacity(int n) {
+    if (blockLength + n > block.length) {
+      byte[] newBlock = new byte[Math.max(block.length * 2, blockLength + n)];
+      System.arraycopy(block, 0, newBlock, 0, blockLength);
+      block = newBlock;
+    }
+  }
+
+  private void putByte(int b) {
+    ensureCapacity(1);
+    block[blockLength++] = (byte) b;
+  }
+
+  private void putVarint(long v) {
+    ensureCapacity(10);
+    while ((v & ~0x7FL) != 0) {
+      block[blockLength++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    block[blockLength++] = (byte) v;
+  }
+
+  private void putZigzag(long v) {
+    putVarint((v << 1) ^ (v >> 63));
+  }
+}
@@ -0,0 +1,18 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.IOException;
+
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+
+/**
+ * Writes simulation events to a trace file, in order of the event queue.
+ */
+public interface ITraceWriter {
+  public void write(SimEvent event) throws IOException;
+
+  public void close() throws IOException;
+}
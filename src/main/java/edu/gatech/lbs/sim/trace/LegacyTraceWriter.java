@@ -0,0 +1,33 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+
+/**
+ * Writes the original binary trace format: each event saved as itself, one after the other.
+ */
+public class LegacyTraceWriter implements ITraceWriter {
+  public static final String xmlName = "legacy";
+
+  protected DataOutputStream out;
+
+  public LegacyTraceWriter(String traceFilename) throws IOException {
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(traceFilename)));
+  }
+
+  public void write(SimEvent event) throws IOException {
+    event.saveTo(out);
+  }
+
+  public void close() throws IOException {
+    out.close();
+  }
+}
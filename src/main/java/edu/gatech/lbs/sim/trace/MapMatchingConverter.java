@@ -0,0 +1,344 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+
+import edu.gatech.lbs.core.FileHelper;
+import edu.gatech.lbs.core.vector.CartesianVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.sim.config.XmlWorldConfigInterpreter;
+import edu.gatech.lbs.sim.scheduling.event.LocationChangeEvent;
+
+/**
+ * Map-matches the Cartesian location records of a trace (eg. one saved by PeriodicTraceSaveEvent, or converted from
+ * GPS logs) onto the road network, so the trace can be replayed. Each agent's locations are matched as one trajectory
+ * with a hidden Markov model: the hidden states are the nearest points on the nearby segments, emission probabilities
+ * fall off with the distance from the recorded location (Gaussian), and transition probabilities with the difference
+ * between the shortest route length and the straight-line distance of consecutive records (exponential). The most
+ * likely sequence is found with the Viterbi algorithm. Agents are matched concurrently.
+ *
+ * Records other than Cartesian location changes are copied unchanged, as are locations with no segment in range.
+ */
+public class MapMatchingConverter {
+  public static final int defaultCandidateCount = 5; // segments considered per location
+  public static final long defaultSearchRadius = 100000; // [mm]
+  public static final double defaultSigma = 10000; // [mm], std. deviation of location noise
+  public static final double defaultBeta = 50000; // [mm], scale of route length vs. straight-line distance differences
+
+  private RoadMap roadmap;
+  private int candidateCount;
+  private long searchRadius; // [mm]
+  private double sigma; // [mm]
+  private double beta; // [mm]
+  private double maxDetour; // [mm], transitions needing longer detours are considered impossible
+
+  public MapMatchingConverter(RoadMap roadmap) {
+    this(roadmap, defaultCandidateCount, defaultSearchRadius, defaultSigma, defaultBeta);
+  }
+
+  public MapMatchingConverter(RoadMap roadmap, int candidateCount, long searchRadius, double sigma, double beta) {
+    this.roadmap = roadmap;
+    this.candidateCount = candidateCount;
+    this.searchRadius = searchRadius;
+    this.sigma = sigma;
+    this.beta = beta;
+    maxDetour = 20 * beta;
+  }
+
+  /**
+   * Cartesian locations of one agent, in trace order, and their matches.
+   */
+  private static class Trajectory {
+    int count;
+    long[] x = new long[16];
+    long[] y = new long[16];
+    int[] segmentId; // -1: not matched
+    int[] progress;
+    int cursor; // next location to write out
+
+    void add(long xx, long yy) {
+      if (count == x.length) {
+        x = Arrays.copyOf(x, 2 * count);
+        y = Arrays.copyOf(y, 2 * count);
+      }
+      x[count] = xx;
+      y[count] = yy;
+      count++;
+    }
+  }
+
+  /**
+   * Map-match a trace, in the legacy or the compact format. The output is written in the same format.
+   *
+   * @return number of location records matched
+   */
+  public long convert(String inFilename, String outFilename, int threadCount) throws IOException {
+    boolean isCompact = CompactTraceReader.isCompactTrace(inFilename);
+
+    // collect the trajectories:
+    final HashMap<Integer, Trajectory> trajectories = new HashMap<Integer, Trajectory>();
+    TraceInput in = new TraceInput(inFilename, isCompact);
+    TraceRecord record;
+    while ((record = in.read()) != null) {
+      if (isCartesianLocation(record)) {
+        Trajectory trajectory = trajectories.get(record.simAgentId);
+        if (trajectory == null) {
+          trajectory = new Trajectory();
+          trajectories.put(record.simAgentId, trajectory);
+        }
+        trajectory.add(record.vectorA[0], record.vectorB[0]);
+      }
+    }
+    in.close();
+
+    // match them:
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(trajectories.size());
+    for (final Trajectory trajectory : trajectories.values()) {
+      tasks.add(new Callable<Void>() {
+        public Void call() {
+          match(trajectory);
+          return null;
+        }
+      });
+    }
+    ForkJoinPool pool = new ForkJoinPool(threadCount);
+    try {
+      for (Future<Void> future : pool.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while map-matching.");
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+
+    // write out the trace, with the matched locations:
+    in = new TraceInput(inFilename, isCompact);
+    DataOutputStream legacyOut = null;
+    CompactTraceWriter compactOut = null;
+    if (isCompact) {
+      compactOut = new CompactTraceWriter(outFilename);
+    } else {
+      legacyOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outFilename)));
+    }
+    long matchCount = 0;
+    while ((record = in.read()) != null) {
+      if (isCartesianLocation(record)) {
+        Trajectory trajectory = trajectories.get(record.simAgentId);
+        int i = trajectory.cursor++;
+        if (trajectory.segmentId[i] != -1) {
+          record.vectorType[0] = RoadnetVector.typeCode;
+          record.vectorA[0] = trajectory.segmentId[i];
+          record.vectorB[0] = trajectory.progress[i];
+          matchCount++;
+        }
+      }
+      if (isCompact) {
+        compactOut.write(record);
+      } else {
+        record.writeLegacy(legacyOut);
+      }
+    }
+    in.close();
+    if (isCompact) {
+      compactOut.close();
+    } else {
+      legacyOut.close();
+    }
+    return matchCount;
+  }
+
+  private static boolean isCartesianLocation(TraceRecord record) {
+    return record.typeCode == LocationChangeEvent.typeCode && record.vectorType[0] == CartesianVector.typeCode;
+  }
+
+  /**
+   * Find the most likely road network locations of a trajectory, with the Viterbi algorithm. Where no transition is
+   * possible between consecutive locations, the trajectory is matched as separate pieces.
+   */
+  private void match(Trajectory trajectory) {
+    int n = trajectory.count;
+    trajectory.segmentId = new int[n];
+    trajectory.progress = new int[n];
+    Arrays.fill(trajectory.segmentId, -1);
+
+    List<List<RoadnetVector>> candidates = new ArrayList<List<RoadnetVector>>(n);
+    double[][] score = new double[n][]; // log-probability of the best sequence ending in each candidate
+    int[][] previous = new int[n][]; // best predecessor candidate (-1: start of a piece)
+    int pieceStart = 0;
+    for (int t = 0; t < n; t++) {
+      CartesianVector v = new CartesianVector(trajectory.x[t], trajectory.y[t]);
+      List<RoadnetVector> c = roadmap.getRoadnetLocations(v, candidateCount, searchRadius);
+      candidates.add(c);
+      score[t] = new double[c.size()];
+      previous[t] = new int[c.size()];
+
+      long straightDist = 0;
+      int[][] routeLengths = null; // [mm], from each previous candidate to each current one (-1: too long)
+      if (t > pieceStart && score[t - 1].length > 0) {
+        CartesianVector u = new CartesianVector(trajectory.x[t - 1], trajectory.y[t - 1]);
+        straightDist = u.vectorTo(v).getLength();
+        routeLengths = getRouteLengths(candidates.get(t - 1), c, straightDist);
+      }
+
+      boolean isConnected = false;
+      for (int j = 0; j < c.size(); j++) {
+        double emission = getEmissionScore(c.get(j).toCartesianVector().vectorTo(v).getLength());
+        score[t][j] = Double.NEGATIVE_INFINITY;
+        previous[t][j] = -1;
+        if (routeLengths != null) {
+          for (int i = 0; i < routeLengths.length; i++) {
+            double transition = getTransitionScore(routeLengths[i][j], straightDist);
+            if (score[t - 1][i] + transition + emission > score[t][j]) {
+              score[t][j] = score[t - 1][i] + transition + emission;
+              previous[t][j] = i;
+            }
+          }
+        }
+        isConnected |= previous[t][j] != -1;
+      }
+
+      if (!isConnected) {
+        // start a new piece here:
+        backtrack(trajectory, candidates, score, previous, pieceStart, t - 1);
+        pieceStart = t;
+        for (int j = 0; j < c.size(); j++) {
+          score[t][j] = getEmissionScore(c.get(j).toCartesianVector().vectorTo(v).getLength());
+          previous[t][j] = -1;
+        }
+      }
+    }
+    backtrack(trajectory, candidates, score, previous, pieceStart, n - 1);
+  }
+
+  /**
+   * Set the matches of a piece of the trajectory, following the best predecessors back from its best last candidate.
+   */
+  private static void backtrack(Trajectory trajectory, List<List<RoadnetVector>> candidates, double[][] score, int[][] previous, int from, int to) {
+    if (to < from) {
+      return;
+    }
+    int best = -1;
+    for (int j = 0; j < score[to].length; j++) {
+      if (best == -1 || score[to][j] > score[to][best]) {
+        best = j;
+      }
+    }
+    for (int t = to; t >= from && best != -1; t--) {
+      RoadnetVector location = candidates.get(t).get(best);
+      trajectory.segmentId[t] = location.getRoadSegment().getId();
+      trajectory.progress[t] = location.getProgress();
+      best = previous[t][best];
+    }
+  }
+
+  private double getEmissionScore(long dist) {
+    double z = dist / sigma;
+    return -0.5 * z * z;
+  }
+
+  /**
+   * Route lengths between consecutive candidates, with one search per previous candidate, bounded at the longest
+   * route that is not too much of a detour.
+   */
+  private int[][] getRouteLengths(List<RoadnetVector> from, List<RoadnetVector> to, long straightDist) {
+    int maxLength = (int) Math.min(Integer.MAX_VALUE - 1, straightDist + (long) maxDetour);
+    int[][] lengths = new int[from.size()][];
+    for (int i = 0; i < from.size(); i++) {
+      lengths[i] = roadmap.getShortestRouteLengths(from.get(i), to, maxLength);
+    }
+    return lengths;
+  }
+
+  private double getTransitionScore(int routeLength, long straightDist) {
+    if (routeLength == -1) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    long detour = Math.abs(routeLength - straightDist);
+    if (detour > maxDetour) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    return -detour / beta;
+  }
+
+  /**
+   * Sequential reader of trace records in either format.
+   */
+  private static class TraceInput {
+    private DataInputStream in;
+    private CompactTraceReader compactReader;
+    private TraceRecord record;
+
+    public TraceInput(String filename, boolean isCompact) throws IOException {
+      in = new DataInputStream(new BufferedInputStream(FileHelper.openFileOrUrl(filename)));
+      if (isCompact) {
+        compactReader = new CompactTraceReader(in);
+      } else {
+        record = new TraceRecord();
+      }
+    }
+
+    public TraceRecord read() throws IOException {
+      if (compactReader != null) {
+        return compactReader.read();
+      }
+      try {
+        record.readLegacy(in);
+        return record;
+      } catch (EOFException e) {
+        return null;
+      }
+    }
+
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * Map-matches the trace given as second argument onto the road network of the config given as first argument, and
+   * writes it to the third argument.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 3 || args.length > 4) {
+      System.out.println("Usage:");
+      System.out.println("  java " + MapMatchingConverter.class.getName() + " config.xml in.trace out.trace [threads]");
+      return;
+    }
+    int threadCount = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+    Element rootNode = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(FileHelper.openFileOrUrl(args[0])).getDocumentElement();
+    RoadMap roadmap = (RoadMap) new XmlWorldConfigInterpreter().initFromXmlElement(rootNode);
+
+    long wallStartTime = System.nanoTime();
+    System.out.print("Map-matching trace '" + args[1] + "'... ");
+    long matchCount = new MapMatchingConverter(roadmap).convert(args[1], args[2], threadCount);
+    System.out.println("done. (" + matchCount + " locations matched, " + String.format("%.1f", (System.nanoTime() - wallStartTime) / 1e9) + " sec)");
+    System.out.println("  " + new File(args[1]).length() + " bytes -> " + new File(args[2]).length() + " bytes");
+  }
+}
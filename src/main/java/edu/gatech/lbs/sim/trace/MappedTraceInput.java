@@ -0,0 +1,180 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Trace reader decoding directly from a memory-mapped trace file. The file is mapped in chunks, so files larger than
+ * 2GB can be read too. Mapped pages are shared through the OS page cache, eg. by the simulations of a BatchSimRunner
+ * replaying the same trace.
+ */
+public class MappedTraceInput implements DataInput, Closeable {
+  public static final String xmlName = "mmap";
+
+  private static final long defaultChunkSize = 1L << 30; // [bytes]
+
+  private RandomAccessFile file;
+  private FileChannel channel;
+  private long fileSize; // [bytes]
+  private long chunkSize; // [bytes]
+  private long chunkStart; // [bytes], file position of current chunk
+  private MappedByteBuffer buffer; // current chunk
+
+  public MappedTraceInput(String filename) throws IOException {
+    this(filename, defaultChunkSize);
+  }
+
+  public MappedTraceInput(String filename, long chunkSize) throws IOException {
+    this.chunkSize = chunkSize;
+    file = new RandomAccessFile(filename, "r");
+    channel = file.getChannel();
+    fileSize = channel.size();
+    chunkStart = 0;
+    mapChunk();
+  }
+
+  private void mapChunk() throws IOException {
+    buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, Math.min(chunkSize, fileSize - chunkStart));
+  }
+
+  /**
+   * Ensure the current chunk has unread bytes, moving on to the next chunk if needed.
+   */
+  private void ensureRemaining() throws IOException {
+    if (!buffer.hasRemaining()) {
+      long nextChunkStart = chunkStart + buffer.capacity();
+      if (nextChunkStart >= fileSize) {
+        throw new EOFException();
+      }
+      chunkStart = nextChunkStart;
+      mapChunk();
+    }
+  }
+
+  public void close() throws IOException {
+    buffer = null;
+    channel.close();
+    file.close();
+  }
+
+  public byte readByte() throws IOException {
+    ensureRemaining();
+    return buffer.get();
+  }
+
+  public int readUnsignedByte() throws IOException {
+    return readByte() & 0xFF;
+  }
+
+  public boolean readBoolean() throws IOException {
+    return readByte() != 0;
+  }
+
+  public short readShort() throws IOException {
+    if (buffer.remaining() >= 2) {
+      return buffer.getShort();
+    }
+    // straddling chunk boundary:
+    return (short) ((readUnsignedByte() << 8) | readUnsignedByte());
+  }
+
+  public int readUnsignedShort() throws IOException {
+    return readShort() & 0xFFFF;
+  }
+
+  public char readChar() throws IOException {
+    return (char) readShort();
+  }
+
+  public int readInt() throws IOException {
+    if (buffer.remaining() >= 4) {
+      return buffer.getInt();
+    }
+    // straddling chunk boundary:
+    int v = 0;
+    for (int i = 0; i < 4; i++) {
+      v = (v << 8) | readUnsignedByte();
+    }
+    return v;
+  }
+
+  public long readLong() throws IOException {
+    if (buffer.remaining() >= 8) {
+      return buffer.getLong();
+    }
+    // straddling chunk boundary:
+    long v = 0;
+    for (int i = 0; i < 8; i++) {
+      v = (v << 8) | readUnsignedByte();
+    }
+    return v;
+  }
+
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  public double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      ensureRemaining();
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  public int skipBytes(int n) throws IOException {
+    int skipped = 0;
+    try {
+      while (skipped < n) {
+        ensureRemaining();
+        int k = Math.min(n - skipped, buffer.remaining());
+        buffer.position(buffer.position() + k);
+        skipped += k;
+      }
+    } catch (EOFException e) {
+      // skip as much as available
+    }
+    return skipped;
+  }
+
+  public String readLine() throws IOException {
+    StringBuilder line = new StringBuilder();
+    try {
+      int c;
+      while ((c = readUnsignedByte()) != '\n') {
+        if (c != '\r') {
+          line.append((char) c);
+        }
+      }
+    } catch (EOFException e) {
+      if (line.length() == 0) {
+        return null;
+      }
+    }
+    return line.toString();
+  }
+
+  public String readUTF() throws IOException {
+    return DataInputStream.readUTF(this);
+  }
+}
@@ -0,0 +1,33 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+
+/**
+ * Writes the human-readable text export of a trace, one event per line, on the calling thread.
+ */
+public class TextTraceWriter implements ITraceWriter {
+  public static final String xmlName = "sync";
+
+  protected PrintWriter out;
+
+  public TextTraceWriter(String txtFilename) throws IOException {
+    out = new PrintWriter(new BufferedWriter(new FileWriter(txtFilename), 1 << 16));
+  }
+
+  public void write(SimEvent event) throws IOException {
+    event.saveToTxt(out);
+  }
+
+  public void close() throws IOException {
+    out.close();
+  }
+}
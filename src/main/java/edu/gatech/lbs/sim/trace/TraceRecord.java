@@ -0,0 +1,223 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import edu.gatech.lbs.core.query.QueryKey;
+import edu.gatech.lbs.core.query.ShortestRouteRangeQuery;
+import edu.gatech.lbs.core.vector.CartesianVector;
+import edu.gatech.lbs.core.vector.IVector;
+import edu.gatech.lbs.core.vector.RoadnetVector;
+import edu.gatech.lbs.core.world.roadnet.RoadMap;
+import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.agent.SimAgent;
+import edu.gatech.lbs.sim.scheduling.event.AccelerationChangeEvent;
+import edu.gatech.lbs.sim.scheduling.event.LocationChangeEvent;
+import edu.gatech.lbs.sim.scheduling.event.QueryCreateEvent;
+import edu.gatech.lbs.sim.scheduling.event.QueryDeleteEvent;
+import edu.gatech.lbs.sim.scheduling.event.SimEvent;
+import edu.gatech.lbs.sim.scheduling.event.VelocityChangeEvent;
+
+/**
+ * One trace record in primitive form, as the intermediate between events, the legacy trace format and the compact
+ * trace format. Mobility change events are kept field by field, all other events as their legacy bytes.
+ */
+public class TraceRecord {
+  public byte typeCode; // legacy event type code
+  public long timestamp; // [ms]
+
+  // mobility change events:
+  public int simAgentId;
+  public int vectorCount; // location, velocity, acceleration
+  public final byte[] vectorType = new byte[3]; // vector type codes
+  public final long[] vectorA = new long[3]; // roadnet segment id, or cartesian x
+  public final long[] vectorB = new long[3]; // roadnet progress, or cartesian y
+
+  // other events:
+  public byte[] legacyBytes; // full legacy record, including type code
+  public int legacyLength;
+
+  /**
+   * Get the number of vectors in a mobility change event of the given type, or -1 for other events.
+   */
+  public static int getVectorCount(byte typeCode) {
+    switch (typeCode) {
+    case LocationChangeEvent.typeCode:
+      return 1;
+    case VelocityChangeEvent.typeCode:
+      return 2;
+    case AccelerationChangeEvent.typeCode:
+      return 3;
+    default:
+      return -1;
+    }
+  }
+
+  /**
+   * Get the type code of the mobility change event with the given number of vectors.
+   */
+  public static byte getTypeCode(int vectorCount) {
+    switch (vectorCount) {
+    case 1:
+      return LocationChangeEvent.typeCode;
+    case 2:
+      return VelocityChangeEvent.typeCode;
+    default:
+      return AccelerationChangeEvent.typeCode;
+    }
+  }
+
+  public boolean isMobilityChange() {
+    return vectorCount > 0;
+  }
+
+  public void setFrom(SimEvent event) throws IOException {
+    typeCode = event.getTypeCode();
+    timestamp = event.getTimestamp();
+    vectorCount = Math.max(0, getVectorCount(typeCode));
+
+    if (event instanceof LocationChangeEvent) {
+      LocationChangeEvent e = (LocationChangeEvent) event;
+      simAgentId = e.getSimAgentId();
+      setVector(0, e.getLocation());
+    } else if (event instanceof VelocityChangeEvent) {
+      VelocityChangeEvent e = (VelocityChangeEvent) event;
+      simAgentId = e.getSimAgentId();
+      setVector(0, e.getLocation());
+      setVector(1, e.getVelocity());
+    } else if (event instanceof AccelerationChangeEvent) {
+      AccelerationChangeEvent e = (AccelerationChangeEvent) event;
+      simAgentId = e.getSimAgentId();
+      setVector(0, e.getLocation());
+      setVector(1, e.getVelocity());
+      setVector(2, e.getAcceleration());
+    } else {
+      vectorCount = 0;
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      event.saveTo(out);
+      out.close();
+      legacyBytes = bytes.toByteArray();
+      legacyLength = legacyBytes.length;
+    }
+  }
+
+  private void setVector(int i, IVector v) {
+    vectorType[i] = v.getTypeCode();
+    if (v instanceof RoadnetVector) {
+      RoadnetVector rv = (RoadnetVector) v;
+      vectorA[i] = rv.getRoadSegment().getId();
+      vectorB[i] = rv.getProgress();
+    } else {
+      CartesianVector cv = (CartesianVector) v;
+      vectorA[i] = cv.getX();
+      vectorB[i] = cv.getY();
+    }
+  }
+
+  /**
+   * Read one record in the legacy trace format. This does not need the roadmap, so it is usable for format conversion.
+   */
+  public void readLegacy(DataInput in) throws IOException {
+    typeCode = in.readByte();
+    timestamp = in.readLong();
+    vectorCount = getVectorCount(typeCode);
+
+    if (vectorCount > 0) {
+      simAgentId = in.readInt();
+      for (int i = 0; i < vectorCount; i++) {
+        vectorType[i] = in.readByte();
+        if (vectorType[i] == RoadnetVector.typeCode) {
+          vectorA[i] = in.readInt();
+          vectorB[i] = in.readInt();
+        } else if (vectorType[i] == CartesianVector.typeCode) {
+          vectorA[i] = in.readLong();
+          vectorB[i] = in.readLong();
+        } else {
+          System.out.println("Unknown vector type code: '" + vectorType[i] + "'.");
+          System.exit(-1);
+        }
+      }
+    } else {
+      vectorCount = 0;
+      // re-assemble the legacy bytes of query events:
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(typeCode);
+      out.writeLong(timestamp);
+      if (typeCode == QueryCreateEvent.typeCode) {
+        new QueryKey(in).saveTo(out);
+        byte queryTypeCode = in.readByte();
+        if (queryTypeCode != ShortestRouteRangeQuery.typeCode) {
+          System.out.println("Unknown query type code: '" + queryTypeCode + "'.");
+          System.exit(-1);
+        }
+        new ShortestRouteRangeQuery(in).saveTo(out);
+      } else if (typeCode == QueryDeleteEvent.typeCode) {
+        new QueryKey(in).saveTo(out);
+      } else {
+        System.out.println("Unknown simulation event: type code='" + (char) typeCode + "'");
+        System.exit(-1);
+      }
+      out.close();
+      legacyBytes = bytes.toByteArray();
+      legacyLength = legacyBytes.length;
+    }
+  }
+
+  public void writeLegacy(DataOutputStream out) throws IOException {
+    if (!isMobilityChange()) {
+      out.write(legacyBytes, 0, legacyLength);
+      return;
+    }
+
+    out.writeByte(typeCode);
+    out.writeLong(timestamp);
+    out.writeInt(simAgentId);
+    for (int i = 0; i < vectorCount; i++) {
+      out.writeByte(vectorType[i]);
+      if (vectorType[i] == RoadnetVector.typeCode) {
+        out.writeInt((int) vectorA[i]);
+        out.writeInt((int) vectorB[i]);
+      } else {
+        out.writeLong(vectorA[i]);
+        out.writeLong(vectorB[i]);
+      }
+    }
+  }
+
+  /**
+   * Make the simulation event of this record. Non-mobility events are decoded by the simulation's event queue.
+   */
+  public SimEvent toSimEvent(Simulation sim) throws IOException {
+    if (!isMobilityChange()) {
+      return sim.getQueue().loadEvent(sim, new DataInputStream(new ByteArrayInputStream(legacyBytes, 0, legacyLength)));
+    }
+
+    SimAgent agent = sim.getAgent(simAgentId);
+    switch (typeCode) {
+    case LocationChangeEvent.typeCode:
+      return new LocationChangeEvent(sim, timestamp, agent, getVector(sim, 0));
+    case VelocityChangeEvent.typeCode:
+      return new VelocityChangeEvent(sim, timestamp, agent, getVector(sim, 0), getVector(sim, 1));
+    default:
+      return new AccelerationChangeEvent(sim, timestamp, agent, getVector(sim, 0), getVector(sim, 1), getVector(sim, 2));
+    }
+  }
+
+  private IVector getVector(Simulation sim, int i) {
+    if (vectorType[i] == RoadnetVector.typeCode) {
+      return new RoadnetVector(((RoadMap) sim.getWorld()).getRoadSegment((int) vectorA[i]), (int) vectorB[i]);
+    } else {
+      return new CartesianVector(vectorA[i], vectorB[i]);
+    }
+  }
+}
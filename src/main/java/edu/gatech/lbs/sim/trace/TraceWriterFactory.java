@@ -0,0 +1,45 @@
+// Copyright (c) 2012, Georgia Tech Research Corporation
+// Authors:
+//   Peter Pesti (pesti@gatech.edu)
+//
+package edu.gatech.lbs.sim.trace;
+
+import java.io.IOException;
+
+public class TraceWriterFactory {
+  /**
+   * Open a trace writer for the given trace format (legacy, if not given).
+   */
+  public static ITraceWriter make(String traceFilename, String format) throws IOException {
+    ITraceWriter writer = null;
+    if (format == null || format.isEmpty() || format.equalsIgnoreCase(LegacyTraceWriter.xmlName)) {
+      writer = new LegacyTraceWriter(traceFilename);
+    } else if (format.equalsIgnoreCase(CompactTraceWriter.xmlName)) {
+      writer = new CompactTraceWriter(traceFilename);
+    } else {
+      System.out.println("Unknown trace format: " + format);
+      System.exit(-1);
+    }
+    return writer;
+  }
+
+  /**
+   * Open a writer for the text export of the trace, for the given text output mode (none, if not given).
+   * 
+   * @return null, if there is no text output
+   */
+  public static ITraceWriter makeTextWriter(String traceFilename, String textOutput) throws IOException {
+    ITraceWriter writer = null;
+    if (textOutput == null || textOutput.isEmpty() || textOutput.equalsIgnoreCase("none")) {
+      writer = null;
+    } else if (textOutput.equalsIgnoreCase(TextTraceWriter.xmlName)) {
+      writer = new TextTraceWriter(traceFilename + ".txt");
+    } else if (textOutput.equalsIgnoreCase(AsyncTraceWriter.xmlName)) {
+      writer = new AsyncTraceWriter(new TextTraceWriter(traceFilename + ".txt"), "text trace writer");
+    } else {
+      System.out.println("Unknown text output mode: " + textOutput);
+      System.exit(-1);
+    }
+    return writer;
+  }
+}
@@ -5,49 +5,81 @@
 package edu.gatech.lbs.sim.tracegenerator.mobilitytrace;
 
 
-import java.io.BufferedOutputStream;
-import java.io.DataOutputStream;
-import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import edu.gatech.lbs.sim.Simulation;
 import edu.gatech.lbs.sim.scheduling.SimEventQueue;
 import edu.gatech.lbs.sim.scheduling.event.SimEvent;
 import edu.gatech.lbs.sim.tracegenerator.ITraceGenerator;
+import edu.gatech.lbs.sim.trace.ITraceWriter;
+import edu.gatech.lbs.sim.trace.TraceWriterFactory;
 import edu.gatech.lbs.sim.tracegenerator.mobilitytrace.individual.IndividualMobilityModel;
 
 public class IndividualMobilityTraceGenerator implements ITraceGenerator {
+  protected Simulation sim;
   protected long simStartTime;
   protected long simEndTime;
   protected List<IndividualMobilityModel> mobilityModels;
+  protected String traceFormat; // see TraceWriterFactory
+  protected String textOutput; // text export mode, see TraceWriterFactory.makeTextWriter()
+  protected int threadCount = 1; // number of generator threads
 
 
-  public IndividualMobilityTraceGenerator(long simStartTime, long simEndTime,
-      List<IndividualMobilityModel> mobilityModels) {
-    this.simStartTime = simStartTime;
-    this.simEndTime = simEndTime;
+  public IndividualMobilityTraceGenerator(Simulation sim, List<IndividualMobilityModel> mobilityModels) {
+    this.sim = sim;
+    this.simStartTime = sim.getSimStartTime();
+    this.simEndTime = sim.getSimEndTime();
     this.mobilityModels = mobilityModels;
   }
 
+  public void setTraceFormat(String traceFormat) {
+    this.traceFormat = traceFormat;
+  }
+
+  public void setTextOutput(String textOutput) {
+    this.textOutput = textOutput;
+  }
+
+  public void setThreadCount(int threadCount) {
+    this.threadCount = threadCount;
+  }
+
+  private long getStageLength() {
+    return (long) (1000 * 60 * 5.0 / (mobilityModels.size() / 10000.0)); // stage length [ms]
+  }
+
   // -trace generation broken up into generate-then-write-to-disk time-chunks (eg. 1 min)
   // -trace loading is also done in scheduled chunks, so is a low-memory operation
   public void generateTrace(String traceFilename) throws IOException {
-    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(traceFilename)));
-    PrintWriter outTxt = new PrintWriter(new FileWriter(traceFilename + ".txt"));
+    if (threadCount > 1) {
+      generateTraceParallel(traceFilename);
+      return;
+    }
+
+    ITraceWriter out = TraceWriterFactory.make(traceFilename, traceFormat);
+    ITraceWriter outTxt = TraceWriterFactory.makeTextWriter(traceFilename, textOutput);
 
     long wallStartTime = System.nanoTime();
 
-    SimEventQueue overflowQueue = new SimEventQueue();
+    SimEventQueue overflowQueue = sim.makeEventQueue();
     int eventCount = 0;
-    long simStageLength = (long) (1000 * 60 * 5.0 / (mobilityModels.size() / 10000.0)); // stage length [ms]
+    long simStageLength = getStageLength();
     for (long simStageEndTime = Math.min(simEndTime, simStageLength); simStageEndTime <= simEndTime; simStageEndTime = Math
         .min(simEndTime, simStageEndTime + simStageLength)) {
-      SimEventQueue queue = new SimEventQueue();
+      SimEventQueue queue = sim.makeEventQueue();
 
       // sift thru the overflow queue from previous stage, and separate events belonging
       // to current stage, and to events overflowing even the current stage:
-      SimEventQueue overflowQueue2 = new SimEventQueue();
+      SimEventQueue overflowQueue2 = sim.makeEventQueue();
       SimEvent e;
       while ((e = overflowQueue.pop()) != null) {
         if (e.getTimestamp() < simStageEndTime) {
@@ -86,9 +118,13 @@ public class IndividualMobilityTraceGenerator implements ITraceGenerator {
       } while (simStageEndedCount < mobilityModels.size());
 
       eventCount += queue.size();
-      queue.saveTo(out);// to binary file
 
-      queue.saveToTxt(outTxt);// to text file
+      while ((e = queue.pop()) != null) {
+        out.write(e); // to binary file
+        if (outTxt != null) {
+          outTxt.write(e); // to text file
+        }
+      }
 
       System.out.println("  " + String.format("%.2f", simStageEndTime / 60.0 / 1000) + " simulated minutes elapsed...");
 
@@ -98,6 +134,14 @@ public class IndividualMobilityTraceGenerator implements ITraceGenerator {
       }
     }
 
+    out.close();
+    if (outTxt != null) {
+      outTxt.close();
+    }
+    showStats(eventCount, wallStartTime);
+  }
+
+  private void showStats(int eventCount, long wallStartTime) {
     double simSeconds = (simEndTime - simStartTime) / (1000.0);
     System.out.println("  done. (" + eventCount + " trace records, "
         + String.format("%.2f", simSeconds / ((double) eventCount / mobilityModels.size()))
@@ -105,8 +149,203 @@ public class IndividualMobilityTraceGenerator implements ITraceGenerator {
     double simToWallSpeedRatio = (simEndTime - simStartTime) / ((System.nanoTime() - wallStartTime) / 1e6);
     System.out.println("  Speed: " + String.format("%.1f", simToWallSpeedRatio) + "x realtime ("
         + String.format("%.1f", simToWallSpeedRatio / 60.0) + " simulated hours/wall minute)");
+  }
+
+  /**
+   * Generates the same trace as the sequential generator, with the mobility models split into shards that are
+   * generated in parallel. Each stage, every shard produces a sorted run of its events, and the runs are k-way merged
+   * into the trace. The merge key reproduces the sequential event queue order: (time|priority), then events
+   * overflowing from earlier stages before new ones, then the round in which the models were polled, then the model's
+   * index. A model returning no event is considered finished.
+   */
+  protected void generateTraceParallel(String traceFilename) throws IOException {
+    ITraceWriter out = TraceWriterFactory.make(traceFilename, traceFormat);
+    ITraceWriter outTxt = TraceWriterFactory.makeTextWriter(traceFilename, textOutput);
+
+    long wallStartTime = System.nanoTime();
+
+    // several shards per thread, for load balancing:
+    int shardCount = Math.min(mobilityModels.size(), 4 * threadCount);
+    List<Shard> shards = new ArrayList<Shard>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new Shard(i * mobilityModels.size() / shardCount, (i + 1) * mobilityModels.size() / shardCount));
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+
+    int eventCount = 0;
+    int stage = 0;
+    long simStageLength = getStageLength();
+    try {
+      for (long simStageEndTime = Math.min(simEndTime, simStageLength); simStageEndTime <= simEndTime; simStageEndTime = Math
+          .min(simEndTime, simStageEndTime + simStageLength), stage++) {
+        // generate sorted runs:
+        List<Future<List<KeyedEvent>>> futures = new ArrayList<Future<List<KeyedEvent>>>(shardCount);
+        for (Shard shard : shards) {
+          futures.add(pool.submit(shard.getStageTask(stage, simStageEndTime)));
+        }
+        List<List<KeyedEvent>> runs = new ArrayList<List<KeyedEvent>>(shardCount);
+        for (Future<List<KeyedEvent>> future : futures) {
+          runs.add(future.get());
+        }
+
+        // k-way merge of runs:
+        PriorityQueue<RunCursor> heads = new PriorityQueue<RunCursor>(shardCount, runCursorComparator);
+        for (List<KeyedEvent> run : runs) {
+          if (!run.isEmpty()) {
+            heads.add(new RunCursor(run));
+          }
+        }
+        RunCursor cursor;
+        while ((cursor = heads.poll()) != null) {
+          SimEvent e = cursor.run.get(cursor.idx).event;
+          out.write(e); // to binary file
+          if (outTxt != null) {
+            outTxt.write(e); // to text file
+          }
+          eventCount++;
+          cursor.idx++;
+          if (cursor.idx < cursor.run.size()) {
+            heads.add(cursor);
+          }
+        }
+
+        System.out.println("  " + String.format("%.2f", simStageEndTime / 60.0 / 1000) + " simulated minutes elapsed...");
+
+        // terminate if stage end is also simulation end:
+        if (simStageEndTime == simEndTime) {
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      System.out.println("Trace generation interrupted.");
+      System.exit(-1);
+    } catch (ExecutionException e) {
+      System.out.println("Trace generation failed: " + e.getCause());
+      e.getCause().printStackTrace();
+      System.exit(-1);
+    } finally {
+      pool.shutdown();
+    }
+
     out.close();
-    outTxt.close();
+    if (outTxt != null) {
+      outTxt.close();
+    }
+    showStats(eventCount, wallStartTime);
+  }
+
+  /**
+   * Event with its position in the sequential generation order.
+   */
+  private static class KeyedEvent {
+    public final SimEvent event;
+    public final long timePriority; // (time|priority), as in the event queue
+    public final int stage; // stage in which the event was generated
+    public final int round; // round of model polling in that stage
+    public final int modelIdx;
+
+    public KeyedEvent(SimEvent event, int stage, int round, int modelIdx) {
+      this.event = event;
+      this.timePriority = (event.getTimestamp() << 16) | (event.getPriority() & 0xFFFF);
+      this.stage = stage;
+      this.round = round;
+      this.modelIdx = modelIdx;
+    }
+  }
+
+  private static final Comparator<KeyedEvent> keyedEventComparator = new Comparator<KeyedEvent>() {
+    public int compare(KeyedEvent e0, KeyedEvent e1) {
+      if (e0.timePriority != e1.timePriority) {
+        return e0.timePriority < e1.timePriority ? -1 : 1;
+      }
+      if (e0.stage != e1.stage) {
+        return e0.stage < e1.stage ? -1 : 1;
+      }
+      if (e0.round != e1.round) {
+        return e0.round < e1.round ? -1 : 1;
+      }
+      return e0.modelIdx < e1.modelIdx ? -1 : (e0.modelIdx == e1.modelIdx ? 0 : 1);
+    }
+  };
+
+  private static class RunCursor {
+    public final List<KeyedEvent> run;
+    public int idx;
+
+    public RunCursor(List<KeyedEvent> run) {
+      this.run = run;
+      this.idx = 0;
+    }
+  }
+
+  private static final Comparator<RunCursor> runCursorComparator = new Comparator<RunCursor>() {
+    public int compare(RunCursor c0, RunCursor c1) {
+      return keyedEventComparator.compare(c0.run.get(c0.idx), c1.run.get(c1.idx));
+    }
+  };
+
+  /**
+   * A contiguous range of the mobility models, with the events of these models overflowing the current stage.
+   */
+  private class Shard {
+    private final int modelIdx0; // first model index, inclusive
+    private final int modelIdx1; // last model index, exclusive
+    private final boolean[] isFinished;
+    private List<KeyedEvent> overflow;
+
+    public Shard(int modelIdx0, int modelIdx1) {
+      this.modelIdx0 = modelIdx0;
+      this.modelIdx1 = modelIdx1;
+      isFinished = new boolean[modelIdx1 - modelIdx0];
+      overflow = new ArrayList<KeyedEvent>();
+    }
+
+    public Callable<List<KeyedEvent>> getStageTask(final int stage, final long simStageEndTime) {
+      return new Callable<List<KeyedEvent>>() {
+        public List<KeyedEvent> call() {
+          return generateStage(stage, simStageEndTime);
+        }
+      };
+    }
+
+    /**
+     * Generate the shard's events of one stage, sorted in sequential generation order.
+     */
+    private List<KeyedEvent> generateStage(int stage, long simStageEndTime) {
+      List<KeyedEvent> run = new ArrayList<KeyedEvent>();
+
+      // separate overflowing events of previous stages belonging to current stage:
+      List<KeyedEvent> overflow2 = new ArrayList<KeyedEvent>();
+      for (KeyedEvent e : overflow) {
+        if (e.event.getTimestamp() < simStageEndTime) {
+          run.add(e);
+        } else {
+          overflow2.add(e);
+        }
+      }
+      overflow = overflow2;
+
+      // collect events until every model has finished the stage:
+      for (int i = modelIdx0; i < modelIdx1; i++) {
+        IndividualMobilityModel model = mobilityModels.get(i);
+        for (int round = 0; !isFinished[i - modelIdx0]; round++) {
+          SimEvent event = model.getNextEvent();
+          if (event == null) {
+            isFinished[i - modelIdx0] = true;
+          } else if (event.getTimestamp() < simStageEndTime) {
+            // store for current stage:
+            run.add(new KeyedEvent(event, stage, round, i));
+          } else {
+            // store for next stage, and signal end-of-stage for this model:
+            overflow.add(new KeyedEvent(event, stage, round, i));
+            break;
+          }
+        }
+      }
+
+      Collections.sort(run, keyedEventComparator);
+      return run;
+    }
   }
 
   /*
@@ -4,13 +4,23 @@
 //
 package edu.gatech.lbs.sim.tracegenerator.mobilitytrace.individual;
 
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.sim.Simulation;
+import edu.gatech.lbs.sim.agent.SimAgent;
 import edu.gatech.lbs.sim.scheduling.event.SimEvent;
 
 public abstract class IndividualMobilityModel {
   protected Simulation sim;
   protected long timestamp; // [ms]
+  protected RandomStream rnd; // the agent's own random stream, shared with the distributions it draws from
 
   public abstract SimEvent getNextEvent();
 
+  /**
+   * Get the random stream of the agent's movement, derived from the simulation's root seed.
+   */
+  protected static RandomStream getRandomStream(Simulation sim, SimAgent agent) {
+    return sim.getRandomStreams().getStream("mobility", agent.getSimAgentId());
+  }
+
 }
@@ -26,6 +26,7 @@ public class RandomWaypoint_IndividualMobilityModel extends IndividualMobilityMo
   public RandomWaypoint_IndividualMobilityModel(Simulation sim, SimAgent agent, ILocationDistribution locationDistribution, IParamDistribution speedDistribution, long timestamp) {
     this.sim = sim;
     this.agent = agent;
+    this.rnd = getRandomStream(sim, agent);
     this.timestamp = timestamp;
     this.locationDistribution = locationDistribution;
     this.speedDistribution = speedDistribution;
@@ -41,13 +42,13 @@ public class RandomWaypoint_IndividualMobilityModel extends IndividualMobilityMo
       location = destination;
     } else {
       // set initial location:
-      location = locationDistribution.getNextLocation().toCartesianVector();
+      location = locationDistribution.getNextLocation(rnd).toCartesianVector();
     }
 
     // set new destination:
-    destination = locationDistribution.getNextLocation().toCartesianVector();
+    destination = locationDistribution.getNextLocation(rnd).toCartesianVector();
     v = location.vectorTo(destination).toCartesianVector();
-    v.setLength(speedDistribution.getNextValue(location));
+    v.setLength(speedDistribution.getNextValue(location, rnd));
 
     return new VelocityChangeEvent(sim, timestamp, agent, location, v);
   }
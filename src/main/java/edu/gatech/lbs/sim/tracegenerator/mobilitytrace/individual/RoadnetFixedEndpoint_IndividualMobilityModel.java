@@ -1,7 +1,6 @@
 package edu.gatech.lbs.sim.tracegenerator.mobilitytrace.individual;
 
 
-import java.util.Random;
 import edu.gatech.lbs.core.vector.IVector;
 import edu.gatech.lbs.core.vector.RoadnetVector;
 import edu.gatech.lbs.core.world.roadnet.RoadMap;
@@ -34,7 +33,6 @@ public class RoadnetFixedEndpoint_IndividualMobilityModel extends IndividualMobi
   protected boolean isFixed; // set to true when the next location is set to be the destination
   protected boolean isReached;// check if agent reaches the destination
   protected int count;
-  protected Random rnd;
   protected IVector[] initLocations;
   protected IVector[] destLocations;
 
@@ -45,6 +43,7 @@ public class RoadnetFixedEndpoint_IndividualMobilityModel extends IndividualMobi
       RoadMap roadmap, IVector[] initLocations, IVector[] destLocations) {
     this.sim = sim;
     this.agent = agent;
+    this.rnd = getRandomStream(sim, agent);
     this.roadmap = roadmap;
     this.locationDistribution = locationDistribution;
     this.speedDistribution = speedDistribution;
@@ -56,7 +55,6 @@ public class RoadnetFixedEndpoint_IndividualMobilityModel extends IndividualMobi
     this.count = 0;
     this.initLocations = initLocations;
     this.destLocations = destLocations;
-    this.rnd = new Random();
   }
 
 
@@ -96,7 +94,7 @@ public class RoadnetFixedEndpoint_IndividualMobilityModel extends IndividualMobi
     }
 
     v = new RoadnetVector(location.getRoadSegment(), (destination.getProgress() > location.getProgress() ? +1 : -1)
-        * (int) Math.abs(speedDistribution.getNextValue(location)));
+        * (int) Math.abs(speedDistribution.getNextValue(location, rnd)));
   }
 
   protected void planNewRoute() {
@@ -119,10 +117,9 @@ public class RoadnetFixedEndpoint_IndividualMobilityModel extends IndividualMobi
 
       }
       if (!isReached) {
-        if (!isFixed) route = roadmap.getShortestRoute(location, locationDistribution.getNextLocation()
+        if (!isFixed) route = roadmap.getShortestRoute(location, locationDistribution.getNextLocation(rnd)
             .toRoadnetVector());
         else {
-          // Random rnd = new Random();
           int rndInt = rnd.nextInt(destLocations.length);
           route = roadmap.getShortestRoute(location, destLocations[rndInt].toRoadnetVector());
         }
@@ -137,7 +134,7 @@ public class RoadnetFixedEndpoint_IndividualMobilityModel extends IndividualMobi
       if (!isFixed) {
         // option 1: select random initial locations from hotspots
         if (initLocations == null) {
-          location = locationDistribution.getNextLocation().toRoadnetVector();
+          location = locationDistribution.getNextLocation(rnd).toRoadnetVector();
         } else {
           // option 2: select from initialLocations
           if (agent.getSimAgentId() < 2) // let the first two agents have the same route
@@ -199,14 +196,14 @@ public class RoadnetFixedEndpoint_IndividualMobilityModel extends IndividualMobi
       if (route == null) {
         // park before starting to move:
         if (parkingTimeDistribution != null) {
-          timestamp += parkingTimeDistribution.getNextValue(location);
+          timestamp += parkingTimeDistribution.getNextValue(location, rnd);
         }
         planNewRoute();
       }
 
       // stop at intersection before starting to move:
       if (stoppingTimeDistribution != null) {
-        timestamp += stoppingTimeDistribution.getNextValue(location);
+        timestamp += stoppingTimeDistribution.getNextValue(location, rnd);
       }
 
       startMovingOnNewSegment();
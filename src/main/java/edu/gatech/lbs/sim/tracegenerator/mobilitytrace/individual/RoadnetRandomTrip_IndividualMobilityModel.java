@@ -34,6 +34,7 @@ public class RoadnetRandomTrip_IndividualMobilityModel extends IndividualMobilit
   public RoadnetRandomTrip_IndividualMobilityModel(Simulation sim, SimAgent agent, ILocationDistribution locationDistribution, IParamDistribution speedDistribution, IParamDistribution parkingTimeDistribution, IParamDistribution stoppingTimeDistribution, long timestamp, RoadMap roadmap) {
     this.sim = sim;
     this.agent = agent;
+    this.rnd = getRandomStream(sim, agent);
 
     this.roadmap = roadmap;
     this.locationDistribution = locationDistribution;
@@ -73,12 +74,12 @@ public class RoadnetRandomTrip_IndividualMobilityModel extends IndividualMobilit
       destination = route.getTarget();
     }
 
-    v = new RoadnetVector(location.getRoadSegment(), (destination.getProgress() > location.getProgress() ? +1 : -1) * (int) Math.abs(speedDistribution.getNextValue(location)));
+    v = new RoadnetVector(location.getRoadSegment(), (destination.getProgress() > location.getProgress() ? +1 : -1) * (int) Math.abs(speedDistribution.getNextValue(location, rnd)));
   }
 
   protected void planNewRoute() {
     // make a new route plan:
-    route = roadmap.getShortestRoute(location, locationDistribution.getNextLocation().toRoadnetVector());
+    route = roadmap.getShortestRoute(location, locationDistribution.getNextLocation(rnd).toRoadnetVector());
     routeSegment = 0;
   }
 
@@ -86,7 +87,7 @@ public class RoadnetRandomTrip_IndividualMobilityModel extends IndividualMobilit
     // set new location:
     if (location == null) {
       // set initial location:
-      location = locationDistribution.getNextLocation().toRoadnetVector();
+      location = locationDistribution.getNextLocation(rnd).toRoadnetVector();
     }
 
     if (v == null) {
@@ -127,14 +128,14 @@ public class RoadnetRandomTrip_IndividualMobilityModel extends IndividualMobilit
       if (route == null) {
         // park before starting to move:
         if (parkingTimeDistribution != null) {
-          timestamp += parkingTimeDistribution.getNextValue(location);
+          timestamp += parkingTimeDistribution.getNextValue(location, rnd);
         }
         planNewRoute();
       }
 
       // stop at intersection before starting to move:
       if (stoppingTimeDistribution != null) {
-        timestamp += stoppingTimeDistribution.getNextValue(location);
+        timestamp += stoppingTimeDistribution.getNextValue(location, rnd);
       }
 
       startMovingOnNewSegment();
@@ -31,6 +31,7 @@ public class RoadnetRandomWaypoint_IndividualMobilityModel extends IndividualMob
   public RoadnetRandomWaypoint_IndividualMobilityModel(Simulation sim, SimAgent agent, ILocationDistribution locationDistribution, IParamDistribution speedDistribution, IParamDistribution stoppingTimeDistribution, long timestamp) {
     this.sim = sim;
     this.agent = agent;
+    this.rnd = getRandomStream(sim, agent);
 
     this.locationDistribution = locationDistribution;
     this.speedDistribution = speedDistribution;
@@ -43,16 +44,16 @@ public class RoadnetRandomWaypoint_IndividualMobilityModel extends IndividualMob
   }
 
   protected void startMovingOnNewSegment() {
-    v = new RoadnetVector(location.getRoadSegment(), (destination.getProgress() > location.getProgress() ? +1 : -1) * (int) Math.abs(speedDistribution.getNextValue(location)));
+    v = new RoadnetVector(location.getRoadSegment(), (destination.getProgress() > location.getProgress() ? +1 : -1) * (int) Math.abs(speedDistribution.getNextValue(location, rnd)));
   }
 
   public SimEvent getNextEvent() {
     // set initial location, speed & destination::
     if (location == null) {
-      location = locationDistribution.getNextLocation().toRoadnetVector();
+      location = locationDistribution.getNextLocation(rnd).toRoadnetVector();
 
       RoadSegment segment = location.toRoadnetVector().getRoadSegment();
-      v = new RoadnetVector(segment, speedDistribution.getNextValue(location));
+      v = new RoadnetVector(segment, speedDistribution.getNextValue(location, rnd));
       destination = new RoadnetVector(segment, v.getProgress() > 0 ? segment.getLength() : 0);
 
       return new VelocityChangeEvent(sim, timestamp, agent, location, v);
@@ -67,7 +68,7 @@ public class RoadnetRandomWaypoint_IndividualMobilityModel extends IndividualMob
     if (v.getLength() == 0) {
       // stop at intersection before starting to move:
       if (stoppingTimeDistribution != null) {
-        timestamp += stoppingTimeDistribution.getNextValue(location);
+        timestamp += stoppingTimeDistribution.getNextValue(location, rnd);
       }
       startMovingOnNewSegment();
 
@@ -97,7 +98,7 @@ public class RoadnetRandomWaypoint_IndividualMobilityModel extends IndividualMob
       // Don't choose the entry road, if there are other choices.
       RoadSegment seg2;
       do {
-        seg2 = segments.get((int) (segments.size() * Math.random()));
+        seg2 = segments.get((int) (segments.size() * rnd.nextDouble()));
       } while (segments.size() > 1 && roadsegment == seg2);
       roadsegment = seg2;
 
@@ -4,68 +4,94 @@
 //
 package edu.gatech.lbs.sim.tracegenerator.mobilitytrace.locationdistribution;
 
-import java.util.Random;
-
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.CartesianVector;
 import edu.gatech.lbs.core.vector.IVector;
 import edu.gatech.lbs.core.world.BoundingBox;
 
+/**
+ * Locations drawn around a hierarchy of Gaussian centers, shared by the whole population. The upper levels are drawn
+ * once, at construction, from their own random stream: a sequence of individuals walks the hierarchy, leaving each
+ * level with its exit probability, and the center just above the individual level is kept for each of them. Each
+ * location then picks one of these centers, and its individual offset, with the agent's random stream, so locations
+ * do not depend on the order (or thread) agents draw in.
+ */
 public class HierarchicGaussianLocationDistribution implements ILocationDistribution {
   public static final String xmlName = "hierarchicgaussian";
+  public static final int defaultParentCount = 4096; // individuals walking the upper levels
 
   private BoundingBox worldBox;
 
   private int[] distrHierarchyStDev; // std. deviation of the initial hierarchic levels [km]
   private double[] distrHierarcyExitProb; // exit probability for each distribution hierarchy level [0..1]
 
-  private CartesianVector[] hier_center;
   private int maxlevel; // level 0: base; last level: individual
-  private int level;
-  private Random rnd;
 
-  public HierarchicGaussianLocationDistribution(BoundingBox worldBox, int[] distrHierarchyStDev, double[] distrHierarcyExitProb) {
+  private long[][] parentCenter; // individual --> its center on the level above the individual level
+
+  public HierarchicGaussianLocationDistribution(BoundingBox worldBox, int[] distrHierarchyStDev, double[] distrHierarcyExitProb,
+      RandomStream rnd) {
     this.worldBox = worldBox;
 
     this.distrHierarchyStDev = distrHierarchyStDev;
     this.distrHierarcyExitProb = distrHierarcyExitProb;
 
     maxlevel = distrHierarchyStDev.length + 1;
-    level = 0;
-    hier_center = new CartesianVector[maxlevel];
 
-    rnd = new Random();
+    // walk the upper levels:
+    parentCenter = new long[maxlevel > 1 ? defaultParentCount : 0][];
+    long[][] hier_center = new long[maxlevel - 1][2];
+    int level = 0; // levels below this one are valid
+    for (int i = 0; i < parentCenter.length; i++) {
+      // exit from level(s):
+      while (level > 0 && rnd.nextDouble() < distrHierarcyExitProb[level - 1]) {
+        level--;
+      }
+      // uniform distribution on top level:
+      if (level <= 0) {
+        for (int d = 0; d < 2; d++) {
+          hier_center[0][d] = (long) (rnd.nextDouble() * worldBox.getDimension(d));
+        }
+        level = 1;
+      }
+      // go down level(s) to the one above the individual:
+      while (level < maxlevel - 1) {
+        for (int d = 0; d < 2; d++) {
+          hier_center[level][d] = getNearby(hier_center[level - 1][d], level, d, rnd);
+        }
+        level++;
+      }
+      parentCenter[i] = hier_center[maxlevel - 2].clone();
+    }
   }
 
-  public IVector getNextLocation() {
-
-    // force one level down (to generate a new individual's position)
-    level--;
-    // exit from level(s):
-    while (level > 0 && rnd.nextDouble() < distrHierarcyExitProb[level - 1]) {
-      level--;
+  /**
+   * Gaussian coordinate around the center on the level above, wrapped around to stay within world boundaries.
+   */
+  private long getNearby(long parent, int level, int d, RandomStream rnd) {
+    long x = parent + (int) (rnd.nextGaussian() * distrHierarchyStDev[level - 1]);
+    while (x < 0) {
+      x += worldBox.getDimension(d);
+    }
+    while (x > worldBox.getDimension(d)) {
+      x -= worldBox.getDimension(d);
     }
-    // uniform distribution on top level:
-    if (level <= 0) {
+    return x;
+  }
+
+  public IVector getNextLocation(RandomStream rnd) {
+    long[] location = new long[2];
+    if (maxlevel == 1) {
+      // the individual level is the top level:
       for (int d = 0; d < 2; d++) {
-        hier_center[0].setDimension(d, (long) (rnd.nextDouble() * worldBox.getDimension(d)));
+        location[d] = (long) (rnd.nextDouble() * worldBox.getDimension(d));
       }
-      level = 1;
-    }
-    // go down level(s) to required hierarchic depth:
-    while (level < maxlevel) {
+    } else {
+      long[] parent = parentCenter[rnd.nextInt(parentCenter.length)];
       for (int d = 0; d < 2; d++) {
-        hier_center[level].setDimension(d, hier_center[level - 1].getDimension(d) + (int) (rnd.nextGaussian() * distrHierarchyStDev[level - 1]));
-
-        // ensure it's within world boundaries:
-        while (hier_center[level].getDimension(d) < 0) {
-          hier_center[level].setDimension(d, hier_center[level].getDimension(d) + worldBox.getDimension(d));
-        }
-        while (hier_center[level].getDimension(d) > worldBox.getDimension(d)) {
-          hier_center[level].setDimension(d, hier_center[level].getDimension(d) - worldBox.getDimension(d));
-        }
+        location[d] = getNearby(parent[d], maxlevel - 1, d, rnd);
       }
-      level++;
     }
-    return hier_center[maxlevel - 1];
+    return new CartesianVector(location[0], location[1]);
   }
 }
@@ -7,7 +7,7 @@ package edu.gatech.lbs.sim.tracegenerator.mobilitytrace.locationdistribution;
 
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Random;
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.IVector;
 import edu.gatech.lbs.core.vector.RoadnetVector;
 import edu.gatech.lbs.core.world.roadnet.RoadJunctionDistance;
@@ -20,10 +20,13 @@ public class HotspotRoadnetLocationDistribution implements ILocationDistribution
   private RoadSegment[] segments;
   private double[] segmentWeights;
   private double totalWeights;
-  private Random rnd;
 
 
-  public HotspotRoadnetLocationDistribution(RoadMap roadmap, int hotspotCount, double coeff, long seed) {
+  /**
+   * @param rnd
+   *          stream used only to select the hotspot centers
+   */
+  public HotspotRoadnetLocationDistribution(RoadMap roadmap, int hotspotCount, double coeff, RandomStream rnd) {
     Collection<RoadSegment> segments0 = roadmap.getRoadSegments();
     segments = new RoadSegment[roadmap.getRoadSegmentCount()];
     int r = 0;
@@ -34,13 +37,10 @@ public class HotspotRoadnetLocationDistribution implements ILocationDistribution
     int segmentCount = segments.length;
     segmentWeights = new double[segmentCount];
 
-    // create random-generator with given seed, if given:
-    rnd = seed < 0 ? new Random() : new Random(seed);
-
     // System.out.print("Calculating hotspottyness of segments... ");
+    int[] centerNums = selectHotspotCenters(segmentCount, hotspotCount, rnd);
     for (int i = 0; i < hotspotCount; i++) {
-      // select a hotspot center:
-      int centerNum = (int) Math.floor(rnd.nextDouble() * segmentCount);
+      int centerNum = centerNums[i];
       RoadSegment centerSeg = segments[centerNum];
       RoadnetVector source = new RoadnetVector(centerSeg, centerSeg.getLength() / 2);
 
@@ -63,7 +63,31 @@ public class HotspotRoadnetLocationDistribution implements ILocationDistribution
     }
   }
 
-  public IVector getNextLocation() {
+  /**
+   * Select the hotspot center segments, as indices into the roadmap's segments.
+   */
+  protected static int[] selectHotspotCenters(int segmentCount, int hotspotCount, RandomStream rnd) {
+    int[] centerNums = new int[hotspotCount];
+    for (int i = 0; i < hotspotCount; i++) {
+      centerNums[i] = (int) Math.floor(rnd.nextDouble() * segmentCount);
+    }
+    return centerNums;
+  }
+
+  /**
+   * Get the hotspot center segments that would be selected for the roadmap with the given random stream.
+   */
+  public static RoadSegment[] getHotspotCenters(RoadMap roadmap, int hotspotCount, RandomStream rnd) {
+    RoadSegment[] segments = roadmap.getRoadSegments().toArray(new RoadSegment[roadmap.getRoadSegmentCount()]);
+    int[] centerNums = selectHotspotCenters(segments.length, hotspotCount, rnd);
+    RoadSegment[] centers = new RoadSegment[hotspotCount];
+    for (int i = 0; i < hotspotCount; i++) {
+      centers[i] = segments[centerNums[i]];
+    }
+    return centers;
+  }
+
+  public IVector getNextLocation(RandomStream rnd) {
     // find segment interval in total that corresponds to a segment:
     double watermark = rnd.nextDouble() * totalWeights;
 
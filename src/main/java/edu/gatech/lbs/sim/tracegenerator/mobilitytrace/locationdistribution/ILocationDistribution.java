@@ -4,10 +4,14 @@
 //
 package edu.gatech.lbs.sim.tracegenerator.mobilitytrace.locationdistribution;
 
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.IVector;
 
 public interface ILocationDistribution {
 
-  public abstract IVector getNextLocation();
+  /**
+   * Draw the next location, using the caller's random stream.
+   */
+  public abstract IVector getNextLocation(RandomStream rnd);
 
 }
@@ -4,6 +4,7 @@
 //
 package edu.gatech.lbs.sim.tracegenerator.mobilitytrace.locationdistribution;
 
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.CartesianVector;
 import edu.gatech.lbs.core.vector.IVector;
 import edu.gatech.lbs.core.world.BoundingBox;
@@ -17,7 +18,7 @@ public class UniformLocationDistribution implements ILocationDistribution {
     this.worldBox = worldLimits;
   }
 
-  public IVector getNextLocation() {
-    return new CartesianVector((long) (worldBox.getWestBoundary() + Math.random() * worldBox.getWidth()), (long) (worldBox.getSouthBoundary() + Math.random() * worldBox.getHeight()));
+  public IVector getNextLocation(RandomStream rnd) {
+    return new CartesianVector((long) (worldBox.getWestBoundary() + rnd.nextDouble() * worldBox.getWidth()), (long) (worldBox.getSouthBoundary() + rnd.nextDouble() * worldBox.getHeight()));
   }
 }
@@ -6,8 +6,8 @@ package edu.gatech.lbs.sim.tracegenerator.mobilitytrace.locationdistribution;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.Random;
 
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.IVector;
 import edu.gatech.lbs.core.vector.RoadnetVector;
 import edu.gatech.lbs.core.world.roadnet.ClassedRoadSegment;
@@ -30,7 +30,6 @@ public class UniformRoadnetLocationDistribution implements ILocationDistribution
   private double[] classWeight; // only the relative sizes of the weights matter; they needn't add up to 1
   private double totalWeights;
   private boolean doLengthWeighting;
-  private Random rnd;
 
   public UniformRoadnetLocationDistribution(RoadMap roadmap, double[] classWeight, boolean doLengthWeighting) {
     segments = roadmap.getRoadSegments();
@@ -42,15 +41,13 @@ public class UniformRoadnetLocationDistribution implements ILocationDistribution
     for (RoadSegment seg : segments) {
       totalWeights += getSegmentWeight(seg);
     }
-
-    rnd = new Random();
   }
 
   private double getSegmentWeight(RoadSegment seg) {
     return (doLengthWeighting ? seg.getLength() : 1) * (classWeight == null ? 1 : classWeight[((ClassedRoadSegment) seg).getRoadClassIndex()]);
   }
 
-  public IVector getNextLocation() {
+  public IVector getNextLocation(RandomStream rnd) {
     double watermark = rnd.nextDouble() * totalWeights;
 
     RoadSegment seg = null;
@@ -4,8 +4,7 @@
 //
 package edu.gatech.lbs.sim.tracegenerator.paramdistribution;
 
-import java.util.Random;
-
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.IVector;
 import edu.gatech.lbs.core.vector.RoadnetVector;
 import edu.gatech.lbs.core.world.roadnet.ClassedRoadSegment;
@@ -15,15 +14,12 @@ public class ClassedRoadnetSpeedDistribution implements IParamDistribution {
   public static final String xmlName = "roadnet";
 
   private IParamDistribution[] speedDistributions;
-  private Random rnd;
 
   public ClassedRoadnetSpeedDistribution(IParamDistribution[] speedDistributions) {
     this.speedDistributions = speedDistributions;
-
-    rnd = new Random();
   }
 
-  public int getNextValue(IVector location) {
+  public int getNextValue(IVector location, RandomStream rnd) {
     RoadnetVector roadnetLocation = (RoadnetVector) location;
     ClassedRoadSegment roadsegment = (ClassedRoadSegment) roadnetLocation.getRoadSegment();
 
@@ -31,7 +27,7 @@ public class ClassedRoadnetSpeedDistribution implements IParamDistribution {
 
     int speed;
     do {
-      speed = speedDistributions[roadClass].getNextValue(location);
+      speed = speedDistributions[roadClass].getNextValue(location, rnd);
     } while (speed <= 0 || speed > roadsegment.getSpeedLimit());
 
     // if segment is not directed, randomly reverse direction when inside a segment, but force movement towards the middle when at segment ends:
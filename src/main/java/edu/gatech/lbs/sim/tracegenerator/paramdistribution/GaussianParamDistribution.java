@@ -4,8 +4,7 @@
 //
 package edu.gatech.lbs.sim.tracegenerator.paramdistribution;
 
-import java.util.Random;
-
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.IVector;
 
 public class GaussianParamDistribution implements IParamDistribution {
@@ -16,18 +15,14 @@ public class GaussianParamDistribution implements IParamDistribution {
   private int min; // [mm] or [mm/s] or [ms]
   private int max; // [mm] or [mm/s] or [ms]
 
-  private Random rnd;
-
   public GaussianParamDistribution(int mean, int stdev, int min, int max) {
     this.mean = mean;
     this.stdev = stdev;
     this.min = min;
     this.max = max;
-
-    rnd = new Random();
   }
 
-  public int getNextValue(IVector location) {
+  public int getNextValue(IVector location, RandomStream rnd) {
     int value;
     do {
       value = (int) (mean + rnd.nextGaussian() * stdev);
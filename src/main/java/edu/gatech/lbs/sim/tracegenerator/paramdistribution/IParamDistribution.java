@@ -4,10 +4,14 @@
 //
 package edu.gatech.lbs.sim.tracegenerator.paramdistribution;
 
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.IVector;
 
 public interface IParamDistribution {
 
-  public int getNextValue(IVector location);
+  /**
+   * Draw the next value, using the caller's random stream.
+   */
+  public int getNextValue(IVector location, RandomStream rnd);
 
 }
@@ -4,8 +4,7 @@
 //
 package edu.gatech.lbs.sim.tracegenerator.paramdistribution;
 
-import java.util.Random;
-
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.IVector;
 
 public class UniformParamDistribution implements IParamDistribution {
@@ -14,16 +13,12 @@ public class UniformParamDistribution implements IParamDistribution {
   private int min; // [nm] or [nm/s] or [ns]
   private int max; // [nm] or [mn/s] or [ns]
 
-  private Random rnd;
-
   public UniformParamDistribution(int min, int max) {
     this.min = min;
     this.max = max;
-
-    rnd = new Random();
   }
 
-  public int getNextValue(IVector location) {
+  public int getNextValue(IVector location, RandomStream rnd) {
     int speed;
     do {
       speed = (int) (min + rnd.nextDouble() * (max - min));
@@ -5,6 +5,7 @@
 //
 package edu.gatech.lbs.sim.tracegenerator.paramdistribution;
 
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.IVector;
 
 /*
@@ -50,8 +51,8 @@ public class ZipfParamDistribution implements IParamDistribution {
     return mean;
   }
 
-  public int getNextValue(IVector location) {
-    double v = Math.random();
+  public int getNextValue(IVector location, RandomStream rnd) {
+    double v = rnd.nextDouble();
     for (int i = 0; i < n; i++) {
       if (v < p[i]) {
         return i;
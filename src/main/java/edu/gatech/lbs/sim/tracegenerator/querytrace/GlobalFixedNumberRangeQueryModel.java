@@ -11,12 +11,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Random;
 import java.util.TreeMap;
 
 import edu.gatech.lbs.core.query.LocationBasedQuery;
 import edu.gatech.lbs.core.query.QueryKey;
 import edu.gatech.lbs.core.query.ShortestRouteRangeQuery;
+import edu.gatech.lbs.core.random.RandomStream;
 import edu.gatech.lbs.core.vector.RoadnetVector;
 import edu.gatech.lbs.sim.Simulation;
 import edu.gatech.lbs.sim.agent.SimAgent;
@@ -51,7 +51,7 @@ public class GlobalFixedNumberRangeQueryModel implements ITraceGenerator {
 
   protected int nextSimQid = 0;
 
-  protected Random rnd;
+  protected RandomStream rnd;
 
   public GlobalFixedNumberRangeQueryModel(String mobilityTraceFilename, Simulation sim, IParamDistribution rangeDistribution, IParamDistribution lifetimeDistribution, ILocationDistribution locationDistribution, int queryCount) {
     this.rangeDistribution = rangeDistribution;
@@ -70,6 +70,8 @@ public class GlobalFixedNumberRangeQueryModel implements ITraceGenerator {
     miniSim = new Simulation();
     miniSim.setSimTimes(sim.getSimStartTime(), sim.getSimEndTime(), sim.getSimWarmupDuration());
     miniSim.setWorld(sim.getWorld());
+    miniSim.setEventQueueType(sim.getEventQueueType());
+    miniSim.setRandomStreams(sim.getRandomStreams());
     Collection<SimAgent> agents = new ArrayList<SimAgent>();
     for (SimAgent agent : sim.getAgents()) {
       agents.add(new SimAgent(miniSim, agent.getSimAgentId()));
@@ -78,7 +80,7 @@ public class GlobalFixedNumberRangeQueryModel implements ITraceGenerator {
     miniSim.setAgents(agents);
     miniSim.addActivity(new TraceLoadingActivity(mobilityTraceFilename));
 
-    rnd = new Random();
+    rnd = sim.getRandomStreams().getStream("query", 0);
   }
 
   public void generateTrace(String traceFilename) throws IOException {
@@ -88,13 +90,13 @@ public class GlobalFixedNumberRangeQueryModel implements ITraceGenerator {
 
     long wallStartTime = System.nanoTime();
 
-    SimEventQueue queue = new SimEventQueue();
+    SimEventQueue queue = miniSim.makeEventQueue();
 
     // ensure that initial locations are set:
     miniSim.runSimulationTo(0);
     // set initial queries:
     for (int i = 0; i < queryCountTotal; i++) {
-      LocationBasedQuery lbq = new ShortestRouteRangeQuery(rangeDistribution.getNextValue(null));
+      LocationBasedQuery lbq = new ShortestRouteRangeQuery(rangeDistribution.getNextValue(null, rnd));
 
       SimAgent agent = getOneAgent();
       addOneQuery(queue, miniSim.getSimStartTime(), -1, agent, lbq);
@@ -102,13 +104,13 @@ public class GlobalFixedNumberRangeQueryModel implements ITraceGenerator {
 
     // process the queue, and add a query insertion for every query deletion, to keep number of queries constant:
     if (lifetimeDistribution != null) {
-      SimEventQueue phantomQueue = new SimEventQueue();
+      SimEventQueue phantomQueue = miniSim.makeEventQueue();
       phantomQueue.addQueue(queue);
       long simTime;
       while ((simTime = phantomQueue.getNextEventTime()) >= 0 && simTime < miniSim.getSimEndTime()) {
         SimEvent event = phantomQueue.pop();
         if (event instanceof QueryDeleteEvent) {
-          LocationBasedQuery lbq = new ShortestRouteRangeQuery(rangeDistribution.getNextValue(null));
+          LocationBasedQuery lbq = new ShortestRouteRangeQuery(rangeDistribution.getNextValue(null, rnd));
           long t = event.getTimestamp() + 1;
           // ensure that locations are set:
           miniSim.runSimulationTo(t);
@@ -144,7 +146,7 @@ public class GlobalFixedNumberRangeQueryModel implements ITraceGenerator {
         int agentId = rnd.nextInt(miniSim.getAgentCount());
         agent = miniSim.getAgent(agentId);
       } else {
-        RoadnetVector l = locationDistribution.getNextLocation().toRoadnetVector();
+        RoadnetVector l = locationDistribution.getNextLocation(rnd).toRoadnetVector();
         List<SimAgent> agents = miniSim.getAgentsOnSegment(l.getRoadSegment().getId());
         if (agents != null && !agents.isEmpty()) {
           agent = agents.get(rnd.nextInt(agents.size()));
@@ -171,7 +173,7 @@ public class GlobalFixedNumberRangeQueryModel implements ITraceGenerator {
     queue.addEvent(new QueryCreateEvent(miniSim, t, simKey, lbq));
     // query deletion (only if lifetime is not infinite):
     if (lifetime < 0 && lifetimeDistribution != null) {
-      lifetime = (long) (1000 * lifetimeDistribution.getNextValue(null));
+      lifetime = (long) (1000 * lifetimeDistribution.getNextValue(null, rnd));
     }
     if (lifetime > 0) {
       queue.addEvent(new QueryDeleteEvent(miniSim, t + lifetime, simKey));